@@ -29,6 +29,7 @@
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.infra.Blackhole;
 import org.reactivestreams.Publisher;
@@ -73,6 +74,30 @@ public void fireAndForgetHello(Input input) {
     input.client.fireAndForget(Input.HELLO_PAYLOAD).subscribe(input.blackHoleSubscriber);
   }
 
+  @Benchmark
+  @Threads(4)
+  public void requestResponseHello4Threads(Input input) {
+    requestResponseHello(input);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void requestResponseHello16Threads(Input input) {
+    requestResponseHello(input);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void fireAndForgetHello4Threads(Input input) {
+    fireAndForgetHello(input);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void fireAndForgetHello16Threads(Input input) {
+    fireAndForgetHello(input);
+  }
+
   @State(Scope.Benchmark)
   public static class Input {
     /** Use to consume values when the test needs to return more than a single value. */
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket;
+
+import io.rsocket.perfutil.TestDuplexConnection;
+import io.rsocket.util.PayloadImpl;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+/**
+ * Streams consumed one payload at a time, with and without batching of {@code REQUEST_N} frames.
+ * The auxiliary counters report the control frames sent per stream, each of which is a write on a
+ * real transport.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@State(Scope.Thread)
+public class RequestNPerf {
+  static final Payload HELLO = new PayloadImpl("HELLO");
+
+  @Param({"0", "64"})
+  int requestNBatchSize;
+
+  @Param({"1000"})
+  int payloads;
+
+  RSocket client;
+  long requestNFrames;
+
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Frames {
+    public long requestN;
+    public long streams;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      requestN = 0;
+      streams = 0;
+    }
+  }
+
+  @Setup
+  public void setup() {
+    DirectProcessor<Frame> clientReceive = DirectProcessor.create();
+    DirectProcessor<Frame> serverReceive = DirectProcessor.create();
+    serverReceive.subscribe(
+        frame -> {
+          if (frame.getType() == FrameType.REQUEST_N) {
+            requestNFrames++;
+          }
+        });
+
+    TestDuplexConnection clientConnection = new TestDuplexConnection(serverReceive, clientReceive);
+    TestDuplexConnection serverConnection = new TestDuplexConnection(clientReceive, serverReceive);
+
+    RSocketFactory.receive()
+        .acceptor(
+            (setup, sendingSocket) ->
+                Mono.just(
+                    new AbstractRSocket() {
+                      @Override
+                      public Flux<Payload> requestStream(Payload payload) {
+                        return Flux.range(0, payloads).map(i -> HELLO);
+                      }
+                    }))
+        .transport(
+            acceptor -> {
+              acceptor.apply(serverConnection).subscribe();
+              MonoProcessor<Void> onClose = MonoProcessor.create();
+              return Mono.just(
+                  new Closeable() {
+                    @Override
+                    public Mono<Void> close() {
+                      return Mono.empty().doFinally(s -> onClose.onComplete()).then();
+                    }
+
+                    @Override
+                    public Mono<Void> onClose() {
+                      return onClose;
+                    }
+                  });
+            })
+        .start()
+        .block();
+
+    client =
+        RSocketFactory.connect()
+            .requestNBatchSize(requestNBatchSize)
+            .transport(() -> Mono.just(clientConnection))
+            .start()
+            .block();
+  }
+
+  @Benchmark
+  public Payload requestStreamOneByOne(Frames frames) {
+    long before = requestNFrames;
+    Payload last = client.requestStream(HELLO).limitRate(1).blockLast();
+    frames.requestN += requestNFrames - before;
+    frames.streams++;
+    return last;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.Frame;
+import io.rsocket.FrameType;
+import io.rsocket.util.PayloadImpl;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.FluxProcessor;
+
+/**
+ * Latency of a request-response frame queued behind a bulk stream. Each invocation queues {@code
+ * bulkFrames} frames of a stream followed by one small frame of another stream, then writes frames
+ * one at a time, copying their bytes as a transport would, until the small frame is written. Run
+ * in sample time mode the percentiles compare the FIFO send queue with the fair one.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@State(Scope.Thread)
+public class FairFrameProcessorPerf {
+  @Param({"fifo", "fair"})
+  String queue;
+
+  @Param({"256"})
+  int bulkFrames;
+
+  @Param({"16384"})
+  int bulkFrameSize;
+
+  FluxProcessor<Frame, Frame> processor;
+  Writer writer;
+  byte[] bulkData;
+  byte[] smallData;
+
+  @Setup
+  public void setup() {
+    processor = "fair".equals(queue) ? new FairFrameProcessor() : new UnboundedProcessor<>();
+    writer = new Writer(bulkFrameSize);
+    processor.subscribe(writer);
+    bulkData = new byte[bulkFrameSize];
+    smallData = new byte[64];
+  }
+
+  @Setup(Level.Invocation)
+  public void queueFrames() {
+    for (int i = 0; i < bulkFrames; i++) {
+      processor.onNext(Frame.PayloadFrame.from(1, FrameType.NEXT, new PayloadImpl(bulkData)));
+    }
+    processor.onNext(
+        Frame.PayloadFrame.from(3, FrameType.NEXT_COMPLETE, new PayloadImpl(smallData)));
+  }
+
+  @TearDown(Level.Invocation)
+  public void writeRemaining() {
+    writer.writeAll();
+  }
+
+  @Benchmark
+  public int requestResponseLatency() {
+    int written = 0;
+    do {
+      written++;
+    } while (writer.writeOne() != 3);
+    return written;
+  }
+
+  static final class Writer extends BaseSubscriber<Frame> {
+    private final ByteBuf socket;
+    private int lastStreamId;
+
+    Writer(int frameSize) {
+      this.socket = Unpooled.directBuffer(frameSize * 2);
+    }
+
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {}
+
+    @Override
+    protected void hookOnNext(Frame frame) {
+      socket.clear();
+      socket.writeBytes(frame.content());
+      lastStreamId = frame.getStreamId();
+      frame.release();
+    }
+
+    int writeOne() {
+      lastStreamId = 0;
+      request(1);
+      return lastStreamId;
+    }
+
+    void writeAll() {
+      while (writeOne() != 0) {}
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+/**
+ * Emission and request paths of {@link LimitableRequestPublisher}. {@code stream} runs a whole
+ * stream with credit granted by the other side in small batches, as {@code REQUEST_N} frames do.
+ * The {@code contended} group requests from both sides at once from two threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+public class LimitableRequestPublisherPerf {
+
+  @State(Scope.Thread)
+  public static class Stream {
+    @Param({"1000"})
+    int payloads;
+
+    @Param({"32"})
+    int requestN;
+
+    Flux<Integer> source;
+
+    @Setup
+    public void setup() {
+      source = Flux.range(0, payloads);
+    }
+  }
+
+  @Benchmark
+  public void stream(Stream stream, Blackhole bh) {
+    LimitableRequestPublisher<Integer> publisher = LimitableRequestPublisher.wrap(stream.source);
+    BaseSubscriber<Integer> subscriber =
+        new BaseSubscriber<Integer>() {
+          @Override
+          protected void hookOnNext(Integer value) {
+            bh.consume(value);
+          }
+        };
+    publisher.subscribe(subscriber);
+
+    while (!subscriber.isDisposed()) {
+      publisher.increaseRequestLimit(stream.requestN);
+    }
+  }
+
+  @State(Scope.Group)
+  public static class Contended {
+    LimitableRequestPublisher<Integer> publisher;
+    BaseSubscriber<Integer> subscriber;
+
+    @Setup
+    public void setup(Blackhole bh) {
+      publisher = LimitableRequestPublisher.wrap(Flux.<Integer>never().doOnRequest(bh::consume));
+      subscriber =
+          new BaseSubscriber<Integer>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {}
+          };
+      publisher.subscribe(subscriber);
+    }
+  }
+
+  @Benchmark
+  @Group("contended")
+  @GroupThreads(1)
+  public void externalRequest(Contended contended) {
+    contended.publisher.increaseRequestLimit(1);
+  }
+
+  @Benchmark
+  @Group("contended")
+  @GroupThreads(1)
+  public void internalRequest(Contended contended) {
+    contended.subscriber.request(1);
+  }
+}
@@ -0,0 +1,138 @@
+package io.rsocket.internal;
+
+import io.netty.util.collection.IntObjectHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares {@link StreamTable} with a single monitor guarded {@link IntObjectHashMap}, the layout
+ * RSocketClient and RSocketServer used before. Each operation registers a stream, looks it up
+ * once per inbound frame and removes it again, while a background of live streams is kept in the
+ * table.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class StreamTablePerf {
+  private static final Object VALUE = new Object();
+
+  @Param({"1024"})
+  int liveStreams;
+
+  @Param({"4"})
+  int framesPerStream;
+
+  StreamTable<Object> streamTable;
+  IntObjectHashMap<Object> synchronizedMap;
+
+  final AtomicInteger threads = new AtomicInteger();
+
+  @Setup
+  public void setup() {
+    streamTable = new StreamTable<>();
+    synchronizedMap = new IntObjectHashMap<>(256, 0.9f);
+    for (int i = 0; i < liveStreams; i++) {
+      int streamId = (i << 1) + 1;
+      streamTable.put(streamId, VALUE);
+      synchronizedMap.put(streamId, VALUE);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class StreamIds {
+    private static final int STEP = 64 << 1;
+
+    int first;
+    int next;
+
+    @Setup
+    public void setup(StreamTablePerf perf) {
+      // Each thread allocates from its own residue class above the live streams
+      int thread = perf.threads.getAndIncrement();
+      first = (perf.liveStreams << 1) + (thread << 1) + 1;
+      next = first;
+    }
+
+    int nextStreamId() {
+      int streamId = next;
+      next += STEP;
+      if (next < 0) {
+        next = first;
+      }
+      return streamId;
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void streamTable1(StreamIds ids, Blackhole bh) {
+    streamTable(ids, bh);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void streamTable4(StreamIds ids, Blackhole bh) {
+    streamTable(ids, bh);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void streamTable16(StreamIds ids, Blackhole bh) {
+    streamTable(ids, bh);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void synchronizedMap1(StreamIds ids, Blackhole bh) {
+    synchronizedMap(ids, bh);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void synchronizedMap4(StreamIds ids, Blackhole bh) {
+    synchronizedMap(ids, bh);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void synchronizedMap16(StreamIds ids, Blackhole bh) {
+    synchronizedMap(ids, bh);
+  }
+
+  private void streamTable(StreamIds ids, Blackhole bh) {
+    int streamId = ids.nextStreamId();
+    streamTable.put(streamId, VALUE);
+    for (int i = 0; i < framesPerStream; i++) {
+      bh.consume(streamTable.get(streamId));
+    }
+    bh.consume(streamTable.remove(streamId));
+  }
+
+  private void synchronizedMap(StreamIds ids, Blackhole bh) {
+    int streamId = ids.nextStreamId();
+    synchronized (this) {
+      synchronizedMap.put(streamId, VALUE);
+    }
+    for (int i = 0; i < framesPerStream; i++) {
+      synchronized (this) {
+        bh.consume(synchronizedMap.get(streamId));
+      }
+    }
+    synchronized (this) {
+      bh.consume(synchronizedMap.remove(streamId));
+    }
+  }
+}
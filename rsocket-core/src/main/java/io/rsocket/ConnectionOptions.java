@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.internal.ConcurrentStreamLimit;
+import io.rsocket.internal.ReceiveBuffers;
+import io.rsocket.lease.LeaseGenerator;
+import io.rsocket.lease.LeaseTracker;
+import java.time.Duration;
+import javax.annotation.Nullable;
+
+/**
+ * Options of the {@link RSocketClient} or {@link RSocketServer} of one connection, filled in by
+ * {@link RSocketFactory}. Options left unset keep the behaviour of a plain connection.
+ *
+ * <p>Each side of a connection gets its own instance, as its stream limit is only shared with
+ * other connections. The {@link ReceiveBuffers} should be shared by both sides.
+ */
+final class ConnectionOptions {
+  private PayloadDecoder payloadDecoder = PayloadDecoder.DEFAULT;
+  private @Nullable ByteBufAllocator allocator;
+  private @Nullable LeaseTracker leaseTracker;
+  private @Nullable LeaseGenerator leaseGenerator;
+  private int requestNBatchSize;
+  private ConcurrentStreamLimit streamLimit = new ConcurrentStreamLimit(0);
+  private Duration requestTimeout = Duration.ZERO;
+  private ReceiveBuffers receiveBuffers = new ReceiveBuffers();
+
+  ConnectionOptions payloadDecoder(PayloadDecoder payloadDecoder) {
+    this.payloadDecoder = payloadDecoder;
+    return this;
+  }
+
+  /** Allocator for the frames sent, the one of the connection if not set. */
+  ConnectionOptions allocator(ByteBufAllocator allocator) {
+    this.allocator = allocator;
+    return this;
+  }
+
+  /** Leases granted by the peer, which requests are held to. Only used by the client. */
+  ConnectionOptions leaseTracker(@Nullable LeaseTracker leaseTracker) {
+    this.leaseTracker = leaseTracker;
+    return this;
+  }
+
+  /** Leases granted to the peer. Only used by the server. */
+  ConnectionOptions leaseGenerator(@Nullable LeaseGenerator leaseGenerator) {
+    this.leaseGenerator = leaseGenerator;
+    return this;
+  }
+
+  /** Credit kept in flight by receiving streams, {@code 0} to pass on demand as requested. */
+  ConnectionOptions requestNBatchSize(int requestNBatchSize) {
+    this.requestNBatchSize = requestNBatchSize;
+    return this;
+  }
+
+  ConnectionOptions streamLimit(ConcurrentStreamLimit streamLimit) {
+    this.streamLimit = streamLimit;
+    return this;
+  }
+
+  /** Deadline of the requests sent, {@link Duration#ZERO} for none. Only used by the client. */
+  ConnectionOptions requestTimeout(Duration requestTimeout) {
+    this.requestTimeout = requestTimeout;
+    return this;
+  }
+
+  ConnectionOptions receiveBuffers(ReceiveBuffers receiveBuffers) {
+    this.receiveBuffers = receiveBuffers;
+    return this;
+  }
+
+  PayloadDecoder payloadDecoder() {
+    return payloadDecoder;
+  }
+
+  ByteBufAllocator allocator(DuplexConnection connection) {
+    return allocator != null ? allocator : connection.alloc();
+  }
+
+  @Nullable LeaseTracker leaseTracker() {
+    return leaseTracker;
+  }
+
+  @Nullable LeaseGenerator leaseGenerator() {
+    return leaseGenerator;
+  }
+
+  int requestNBatchSize() {
+    return requestNBatchSize;
+  }
+
+  ConcurrentStreamLimit streamLimit() {
+    return streamLimit;
+  }
+
+  Duration requestTimeout() {
+    return requestTimeout;
+  }
+
+  ReceiveBuffers receiveBuffers() {
+    return receiveBuffers;
+  }
+}
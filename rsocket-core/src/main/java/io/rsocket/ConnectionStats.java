@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket;
+
+/**
+ * Transport level statistics of a connection. Round trip times are measured with keep-alive frames
+ * so that they are available even when the connection carries no application traffic. Times are in
+ * {@link io.rsocket.util.Clock#unit()}.
+ */
+public interface ConnectionStats {
+
+  /** @return smoothed round trip time of the connection, 0.0 if it has not been measured */
+  default double roundTripTime() {
+    return 0.0;
+  }
+
+  /** @return smoothed mean deviation of the round trip time, 0.0 if it has not been measured */
+  default double roundTripJitter() {
+    return 0.0;
+  }
+
+  /** @return bytes of payloads received on the connection and not delivered to subscribers yet */
+  default long receiveBufferedBytes() {
+    return 0;
+  }
+
+  /** @return largest {@link #receiveBufferedBytes()} of a single stream of the connection */
+  default long maxStreamReceiveBufferedBytes() {
+    return 0;
+  }
+}
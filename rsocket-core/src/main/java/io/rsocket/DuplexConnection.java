@@ -15,6 +15,7 @@
  */
 package io.rsocket;
 
+import io.netty.buffer.ByteBufAllocator;
 import java.nio.channels.ClosedChannelException;
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
@@ -74,4 +75,15 @@ default Mono<Void> sendOne(Frame frame) {
    * @return Stream of all {@code Frame}s received.
    */
   Flux<Frame> receive();
+
+  /**
+   * Returns the allocator that frames sent on this connection should be allocated from. Transports
+   * backed by a channel return the channel's allocator so outbound frames come from the same pool
+   * the transport writes with.
+   *
+   * @return allocator for outbound frames.
+   */
+  default ByteBufAllocator alloc() {
+    return ByteBufAllocator.DEFAULT;
+  }
 }
@@ -19,15 +19,16 @@
 
 import io.netty.buffer.*;
 import io.netty.util.IllegalReferenceCountException;
-import io.netty.util.Recycler;
-import io.netty.util.Recycler.Handle;
 import io.netty.util.ResourceLeakDetector;
 import io.rsocket.frame.ErrorFrameFlyweight;
+import io.rsocket.frame.FrameHeader;
 import io.rsocket.frame.FrameHeaderFlyweight;
 import io.rsocket.frame.KeepaliveFrameFlyweight;
 import io.rsocket.frame.LeaseFrameFlyweight;
 import io.rsocket.frame.RequestFrameFlyweight;
 import io.rsocket.frame.RequestNFrameFlyweight;
+import io.rsocket.frame.ResumeFrameFlyweight;
+import io.rsocket.frame.ResumeOkFrameFlyweight;
 import io.rsocket.frame.SetupFrameFlyweight;
 import io.rsocket.frame.VersionFlyweight;
 import java.nio.ByteBuffer;
@@ -39,29 +40,42 @@
 /**
  * Represents a Frame sent over a {@link DuplexConnection}.
  *
- * <p>This provides encoding, decoding and field accessors.
+ * <p>This provides encoding, decoding and field accessors. The header is decoded at most once per
+ * frame, on first access to any of its fields, and cached in a {@link FrameHeader}.
  */
 public class Frame implements ByteBufHolder {
   public static final ByteBuffer NULL_BYTEBUFFER = ByteBuffer.allocateDirect(0);
 
-  private static final Recycler<Frame> RECYCLER =
-      new Recycler<Frame>() {
-        protected Frame newObject(Handle<Frame> handle) {
-          return new Frame(handle);
-        }
-      };
+  /**
+   * Payloads with at least this many bytes of data and metadata are not copied into the frame;
+   * instead the frame is a {@link CompositeByteBuf} of a pooled header and the retained payload
+   * buffers. A negative value always copies.
+   */
+  private static final int COMPOSITE_ENCODING_THRESHOLD =
+      Integer.getInteger("io.rsocket.frame.compositeEncodingThreshold", 1024);
+
+  private ByteBuf content;
+  private @Nullable FrameHeader header;
 
-  private final Handle<Frame> handle;
-  private @Nullable ByteBuf content;
+  private Frame() {}
 
-  private Frame(final Handle<Frame> handle) {
-    this.handle = handle;
+  private Frame(final ByteBuf content) {
+    this.content = content;
   }
 
-  /** Clear and recycle this instance. */
-  private void recycle() {
-    content = null;
-    handle.recycle(this);
+  /**
+   * Returns the decoded header of this frame, decoding it on first use. Decoding is idempotent so
+   * a frame handed between threads may at worst be decoded twice.
+   *
+   * @return decoded frame header
+   */
+  public FrameHeader header() {
+    FrameHeader header = this.header;
+    if (header == null) {
+      header = FrameHeader.decode(content);
+      this.header = header;
+    }
+    return header;
   }
 
   /** Return the content which is held by this {@link Frame}. */
@@ -159,11 +173,7 @@ public Frame touch(@Nullable Object hint) {
    */
   @Override
   public boolean release() {
-    if (content.release()) {
-      recycle();
-      return true;
-    }
-    return false;
+    return content.release();
   }
 
   /**
@@ -175,11 +185,7 @@ public boolean release() {
    */
   @Override
   public boolean release(int decrement) {
-    if (content.release(decrement)) {
-      recycle();
-      return true;
-    }
-    return false;
+    return content.release(decrement);
   }
 
   /**
@@ -190,7 +196,7 @@ public boolean release(int decrement) {
    * @return ByteBuffer containing the content
    */
   public ByteBuffer getMetadata() {
-    final ByteBuf metadata = FrameHeaderFlyweight.sliceFrameMetadata(content);
+    final ByteBuf metadata = sliceMetadata();
     if (metadata == null) {
       return NULL_BYTEBUFFER;
     } else if (metadata.readableBytes() > 0) {
@@ -211,7 +217,7 @@ public ByteBuffer getMetadata() {
    * @return ByteBuffer containing the data
    */
   public ByteBuffer getData() {
-    final ByteBuf data = FrameHeaderFlyweight.sliceFrameData(content);
+    final ByteBuf data = sliceData();
     if (data.readableBytes() > 0) {
       final ByteBuffer buffer = ByteBuffer.allocateDirect(data.readableBytes());
       data.readBytes(buffer);
@@ -228,7 +234,7 @@ public ByteBuffer getData() {
    * @return frame stream identifier
    */
   public int getStreamId() {
-    return FrameHeaderFlyweight.streamId(content);
+    return header().streamId();
   }
 
   /**
@@ -237,7 +243,7 @@ public int getStreamId() {
    * @return frame type
    */
   public FrameType getType() {
-    return FrameHeaderFlyweight.frameType(content);
+    return header().frameType();
   }
 
   /**
@@ -246,7 +252,27 @@ public FrameType getType() {
    * @return frame flags field value
    */
   public int flags() {
-    return FrameHeaderFlyweight.flags(content);
+    return header().flags();
+  }
+
+  /**
+   * Return a slice of the frame content holding the metadata. The slice shares the reference count
+   * of the frame.
+   *
+   * @return metadata slice, or {@code null} if the frame does not carry metadata
+   */
+  public @Nullable ByteBuf sliceMetadata() {
+    return header().sliceMetadata(content);
+  }
+
+  /**
+   * Return a slice of the frame content holding the data. The slice shares the reference count of
+   * the frame.
+   *
+   * @return data slice
+   */
+  public ByteBuf sliceData() {
+    return header().sliceData(content);
   }
 
   /**
@@ -256,10 +282,7 @@ public int flags() {
    * @return frame
    */
   public static Frame from(final ByteBuf content) {
-    final Frame frame = RECYCLER.get();
-    frame.content = content;
-
-    return frame;
+    return new Frame(content);
   }
 
   public static boolean isFlagSet(int flags, int checkedFlag) {
@@ -275,7 +298,7 @@ public boolean hasMetadata() {
   }
 
   public String getDataUtf8() {
-    return StandardCharsets.UTF_8.decode(getData()).toString();
+    return sliceData().toString(StandardCharsets.UTF_8);
   }
 
   /* TODO:
@@ -297,20 +320,78 @@ public static Frame from(
         String metadataMimeType,
         String dataMimeType,
         Payload payload) {
+      return from(
+          ByteBufAllocator.DEFAULT,
+          flags,
+          keepaliveInterval,
+          maxLifetime,
+          metadataMimeType,
+          dataMimeType,
+          payload);
+    }
+
+    public static Frame from(
+        ByteBufAllocator allocator,
+        int flags,
+        int keepaliveInterval,
+        int maxLifetime,
+        String metadataMimeType,
+        String dataMimeType,
+        Payload payload) {
+      return from(
+          allocator,
+          flags,
+          keepaliveInterval,
+          maxLifetime,
+          Unpooled.EMPTY_BUFFER,
+          metadataMimeType,
+          dataMimeType,
+          payload);
+    }
+
+    /**
+     * Creates a setup frame, {@code resumeToken} is only written if {@code flags} has {@link
+     * SetupFrameFlyweight#FLAGS_RESUME_ENABLE} set.
+     */
+    public static Frame from(
+        ByteBufAllocator allocator,
+        int flags,
+        int keepaliveInterval,
+        int maxLifetime,
+        ByteBuf resumeToken,
+        String metadataMimeType,
+        String dataMimeType,
+        Payload payload) {
       final ByteBuf metadata =
-          payload.hasMetadata()
-              ? Unpooled.wrappedBuffer(payload.getMetadata())
-              : Unpooled.EMPTY_BUFFER;
-      final ByteBuf data =
-          payload.getData() != null
-              ? Unpooled.wrappedBuffer(payload.getData())
-              : Unpooled.EMPTY_BUFFER;
-
-      final Frame frame = RECYCLER.get();
+          payload.hasMetadata() ? payload.sliceMetadata() : Unpooled.EMPTY_BUFFER;
+      final ByteBuf data = payload.sliceData();
+
+      final Frame frame = new Frame();
+      if (encodeAsComposite(metadata, data)) {
+        final ByteBuf header =
+            allocator.buffer(
+                SetupFrameFlyweight.computeFrameLength(
+                    flags, resumeToken.readableBytes(), metadataMimeType, dataMimeType, 0, 0));
+        header.writerIndex(
+            SetupFrameFlyweight.encodeHeader(
+                header,
+                flags,
+                keepaliveInterval,
+                maxLifetime,
+                resumeToken,
+                metadataMimeType,
+                dataMimeType,
+                metadata.readableBytes(),
+                data.readableBytes()));
+        frame.content = compose(header, metadata, data);
+        return frame;
+      }
+
       frame.content =
-          ByteBufAllocator.DEFAULT.buffer(
+          allocator.buffer(
               SetupFrameFlyweight.computeFrameLength(
                   flags,
+                  resumeToken.readableBytes(),
                   metadataMimeType,
                   dataMimeType,
                   metadata.readableBytes(),
@@ -321,6 +402,7 @@ public static Frame from(
               flags,
               keepaliveInterval,
               maxLifetime,
+              resumeToken,
               metadataMimeType,
               dataMimeType,
               metadata,
@@ -330,7 +412,7 @@ public static Frame from(
 
     public static int getFlags(final Frame frame) {
       ensureFrameType(FrameType.SETUP, frame);
-      final int flags = FrameHeaderFlyweight.flags(frame.content);
+      final int flags = frame.flags();
 
       return flags & SetupFrameFlyweight.VALID_FLAGS;
     }
@@ -359,6 +441,70 @@ public static String dataMimeType(final Frame frame) {
       ensureFrameType(FrameType.SETUP, frame);
       return SetupFrameFlyweight.dataMimeType(frame.content);
     }
+
+    public static @Nullable byte[] resumeToken(final Frame frame) {
+      ensureFrameType(FrameType.SETUP, frame);
+      final ByteBuf resumeToken = SetupFrameFlyweight.resumeToken(frame.content);
+      return resumeToken == null ? null : ByteBufUtil.getBytes(resumeToken);
+    }
+  }
+
+  public static class Resume {
+    private Resume() {}
+
+    public static Frame from(
+        ByteBufAllocator allocator,
+        ByteBuf resumeToken,
+        long lastReceivedServerPosition,
+        long firstAvailableClientPosition) {
+      final Frame frame = new Frame();
+      frame.content =
+          allocator.buffer(ResumeFrameFlyweight.computeFrameLength(resumeToken.readableBytes()));
+      frame.content.writerIndex(
+          ResumeFrameFlyweight.encode(
+              frame.content,
+              resumeToken,
+              lastReceivedServerPosition,
+              firstAvailableClientPosition));
+      return frame;
+    }
+
+    public static int version(final Frame frame) {
+      ensureFrameType(FrameType.RESUME, frame);
+      return ResumeFrameFlyweight.version(frame.content);
+    }
+
+    public static byte[] resumeToken(final Frame frame) {
+      ensureFrameType(FrameType.RESUME, frame);
+      return ByteBufUtil.getBytes(ResumeFrameFlyweight.resumeToken(frame.content));
+    }
+
+    public static long lastReceivedServerPosition(final Frame frame) {
+      ensureFrameType(FrameType.RESUME, frame);
+      return ResumeFrameFlyweight.lastReceivedServerPosition(frame.content);
+    }
+
+    public static long firstAvailableClientPosition(final Frame frame) {
+      ensureFrameType(FrameType.RESUME, frame);
+      return ResumeFrameFlyweight.firstAvailableClientPosition(frame.content);
+    }
+  }
+
+  public static class ResumeOk {
+    private ResumeOk() {}
+
+    public static Frame from(ByteBufAllocator allocator, long lastReceivedClientPosition) {
+      final Frame frame = new Frame();
+      frame.content = allocator.buffer(ResumeOkFrameFlyweight.computeFrameLength());
+      frame.content.writerIndex(
+          ResumeOkFrameFlyweight.encode(frame.content, lastReceivedClientPosition));
+      return frame;
+    }
+
+    public static long lastReceivedClientPosition(final Frame frame) {
+      ensureFrameType(FrameType.RESUME_OK, frame);
+      return ResumeOkFrameFlyweight.lastReceivedClientPosition(frame.content);
+    }
   }
 
   public static class Error {
@@ -367,25 +513,33 @@ public static class Error {
     private Error() {}
 
     public static Frame from(int streamId, final Throwable throwable, ByteBuf dataBuffer) {
+      return from(ByteBufAllocator.DEFAULT, streamId, throwable, dataBuffer);
+    }
+
+    public static Frame from(
+        ByteBufAllocator allocator, int streamId, final Throwable throwable, ByteBuf dataBuffer) {
       if (errorLogger.isDebugEnabled()) {
         errorLogger.debug("an error occurred, creating error frame", throwable);
       }
 
       final int code = ErrorFrameFlyweight.errorCodeFromException(throwable);
-      final Frame frame = RECYCLER.get();
+      final Frame frame = new Frame();
       frame.content =
-          ByteBufAllocator.DEFAULT.buffer(
-              ErrorFrameFlyweight.computeFrameLength(dataBuffer.readableBytes()));
+          allocator.buffer(ErrorFrameFlyweight.computeFrameLength(dataBuffer.readableBytes()));
       frame.content.writerIndex(
           ErrorFrameFlyweight.encode(frame.content, streamId, code, dataBuffer));
       return frame;
     }
 
     public static Frame from(int streamId, final Throwable throwable) {
+      return from(ByteBufAllocator.DEFAULT, streamId, throwable);
+    }
+
+    public static Frame from(ByteBufAllocator allocator, int streamId, final Throwable throwable) {
       String data = throwable.getMessage() == null ? "" : throwable.getMessage();
       byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
 
-      return from(streamId, throwable, Unpooled.wrappedBuffer(bytes));
+      return from(allocator, streamId, throwable, Unpooled.wrappedBuffer(bytes));
     }
 
     public static int errorCode(final Frame frame) {
@@ -403,10 +557,14 @@ public static class Lease {
     private Lease() {}
 
     public static Frame from(int ttl, int numberOfRequests, ByteBuf metadata) {
-      final Frame frame = RECYCLER.get();
+      return from(ByteBufAllocator.DEFAULT, ttl, numberOfRequests, metadata);
+    }
+
+    public static Frame from(
+        ByteBufAllocator allocator, int ttl, int numberOfRequests, ByteBuf metadata) {
+      final Frame frame = new Frame();
       frame.content =
-          ByteBufAllocator.DEFAULT.buffer(
-              LeaseFrameFlyweight.computeFrameLength(metadata.readableBytes()));
+          allocator.buffer(LeaseFrameFlyweight.computeFrameLength(metadata.readableBytes()));
       frame.content.writerIndex(
           LeaseFrameFlyweight.encode(frame.content, ttl, numberOfRequests, metadata));
       return frame;
@@ -427,17 +585,25 @@ public static class RequestN {
     private RequestN() {}
 
     public static Frame from(int streamId, long requestN) {
+      return from(ByteBufAllocator.DEFAULT, streamId, requestN);
+    }
+
+    public static Frame from(ByteBufAllocator allocator, int streamId, long requestN) {
       int v = requestN > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) requestN;
-      return from(streamId, v);
+      return from(allocator, streamId, v);
     }
 
     public static Frame from(int streamId, int requestN) {
+      return from(ByteBufAllocator.DEFAULT, streamId, requestN);
+    }
+
+    public static Frame from(ByteBufAllocator allocator, int streamId, int requestN) {
       if (requestN < 1) {
         throw new IllegalStateException("request n must be greater than 0");
       }
 
-      final Frame frame = RECYCLER.get();
-      frame.content = ByteBufAllocator.DEFAULT.buffer(RequestNFrameFlyweight.computeFrameLength());
+      final Frame frame = new Frame();
+      frame.content = allocator.buffer(RequestNFrameFlyweight.computeFrameLength());
       frame.content.writerIndex(RequestNFrameFlyweight.encode(frame.content, streamId, requestN));
       return frame;
     }
@@ -452,21 +618,55 @@ public static class Request {
     private Request() {}
 
     public static Frame from(int streamId, FrameType type, Payload payload, long initialRequestN) {
+      return from(ByteBufAllocator.DEFAULT, streamId, type, payload, initialRequestN);
+    }
+
+    public static Frame from(
+        ByteBufAllocator allocator,
+        int streamId,
+        FrameType type,
+        Payload payload,
+        long initialRequestN) {
       int v = initialRequestN > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) initialRequestN;
-      return from(streamId, type, payload, v);
+      return from(allocator, streamId, type, payload, v);
     }
 
     public static Frame from(int streamId, FrameType type, Payload payload, int initialRequestN) {
+      return from(ByteBufAllocator.DEFAULT, streamId, type, payload, initialRequestN);
+    }
+
+    public static Frame from(
+        ByteBufAllocator allocator,
+        int streamId,
+        FrameType type,
+        Payload payload,
+        int initialRequestN) {
       if (initialRequestN < 1) {
         throw new IllegalStateException("initial request n must be greater than 0");
       }
-      final @Nullable ByteBuf metadata =
-          payload.hasMetadata() ? Unpooled.wrappedBuffer(payload.getMetadata()) : null;
-      final ByteBuf data = Unpooled.wrappedBuffer(payload.getData());
+      final @Nullable ByteBuf metadata = payload.hasMetadata() ? payload.sliceMetadata() : null;
+      final ByteBuf data = payload.sliceData();
+
+      final Frame frame = new Frame();
+      if (encodeAsComposite(metadata, data)) {
+        final ByteBuf header =
+            allocator.buffer(
+                RequestFrameFlyweight.computeFrameLength(type, metadata != null ? 0 : null, 0));
+        header.writerIndex(
+            RequestFrameFlyweight.encodeHeader(
+                header,
+                streamId,
+                metadata != null ? FLAGS_M : 0,
+                type,
+                initialRequestN,
+                metadata != null ? metadata.readableBytes() : null,
+                data.readableBytes()));
+        frame.content = compose(header, metadata, data);
+        return frame;
+      }
 
-      final Frame frame = RECYCLER.get();
       frame.content =
-          ByteBufAllocator.DEFAULT.buffer(
+          allocator.buffer(
               RequestFrameFlyweight.computeFrameLength(
                   type, metadata != null ? metadata.readableBytes() : null, data.readableBytes()));
 
@@ -490,9 +690,12 @@ public static Frame from(int streamId, FrameType type, Payload payload, int init
     }
 
     public static Frame from(int streamId, FrameType type, int flags) {
-      final Frame frame = RECYCLER.get();
-      frame.content =
-          ByteBufAllocator.DEFAULT.buffer(RequestFrameFlyweight.computeFrameLength(type, null, 0));
+      return from(ByteBufAllocator.DEFAULT, streamId, type, flags);
+    }
+
+    public static Frame from(ByteBufAllocator allocator, int streamId, FrameType type, int flags) {
+      final Frame frame = new Frame();
+      frame.content = allocator.buffer(RequestFrameFlyweight.computeFrameLength(type, null, 0));
       frame.content.writerIndex(
           RequestFrameFlyweight.encode(
               frame.content, streamId, flags, type, Unpooled.EMPTY_BUFFER, Unpooled.EMPTY_BUFFER));
@@ -506,9 +709,20 @@ public static Frame from(
         ByteBuf data,
         int initialRequestN,
         int flags) {
-      final Frame frame = RECYCLER.get();
+      return from(ByteBufAllocator.DEFAULT, streamId, type, metadata, data, initialRequestN, flags);
+    }
+
+    public static Frame from(
+        ByteBufAllocator allocator,
+        int streamId,
+        FrameType type,
+        ByteBuf metadata,
+        ByteBuf data,
+        int initialRequestN,
+        int flags) {
+      final Frame frame = new Frame();
       frame.content =
-          ByteBufAllocator.DEFAULT.buffer(
+          allocator.buffer(
               RequestFrameFlyweight.computeFrameLength(
                   type, metadata.readableBytes(), data.readableBytes()));
       frame.content.writerIndex(
@@ -542,7 +756,7 @@ public static int initialRequestN(final Frame frame) {
 
     public static boolean isRequestChannelComplete(final Frame frame) {
       ensureFrameType(FrameType.REQUEST_CHANNEL, frame);
-      final int flags = FrameHeaderFlyweight.flags(frame.content);
+      final int flags = frame.flags();
 
       return (flags & FrameHeaderFlyweight.FLAGS_C) == FrameHeaderFlyweight.FLAGS_C;
     }
@@ -553,25 +767,65 @@ public static class PayloadFrame {
     private PayloadFrame() {}
 
     public static Frame from(int streamId, FrameType type) {
-      return from(streamId, type, null, Unpooled.EMPTY_BUFFER, 0);
+      return from(ByteBufAllocator.DEFAULT, streamId, type);
+    }
+
+    public static Frame from(ByteBufAllocator allocator, int streamId, FrameType type) {
+      return from(allocator, streamId, type, null, Unpooled.EMPTY_BUFFER, 0);
     }
 
     public static Frame from(int streamId, FrameType type, Payload payload) {
-      return from(streamId, type, payload, payload.hasMetadata() ? FLAGS_M : 0);
+      return from(ByteBufAllocator.DEFAULT, streamId, type, payload);
+    }
+
+    public static Frame from(
+        ByteBufAllocator allocator, int streamId, FrameType type, Payload payload) {
+      return from(allocator, streamId, type, payload, payload.hasMetadata() ? FLAGS_M : 0);
     }
 
     public static Frame from(int streamId, FrameType type, Payload payload, int flags) {
-      final ByteBuf metadata =
-          payload.hasMetadata() ? Unpooled.wrappedBuffer(payload.getMetadata()) : null;
-      final ByteBuf data = Unpooled.wrappedBuffer(payload.getData());
-      return from(streamId, type, metadata, data, flags);
+      return from(ByteBufAllocator.DEFAULT, streamId, type, payload, flags);
+    }
+
+    public static Frame from(
+        ByteBufAllocator allocator, int streamId, FrameType type, Payload payload, int flags) {
+      final @Nullable ByteBuf metadata = payload.hasMetadata() ? payload.sliceMetadata() : null;
+      final ByteBuf data = payload.sliceData();
+      return from(allocator, streamId, type, metadata, data, flags);
     }
 
     public static Frame from(
         int streamId, FrameType type, @Nullable ByteBuf metadata, ByteBuf data, int flags) {
-      final Frame frame = RECYCLER.get();
+      return from(ByteBufAllocator.DEFAULT, streamId, type, metadata, data, flags);
+    }
+
+    public static Frame from(
+        ByteBufAllocator allocator,
+        int streamId,
+        FrameType type,
+        @Nullable ByteBuf metadata,
+        ByteBuf data,
+        int flags) {
+      final Frame frame = new Frame();
+      if (encodeAsComposite(metadata, data)) {
+        final ByteBuf header =
+            allocator.buffer(
+                FrameHeaderFlyweight.computeFrameHeaderLength(
+                    type, metadata != null ? 0 : null, 0));
+        header.writerIndex(
+            FrameHeaderFlyweight.encodeHeader(
+                header,
+                streamId,
+                flags,
+                type,
+                metadata != null ? metadata.readableBytes() : null,
+                data.readableBytes()));
+        frame.content = compose(header, metadata, data);
+        return frame;
+      }
+
       frame.content =
-          ByteBufAllocator.DEFAULT.buffer(
+          allocator.buffer(
               FrameHeaderFlyweight.computeFrameHeaderLength(
                   type, metadata != null ? metadata.readableBytes() : null, data.readableBytes()));
       frame.content.writerIndex(
@@ -585,9 +839,13 @@ public static class Cancel {
     private Cancel() {}
 
     public static Frame from(int streamId) {
-      final Frame frame = RECYCLER.get();
+      return from(ByteBufAllocator.DEFAULT, streamId);
+    }
+
+    public static Frame from(ByteBufAllocator allocator, int streamId) {
+      final Frame frame = new Frame();
       frame.content =
-          ByteBufAllocator.DEFAULT.buffer(
+          allocator.buffer(
               FrameHeaderFlyweight.computeFrameHeaderLength(FrameType.CANCEL, null, 0));
       frame.content.writerIndex(
           FrameHeaderFlyweight.encode(
@@ -601,26 +859,65 @@ public static class Keepalive {
     private Keepalive() {}
 
     public static Frame from(ByteBuf data, boolean respond) {
-      final Frame frame = RECYCLER.get();
+      return from(ByteBufAllocator.DEFAULT, data, respond);
+    }
+
+    public static Frame from(ByteBufAllocator allocator, ByteBuf data, boolean respond) {
+      return from(allocator, data, respond, 0);
+    }
+
+    public static Frame from(
+        ByteBufAllocator allocator, ByteBuf data, boolean respond, long lastPosition) {
+      final Frame frame = new Frame();
       frame.content =
-          ByteBufAllocator.DEFAULT.buffer(
-              KeepaliveFrameFlyweight.computeFrameLength(data.readableBytes()));
+          allocator.buffer(KeepaliveFrameFlyweight.computeFrameLength(data.readableBytes()));
 
       final int flags = respond ? KeepaliveFrameFlyweight.FLAGS_KEEPALIVE_R : 0;
-      frame.content.writerIndex(KeepaliveFrameFlyweight.encode(frame.content, flags, data));
+      frame.content.writerIndex(
+          KeepaliveFrameFlyweight.encode(frame.content, flags, lastPosition, data));
 
       return frame;
     }
 
+    public static long lastPosition(final Frame frame) {
+      ensureFrameType(FrameType.KEEPALIVE, frame);
+      return KeepaliveFrameFlyweight.lastPosition(frame.content);
+    }
+
     public static boolean hasRespondFlag(final Frame frame) {
       ensureFrameType(FrameType.KEEPALIVE, frame);
-      final int flags = FrameHeaderFlyweight.flags(frame.content);
+      final int flags = frame.flags();
 
       return (flags & KeepaliveFrameFlyweight.FLAGS_KEEPALIVE_R)
           == KeepaliveFrameFlyweight.FLAGS_KEEPALIVE_R;
     }
   }
 
+  private static boolean encodeAsComposite(@Nullable ByteBuf metadata, ByteBuf data) {
+    if (COMPOSITE_ENCODING_THRESHOLD < 0) {
+      return false;
+    }
+
+    final int length = data.readableBytes() + (metadata != null ? metadata.readableBytes() : 0);
+    return length >= COMPOSITE_ENCODING_THRESHOLD;
+  }
+
+  /**
+   * Appends retained metadata and data to an encoded header. The payload buffers are released
+   * together with the returned buffer, i.e. once the frame has been written out.
+   */
+  private static ByteBuf compose(ByteBuf header, @Nullable ByteBuf metadata, ByteBuf data) {
+    final CompositeByteBuf content = header.alloc().compositeBuffer(3);
+    content.addComponent(true, header);
+    if (metadata != null && metadata.isReadable()) {
+      content.addComponent(true, metadata.retain());
+    }
+    if (data.isReadable()) {
+      content.addComponent(true, data.retain());
+    }
+    return content;
+  }
+
   public static void ensureFrameType(final FrameType frameType, final Frame frame) {
     final FrameType typeInFrame = frame.getType();
 
@@ -631,9 +928,9 @@ public static void ensureFrameType(final FrameType frameType, final Frame frame)
 
   @Override
   public String toString() {
-    FrameType type = FrameHeaderFlyweight.frameType(content);
+    FrameType type = getType();
     StringBuilder payload = new StringBuilder();
-    @Nullable ByteBuf metadata = FrameHeaderFlyweight.sliceFrameMetadata(content);
+    @Nullable ByteBuf metadata = sliceMetadata();
 
     if (metadata != null) {
       if (0 < metadata.readableBytes()) {
@@ -642,12 +939,12 @@ public String toString() {
       }
     }
 
-    ByteBuf data = FrameHeaderFlyweight.sliceFrameData(content);
+    ByteBuf data = sliceData();
     if (0 < data.readableBytes()) {
       payload.append(String.format("data: \"%s\" ", data.toString(StandardCharsets.UTF_8)));
     }
 
-    long streamId = FrameHeaderFlyweight.streamId(content);
+    long streamId = getStreamId();
 
     String additionalFlags = "";
     switch (type) {
@@ -658,7 +955,22 @@ public String toString() {
         additionalFlags = " RequestN: " + RequestN.requestN(this);
         break;
       case KEEPALIVE:
-        additionalFlags = " Respond flag: " + Keepalive.hasRespondFlag(this);
+        additionalFlags =
+            " Respond flag: "
+                + Keepalive.hasRespondFlag(this)
+                + " Last position: "
+                + Keepalive.lastPosition(this);
+        break;
+      case RESUME:
+        additionalFlags =
+            " Last received server position: "
+                + Resume.lastReceivedServerPosition(this)
+                + " First available client position: "
+                + Resume.firstAvailableClientPosition(this);
+        break;
+      case RESUME_OK:
+        additionalFlags =
+            " Last received client position: " + ResumeOk.lastReceivedClientPosition(this);
         break;
       case REQUEST_STREAM:
       case REQUEST_CHANNEL:
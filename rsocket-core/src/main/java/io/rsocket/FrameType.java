@@ -38,7 +38,7 @@ public enum FrameType {
   ERROR(0x0B, Flags.CAN_HAVE_METADATA_AND_DATA),
   // Requester & Responder
   METADATA_PUSH(0x0C, Flags.CAN_HAVE_METADATA),
-  // Resumption frames, not yet implemented
+  // Resumption
   RESUME(0x0D),
   RESUME_OK(0x0E),
   // synthetic types from Responder for use by the rest of the machinery
@@ -15,6 +15,8 @@
  */
 package io.rsocket;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
@@ -42,6 +44,26 @@ public interface Payload {
    */
   ByteBuffer getData();
 
+  /**
+   * Returns the Payload metadata as a {@link ByteBuf} without copying it. The returned buffer is not
+   * retained and shares its reference count with the payload, if any.
+   *
+   * @return payload metadata, empty if there is no metadata.
+   */
+  default ByteBuf sliceMetadata() {
+    return hasMetadata() ? Unpooled.wrappedBuffer(getMetadata()) : Unpooled.EMPTY_BUFFER;
+  }
+
+  /**
+   * Returns the Payload data as a {@link ByteBuf} without copying it. The returned buffer is not
+   * retained and shares its reference count with the payload, if any.
+   *
+   * @return payload data.
+   */
+  default ByteBuf sliceData() {
+    return Unpooled.wrappedBuffer(getData());
+  }
+
   default String getMetadataUtf8() {
     return StandardCharsets.UTF_8.decode(getMetadata()).toString();
   }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket;
+
+import io.rsocket.util.ByteBufPayload;
+import io.rsocket.util.PayloadImpl;
+import java.util.function.Function;
+
+/**
+ * Turns an inbound {@link Frame} into the {@link Payload} handed to a responder or to a requester's
+ * subscriber. The frame is released by the caller once this function returns, so implementations
+ * must either copy what they need or retain the frame content.
+ */
+@FunctionalInterface
+public interface PayloadDecoder extends Function<Frame, Payload> {
+
+  /** Copies data and metadata out of the frame. Payloads do not need to be released. */
+  PayloadDecoder DEFAULT = PayloadImpl::new;
+
+  /**
+   * Exposes data and metadata as slices of the frame buffer without copying. Payloads are {@link
+   * ByteBufPayload}s and must be released by whoever consumes them.
+   */
+  PayloadDecoder ZERO_COPY = ByteBufPayload::create;
+}
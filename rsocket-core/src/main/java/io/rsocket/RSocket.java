@@ -24,7 +24,7 @@
  * A contract providing different interaction models for <a
  * href="https://github.com/RSocket/reactivesocket/blob/master/Protocol.md">RSocket protocol</a>.
  */
-public interface RSocket extends Availability, Closeable {
+public interface RSocket extends Availability, Closeable, ConnectionStats {
 
   /**
    * Fire and Forget interaction model of {@code RSocket}.
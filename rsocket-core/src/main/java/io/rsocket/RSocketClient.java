@@ -18,23 +18,38 @@
 
 import static io.rsocket.util.ExceptionUtil.noStacktrace;
 
-import io.netty.buffer.Unpooled;
-import io.netty.util.collection.IntObjectHashMap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
 import io.rsocket.exceptions.ConnectionException;
 import io.rsocket.exceptions.Exceptions;
+import io.rsocket.exceptions.RejectedException;
+import io.rsocket.internal.ConcurrentStreamLimit;
+import io.rsocket.internal.FairFrameProcessor;
 import io.rsocket.internal.LimitableRequestPublisher;
-import io.rsocket.util.PayloadImpl;
+import io.rsocket.internal.OutboundWatermark;
+import io.rsocket.internal.ReceiveBuffers;
+import io.rsocket.internal.RequestDeadlines;
+import io.rsocket.internal.RequestNCoalescer;
+import io.rsocket.internal.StreamTable;
+import io.rsocket.keepalive.KeepAliveManager;
+import io.rsocket.lease.LeaseImpl;
+import io.rsocket.lease.LeaseTracker;
+import io.rsocket.util.Clock;
 import java.nio.channels.ClosedChannelException;
 import java.time.Duration;
 import java.util.Collection;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import javax.annotation.Nullable;
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
+import reactor.core.CoreSubscriber;
 import reactor.core.Disposable;
 import reactor.core.publisher.*;
 
@@ -43,19 +58,35 @@ class RSocketClient implements RSocket {
 
   private static final ClosedChannelException CLOSED_CHANNEL_EXCEPTION =
       noStacktrace(new ClosedChannelException());
+  private static final RejectedException LEASE_REJECTED_EXCEPTION =
+      noStacktrace(new RejectedException("No valid lease to send the request"));
+  private static final RejectedException STREAM_LIMIT_EXCEPTION =
+      noStacktrace(new RejectedException("Too many concurrent streams on the connection"));
+  private static final TimeoutException DEADLINE_EXCEEDED_EXCEPTION =
+      noStacktrace(new TimeoutException("Request deadline exceeded"));
 
   private final DuplexConnection connection;
   private final Consumer<Throwable> errorConsumer;
   private final StreamIdSupplier streamIdSupplier;
+  private final PayloadDecoder payloadDecoder;
+  private final ByteBufAllocator allocator;
   private final MonoProcessor<Void> started;
-  private final IntObjectHashMap<LimitableRequestPublisher> senders;
-  private final IntObjectHashMap<Subscriber<Payload>> receivers;
+  private final StreamTable<LimitableRequestPublisher> senders;
+  private final StreamTable<Subscriber<Payload>> receivers;
   private final AtomicInteger missedAckCounter;
+  private final @Nullable LeaseTracker leaseTracker;
+  private final int requestNBatchSize;
+  private final ConcurrentStreamLimit streamLimit;
+  private final @Nullable RequestDeadlines deadlines;
+  private final ReceiveBuffers receiveBuffers;
 
-  private final EmitterProcessor<Frame> sendProcessor;
+  private final FairFrameProcessor sendProcessor;
+  private final OutboundWatermark outbound;
 
   private @Nullable Disposable keepAliveSendSub;
   private volatile long timeLastTickSentMs;
+  private volatile double roundTripTime;
+  private volatile double roundTripJitter;
 
   RSocketClient(
       DuplexConnection connection,
@@ -71,29 +102,51 @@ class RSocketClient implements RSocket {
       Duration tickPeriod,
       Duration ackTimeout,
       int missedAcks) {
+    this(
+        connection,
+        errorConsumer,
+        streamIdSupplier,
+        tickPeriod,
+        ackTimeout,
+        missedAcks,
+        new ConnectionOptions());
+  }
+
+  RSocketClient(
+      DuplexConnection connection,
+      Consumer<Throwable> errorConsumer,
+      StreamIdSupplier streamIdSupplier,
+      Duration tickPeriod,
+      Duration ackTimeout,
+      int missedAcks,
+      ConnectionOptions options) {
     this.connection = connection;
     this.errorConsumer = errorConsumer;
     this.streamIdSupplier = streamIdSupplier;
+    this.payloadDecoder = options.payloadDecoder();
+    this.allocator = options.allocator(connection);
     this.started = MonoProcessor.create();
-    this.senders = new IntObjectHashMap<>(256, 0.9f);
-    this.receivers = new IntObjectHashMap<>(256, 0.9f);
+    this.senders = new StreamTable<>();
+    this.receivers = new StreamTable<>();
     this.missedAckCounter = new AtomicInteger();
-    this.sendProcessor = EmitterProcessor.create();
+    this.leaseTracker = options.leaseTracker();
+    this.requestNBatchSize = options.requestNBatchSize();
+    this.streamLimit = options.streamLimit();
+    Duration requestTimeout = options.requestTimeout();
+    this.deadlines =
+        Duration.ZERO.equals(requestTimeout)
+            ? null
+            : new RequestDeadlines(requestTimeout, this::expireStream);
+    this.receiveBuffers = options.receiveBuffers();
+    this.sendProcessor = new FairFrameProcessor();
+    this.outbound = new OutboundWatermark();
 
     if (!Duration.ZERO.equals(tickPeriod)) {
       long ackTimeoutMs = ackTimeout.toMillis();
-
+      this.timeLastTickSentMs = System.currentTimeMillis();
       this.keepAliveSendSub =
-          started
-              .thenMany(Flux.interval(tickPeriod))
-              .doOnSubscribe(s -> timeLastTickSentMs = System.currentTimeMillis())
-              .flatMap(i -> sendKeepAlive(ackTimeoutMs, missedAcks))
-              .doOnError(
-                  t -> {
-                    errorConsumer.accept(t);
-                    connection.close().subscribe();
-                  })
-              .subscribe();
+          KeepAliveManager.shared()
+              .start(tickPeriod, now -> sendKeepAlive(now, ackTimeoutMs, missedAcks));
     }
 
     connection.onClose().doFinally(signalType -> cleanup()).doOnError(errorConsumer).subscribe();
@@ -106,19 +159,20 @@ class RSocketClient implements RSocket {
         .subscribe();
 
     connection
-        .send(sendProcessor)
+        .send(sendProcessor.doOnNext(outbound::dequeued))
         .doOnError(this::handleSendProcessorError)
         .doFinally(this::handleSendProcessorCancel)
         .subscribe();
   }
 
+  private void sendFrame(Frame frame) {
+    outbound.enqueued(frame);
+    sendProcessor.onNext(frame);
+  }
+
   private void handleSendProcessorError(Throwable t) {
-    Collection<Subscriber<Payload>> values;
-    Collection<LimitableRequestPublisher> values1;
-    synchronized (RSocketClient.this) {
-      values = receivers.values();
-      values1 = senders.values();
-    }
+    Collection<Subscriber<Payload>> values = receivers.values();
+    Collection<LimitableRequestPublisher> values1 = senders.values();
 
     for (Subscriber subscriber : values) {
       try {
@@ -137,12 +191,8 @@ private void handleSendProcessorCancel(SignalType t) {
     if (SignalType.ON_ERROR == t) {
       return;
     }
-    Collection<Subscriber<Payload>> values;
-    Collection<LimitableRequestPublisher> values1;
-    synchronized (RSocketClient.this) {
-      values = receivers.values();
-      values1 = senders.values();
-    }
+    Collection<Subscriber<Payload>> values = receivers.values();
+    Collection<LimitableRequestPublisher> values1 = senders.values();
 
     for (Subscriber subscriber : values) {
       try {
@@ -157,23 +207,47 @@ private void handleSendProcessorCancel(SignalType t) {
     }
   }
 
-  private Mono<Void> sendKeepAlive(long ackTimeoutMs, int missedAcks) {
-    return Mono.fromRunnable(
-        () -> {
-          long now = System.currentTimeMillis();
-          if (now - timeLastTickSentMs > ackTimeoutMs) {
-            int count = missedAckCounter.incrementAndGet();
-            if (count >= missedAcks) {
-              String message =
-                  String.format(
-                      "Missed %d keep-alive acks with a threshold of %d and a ack timeout of %d ms",
-                      count, missedAcks, ackTimeoutMs);
-              throw new ConnectionException(message);
-            }
-          }
+  private void sendKeepAlive(long now, long ackTimeoutMs, int missedAcks) {
+    if (now - timeLastTickSentMs > ackTimeoutMs) {
+      int count = missedAckCounter.incrementAndGet();
+      if (count >= missedAcks) {
+        String message =
+            String.format(
+                "Missed %d keep-alive acks with a threshold of %d and a ack timeout of %d ms",
+                count, missedAcks, ackTimeoutMs);
+        if (keepAliveSendSub != null) {
+          keepAliveSendSub.dispose();
+        }
+        errorConsumer.accept(new ConnectionException(message));
+        connection.close().subscribe();
+        return;
+      }
+    }
 
-          sendProcessor.onNext(Frame.Keepalive.from(Unpooled.EMPTY_BUFFER, true));
-        });
+    // The server echoes the data back, which gives the round trip time of the connection
+    ByteBuf data = allocator.buffer(Long.BYTES).writeLong(Clock.now());
+    try {
+      sendFrame(Frame.Keepalive.from(allocator, data, true));
+    } finally {
+      data.release();
+    }
+  }
+
+  private void updateRoundTripTime(Frame keepAliveAck) {
+    ByteBuf data = keepAliveAck.sliceData();
+    if (data.readableBytes() < Long.BYTES) {
+      return;
+    }
+
+    double sample = Clock.elapsedSince(data.getLong(data.readerIndex()));
+    // Smoothing as for TCP retransmission timers, see RFC 6298
+    if (roundTripTime == 0.0) {
+      roundTripTime = sample;
+      roundTripJitter = sample / 2;
+    } else {
+      roundTripJitter += (Math.abs(roundTripTime - sample) - roundTripJitter) / 4;
+      roundTripTime += (sample - roundTripTime) / 8;
+    }
   }
 
   @Override
@@ -181,10 +255,13 @@ public Mono<Void> fireAndForget(Payload payload) {
     Mono<Void> defer =
         Mono.fromRunnable(
             () -> {
-              final int streamId = streamIdSupplier.nextStreamId();
+              if (!tryAcquireLease()) {
+                throw LEASE_REJECTED_EXCEPTION;
+              }
+              final int streamId = streamIdSupplier.nextStreamId(receivers);
               final Frame requestFrame =
-                  Frame.Request.from(streamId, FrameType.FIRE_AND_FORGET, payload, 1);
-              sendProcessor.onNext(requestFrame);
+                  Frame.Request.from(allocator, streamId, FrameType.FIRE_AND_FORGET, payload, 1);
+              sendFrame(requestFrame);
             });
 
     return started.then(defer);
@@ -207,14 +284,38 @@ public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
 
   @Override
   public Mono<Void> metadataPush(Payload payload) {
-    final Frame requestFrame = Frame.Request.from(0, FrameType.METADATA_PUSH, payload, 1);
-    sendProcessor.onNext(requestFrame);
+    final Frame requestFrame =
+        Frame.Request.from(allocator, 0, FrameType.METADATA_PUSH, payload, 1);
+    sendFrame(requestFrame);
     return Mono.empty();
   }
 
   @Override
   public double availability() {
-    return connection.availability();
+    double availability = Math.min(connection.availability(), outbound.availability());
+    return leaseTracker == null
+        ? availability
+        : Math.min(availability, leaseTracker.availability());
+  }
+
+  @Override
+  public double roundTripTime() {
+    return roundTripTime;
+  }
+
+  @Override
+  public double roundTripJitter() {
+    return roundTripJitter;
+  }
+
+  @Override
+  public long receiveBufferedBytes() {
+    return receiveBuffers.bufferedBytes();
+  }
+
+  @Override
+  public long maxStreamReceiveBufferedBytes() {
+    return receiveBuffers.maxStreamBufferedBytes();
   }
 
   @Override
@@ -231,28 +332,51 @@ public Flux<Payload> handleRequestStream(final Payload payload) {
     return started.thenMany(
         Flux.defer(
             () -> {
-              int streamId = streamIdSupplier.nextStreamId();
+              Throwable rejected = tryStartStream();
+              if (rejected != null) {
+                return Flux.error(rejected);
+              }
+              int streamId = streamIdSupplier.nextStreamId(receivers);
 
-              UnicastProcessor<Payload> receiver = UnicastProcessor.create();
+              UnicastProcessor<Payload> receiver =
+                  UnicastProcessor.create(ReceiveBuffers.newQueue(requestNBatchSize));
+              ReceiveBuffers.StreamBuffer buffer = receiveBuffers.open(streamId);
 
-              synchronized (this) {
-                receivers.put(streamId, receiver);
-              }
+              receivers.put(streamId, receiver);
+              startDeadline(streamId);
 
               AtomicBoolean first = new AtomicBoolean(false);
+              RequestNCoalescer requestN = new RequestNCoalescer(requestNBatchSize);
 
               return receiver
+                  .doOnNext(
+                      p -> {
+                        buffer.delivered(p);
+                        long n = requestN.received();
+                        if (n > 0
+                            && contains(streamId)
+                            && connection.availability() > 0.0
+                            && !receiver.isTerminated()) {
+                          buffer.granted(n);
+                          sendFrame(Frame.RequestN.from(allocator, streamId, n));
+                        }
+                      })
                   .doOnRequest(
                       l -> {
+                        long n = requestN.request(l);
                         if (first.compareAndSet(false, true) && !receiver.isTerminated()) {
                           final Frame requestFrame =
-                              Frame.Request.from(streamId, FrameType.REQUEST_STREAM, payload, l);
+                              Frame.Request.from(
+                                  allocator, streamId, FrameType.REQUEST_STREAM, payload, n);
 
-                          sendProcessor.onNext(requestFrame);
-                        } else if (contains(streamId)
+                          buffer.granted(n);
+                          sendFrame(requestFrame);
+                        } else if (n > 0
+                            && contains(streamId)
                             && connection.availability() > 0.0
                             && !receiver.isTerminated()) {
-                          sendProcessor.onNext(Frame.RequestN.from(streamId, l));
+                          buffer.granted(n);
+                          sendFrame(Frame.RequestN.from(allocator, streamId, n));
                         }
                       })
                   .doOnError(
@@ -260,7 +384,7 @@ public Flux<Payload> handleRequestStream(final Payload payload) {
                         if (contains(streamId)
                             && connection.availability() > 0.0
                             && !receiver.isTerminated()) {
-                          sendProcessor.onNext(Frame.Error.from(streamId, t));
+                          sendFrame(Frame.Error.from(allocator, streamId, t));
                         }
                       })
                   .doOnCancel(
@@ -268,64 +392,76 @@ public Flux<Payload> handleRequestStream(final Payload payload) {
                         if (contains(streamId)
                             && connection.availability() > 0.0
                             && !receiver.isTerminated()) {
-                          sendProcessor.onNext(Frame.Cancel.from(streamId));
+                          sendFrame(Frame.Cancel.from(allocator, streamId));
                         }
                       })
-                  .doFinally(s -> removeReceiver(streamId));
+                  .doFinally(s -> finishStream(streamId));
             }));
   }
 
   private Mono<Payload> handleRequestResponse(final Payload payload) {
-    return started.then(
-        Mono.defer(
-            () -> {
-              int streamId = streamIdSupplier.nextStreamId();
-              final Frame requestFrame =
-                  Frame.Request.from(streamId, FrameType.REQUEST_RESPONSE, payload, 1);
-
-              MonoProcessor<Payload> receiver = MonoProcessor.create();
-
-              synchronized (this) {
-                receivers.put(streamId, receiver);
-              }
-
-              sendProcessor.onNext(requestFrame);
-
-              return receiver
-                  .doOnError(t -> sendProcessor.onNext(Frame.Error.from(streamId, t)))
-                  .doOnCancel(() -> sendProcessor.onNext(Frame.Cancel.from(streamId)))
-                  .doFinally(s -> removeReceiver(streamId));
-            }));
+    Mono<Payload> response = new RequestResponseMono(this, payload);
+    // Only requests made before the connection starts receiving need to wait for it
+    return started.isTerminated() ? response : started.then(response);
   }
 
   private Flux<Payload> handleStreamResponse(Flux<Payload> request, FrameType requestType) {
     return started.thenMany(
         Flux.defer(
             new Supplier<Flux<Payload>>() {
-              final UnicastProcessor<Payload> receiver = UnicastProcessor.create();
-              final int streamId = streamIdSupplier.nextStreamId();
+              final UnicastProcessor<Payload> receiver =
+                  UnicastProcessor.create(ReceiveBuffers.newQueue(requestNBatchSize));
+              final RequestNCoalescer requestN = new RequestNCoalescer(requestNBatchSize);
+              int streamId;
+              ReceiveBuffers.StreamBuffer buffer;
               volatile @Nullable MonoProcessor<Void> subscribedRequests;
-              boolean firstRequest = true;
+              volatile boolean firstRequest = true;
 
               boolean isValidToSendFrame() {
-                return contains(streamId)
+                // The peer only learns about the stream once it has been requested
+                return !firstRequest
+                    && contains(streamId)
                     && connection.availability() > 0.0
                     && !receiver.isTerminated();
               }
 
               void sendOneFrame(Frame frame) {
                 if (isValidToSendFrame()) {
-                  sendProcessor.onNext(frame);
+                  sendFrame(frame);
+                }
+              }
+
+              void sendRequestN(long n) {
+                if (isValidToSendFrame()) {
+                  buffer.granted(n);
+                  sendFrame(Frame.RequestN.from(allocator, streamId, n));
                 }
               }
 
               @Override
               public Flux<Payload> get() {
+                Throwable rejected = tryStartStream();
+                if (rejected != null) {
+                  return Flux.error(rejected);
+                }
+                // Registered right away, so that the id is not handed out again after wraparound
+                streamId = streamIdSupplier.nextStreamId(receivers);
+                receivers.put(streamId, receiver);
+                buffer = receiveBuffers.open(streamId);
                 return receiver
+                    .doOnNext(
+                        p -> {
+                          buffer.delivered(p);
+                          long n = requestN.received();
+                          if (n > 0) {
+                            sendRequestN(n);
+                          }
+                        })
                     .doOnRequest(
                         l -> {
+                          long n = requestN.request(l);
                           boolean _firstRequest = false;
-                          synchronized (RSocketClient.this) {
+                          synchronized (this) {
                             if (firstRequest) {
                               _firstRequest = true;
                               firstRequest = false;
@@ -333,6 +469,7 @@ public Flux<Payload> get() {
                           }
 
                           if (_firstRequest) {
+                            buffer.granted(n);
                             Flux<Frame> requestFrames =
                                 request
                                     .transform(
@@ -341,10 +478,8 @@ public Flux<Payload> get() {
                                               LimitableRequestPublisher.wrap(f);
                                           // Need to set this to one for first the frame
                                           wrapped.increaseRequestLimit(1);
-                                          synchronized (RSocketClient.this) {
-                                            senders.put(streamId, wrapped);
-                                            receivers.put(streamId, receiver);
-                                          }
+                                          senders.put(streamId, wrapped);
+                                          startDeadline(streamId);
 
                                           return wrapped;
                                         })
@@ -364,10 +499,10 @@ public Frame apply(Payload payload) {
 
                                             if (_firstPayload) {
                                               return Frame.Request.from(
-                                                  streamId, requestType, payload, l);
+                                                  allocator, streamId, requestType, payload, n);
                                             } else {
                                               return Frame.PayloadFrame.from(
-                                                  streamId, FrameType.NEXT, payload);
+                                                  allocator, streamId, FrameType.NEXT, payload);
                                             }
                                           }
                                         })
@@ -376,56 +511,113 @@ public Frame apply(Payload payload) {
                                           if (FrameType.REQUEST_CHANNEL == requestType) {
                                             sendOneFrame(
                                                 Frame.PayloadFrame.from(
-                                                    streamId, FrameType.COMPLETE));
+                                                    allocator, streamId, FrameType.COMPLETE));
                                           }
                                         });
 
                             requestFrames
-                                .doOnNext(sendProcessor::onNext)
                                 .doOnError(
                                     t -> {
                                       errorConsumer.accept(t);
                                       receiver.cancel();
                                     })
-                                .subscribe();
-                          } else {
-                            sendOneFrame(Frame.RequestN.from(streamId, l));
+                                .subscribe(outbound.paced(RSocketClient.this::sendFrame));
+                          } else if (n > 0) {
+                            sendRequestN(n);
                           }
                         })
-                    .doOnError(t -> sendOneFrame(Frame.Error.from(streamId, t)))
+                    .doOnError(t -> sendOneFrame(Frame.Error.from(allocator, streamId, t)))
                     .doOnCancel(
                         () -> {
-                          sendOneFrame(Frame.Cancel.from(streamId));
+                          sendOneFrame(Frame.Cancel.from(allocator, streamId));
                           if (subscribedRequests != null) {
                             subscribedRequests.cancel();
                           }
                         })
                     .doFinally(
                         s -> {
-                          removeReceiver(streamId);
+                          finishStream(streamId);
                           removeSender(streamId);
                         });
               }
             }));
   }
 
-  private boolean contains(int streamId) {
-    synchronized (RSocketClient.this) {
-      return receivers.containsKey(streamId);
+  /**
+   * Requests are rejected locally once the lease of the responder is used up or expired, so they
+   * never reach an overloaded responder.
+   */
+  private boolean tryAcquireLease() {
+    return leaseTracker == null || leaseTracker.tryAcquire();
+  }
+
+  /**
+   * Admits a new stream if the connection has room for it and the lease allows it. Admitted
+   * streams must call {@link #finishStream(int)} once they end.
+   *
+   * @return the error to reject the request with, {@code null} if the stream is admitted
+   */
+  private @Nullable Throwable tryStartStream() {
+    if (!streamLimit.tryAcquire()) {
+      return STREAM_LIMIT_EXCEPTION;
+    }
+    if (!tryAcquireLease()) {
+      streamLimit.release();
+      return LEASE_REJECTED_EXCEPTION;
     }
+    return null;
   }
 
-  protected void cleanup() {
-    senders.forEach(
-        (integer, limitableRequestPublisher) ->
-            cleanUpLimitableRequestPublisher(limitableRequestPublisher));
+  private void finishStream(int streamId) {
+    removeReceiver(streamId);
+    receiveBuffers.close(streamId);
+    streamLimit.release();
+    cancelDeadline(streamId);
+  }
+
+  private void startDeadline(int streamId) {
+    if (deadlines != null) {
+      deadlines.start(streamId);
+    }
+  }
+
+  private void cancelDeadline(int streamId) {
+    if (deadlines != null) {
+      deadlines.cancel(streamId);
+    }
+  }
 
-    receivers.forEach((integer, subscriber) -> cleanUpSubscriber(subscriber));
+  /** @return number of streams with a pending deadline */
+  int pendingDeadlines() {
+    return deadlines != null ? deadlines.size() : 0;
+  }
 
-    synchronized (this) {
-      senders.clear();
-      receivers.clear();
+  /**
+   * Called once the deadline of a stream has passed: the responder is told to stop working on it
+   * and the requester fails with a {@link TimeoutException}. Whoever removes the receiver first
+   * ends the stream, so a response racing with the deadline is either delivered or dropped.
+   */
+  private void expireStream(int streamId) {
+    Subscriber<Payload> receiver = receivers.remove(streamId);
+    if (receiver != null) {
+      if (connection.availability() > 0.0) {
+        sendFrame(Frame.Cancel.from(allocator, streamId));
+      }
+      LimitableRequestPublisher sender = senders.remove(streamId);
+      if (sender != null) {
+        sender.cancel();
+      }
+      receiver.onError(DEADLINE_EXCEEDED_EXCEPTION);
     }
+  }
+
+  private boolean contains(int streamId) {
+    return receivers.containsKey(streamId);
+  }
+
+  protected void cleanup() {
+    senders.clear().forEach(this::cleanUpLimitableRequestPublisher);
+    receivers.clear().forEach(this::cleanUpSubscriber);
 
     if (null != keepAliveSendSub) {
       keepAliveSendSub.dispose();
@@ -460,12 +652,14 @@ private void handleStreamZero(FrameType type, Frame frame) {
       case ERROR:
         throw Exceptions.from(frame);
       case LEASE:
-        {
-          break;
+        if (leaseTracker != null) {
+          leaseTracker.update(new LeaseImpl(frame));
         }
+        break;
       case KEEPALIVE:
         if (!Frame.Keepalive.hasRespondFlag(frame)) {
           timeLastTickSentMs = System.currentTimeMillis();
+          updateRoundTripTime(frame);
         }
         break;
       default:
@@ -477,62 +671,105 @@ private void handleStreamZero(FrameType type, Frame frame) {
   }
 
   private void handleFrame(int streamId, FrameType type, Frame frame) {
+    // Each frame type only needs one of the tables, so look up just that one
+    switch (type) {
+      case CANCEL:
+      case REQUEST_N:
+        handleSenderFrame(streamId, type, frame);
+        break;
+      case ERROR:
+      case NEXT_COMPLETE:
+      case NEXT:
+      case COMPLETE:
+        handleReceiverFrame(streamId, type, frame);
+        break;
+      default:
+        if (!receivers.containsKey(streamId)) {
+          handleMissingResponseProcessor(streamId, type, frame);
+        } else {
+          throw new IllegalStateException(
+              "Client received supported frame on stream " + streamId + ": " + frame.toString());
+        }
+    }
+  }
+
+  private void handleSenderFrame(int streamId, FrameType type, Frame frame) {
+    if (type == FrameType.CANCEL) {
+      LimitableRequestPublisher sender = senders.remove(streamId);
+      Subscriber<Payload> receiver = receivers.remove(streamId);
+      if (sender != null) {
+        sender.cancel();
+      } else if (receiver == null) {
+        handleMissingResponseProcessor(streamId, type, frame);
+      }
+    } else {
+      LimitableRequestPublisher sender = senders.get(streamId);
+      if (sender != null) {
+        int n = Frame.RequestN.requestN(frame);
+        sender.increaseRequestLimit(n);
+      } else {
+        handleMissingResponseProcessor(streamId, type, frame);
+      }
+    }
+  }
+
+  private void handleReceiverFrame(int streamId, FrameType type, Frame frame) {
     Subscriber<Payload> receiver;
-    synchronized (this) {
+    if (type == FrameType.ERROR || type == FrameType.COMPLETE) {
+      receiver = receivers.remove(streamId);
+    } else {
       receiver = receivers.get(streamId);
     }
+
     if (receiver == null) {
       handleMissingResponseProcessor(streamId, type, frame);
-    } else {
-      switch (type) {
-        case ERROR:
-          receiver.onError(Exceptions.from(frame));
-          removeReceiver(streamId);
-          break;
-        case NEXT_COMPLETE:
-          receiver.onNext(new PayloadImpl(frame));
-          receiver.onComplete();
-          break;
-        case CANCEL:
-          {
-            LimitableRequestPublisher sender;
-            synchronized (this) {
-              sender = senders.remove(streamId);
-              removeReceiver(streamId);
-            }
-            if (sender != null) {
-              sender.cancel();
-            }
-            break;
-          }
-        case NEXT:
-          receiver.onNext(new PayloadImpl(frame));
-          break;
-        case REQUEST_N:
-          {
-            LimitableRequestPublisher sender;
-            synchronized (this) {
-              sender = senders.get(streamId);
-            }
-            if (sender != null) {
-              int n = Frame.RequestN.requestN(frame);
-              sender.increaseRequestLimit(n);
-            }
-            break;
-          }
-        case COMPLETE:
+      return;
+    }
+
+    switch (type) {
+      case ERROR:
+        receiver.onError(Exceptions.from(frame));
+        break;
+      case NEXT_COMPLETE:
+        if (deliver(streamId, receiver, frame)) {
           receiver.onComplete();
-          synchronized (this) {
-            receivers.remove(streamId);
-          }
-          break;
-        default:
-          throw new IllegalStateException(
-              "Client received supported frame on stream " + streamId + ": " + frame.toString());
-      }
+        }
+        break;
+      case NEXT:
+        deliver(streamId, receiver, frame);
+        break;
+      case COMPLETE:
+        receiver.onComplete();
+        break;
     }
   }
 
+  /** @return {@code false} if the payload was over the credit of the stream and dropped */
+  private boolean deliver(int streamId, Subscriber<Payload> receiver, Frame frame) {
+    Payload payload = payloadDecoder.apply(frame);
+    if (!receiveBuffers.received(streamId, payload)) {
+      ReferenceCountUtil.safeRelease(payload);
+      handleCreditOverrun(streamId);
+      return false;
+    }
+    receiver.onNext(payload);
+    return true;
+  }
+
+  /**
+   * A peer sending payloads it was not asked for is broken, so rather than buffering them the
+   * connection is closed with a connection error.
+   */
+  private void handleCreditOverrun(int streamId) {
+    ConnectionException error =
+        new ConnectionException("Received more payloads than requested on stream " + streamId);
+    errorConsumer.accept(error);
+    connection
+        .sendOne(Frame.Error.from(allocator, 0, error))
+        .then(Mono.defer(connection::close))
+        .subscribe(null, errorConsumer);
+  }
+
   private void handleMissingResponseProcessor(int streamId, FrameType type, Frame frame) {
     if (!streamIdSupplier.isBeforeOrCurrent(streamId)) {
       if (type == FrameType.ERROR) {
@@ -554,14 +791,140 @@ private void handleMissingResponseProcessor(int streamId, FrameType type, Frame
       }
     }
     // receiving a frame after a given stream has been cancelled/completed,
-    // so ignore (cancellation is async so there is a race condition)
+    // so ignore (cancellation is async so there is a race condition). Once stream ids have
+    // wrapped around every id may have been used before, so frames for unknown ids end up here.
   }
 
-  private synchronized void removeReceiver(int streamId) {
+  private void removeReceiver(int streamId) {
     receivers.remove(streamId);
   }
 
-  private synchronized void removeSender(int streamId) {
+  private void removeSender(int streamId) {
     senders.remove(streamId);
   }
+
+  /**
+   * Request-response interaction that needs a single object per subscription: a {@link
+   * RequestResponseSubscriber} that is at the same time the entry in the receiver table, the
+   * subscription handed to the caller and the subscriber notified of the response frame.
+   */
+  private static final class RequestResponseMono extends Mono<Payload> {
+    private final RSocketClient parent;
+    private final Payload payload;
+
+    RequestResponseMono(RSocketClient parent, Payload payload) {
+      this.parent = parent;
+      this.payload = payload;
+    }
+
+    @Override
+    public void subscribe(CoreSubscriber<? super Payload> actual) {
+      Throwable rejected = parent.tryStartStream();
+      if (rejected != null) {
+        Operators.error(actual, rejected);
+        return;
+      }
+      final int streamId = parent.streamIdSupplier.nextStreamId(parent.receivers);
+      final Frame requestFrame;
+      try {
+        requestFrame =
+            Frame.Request.from(parent.allocator, streamId, FrameType.REQUEST_RESPONSE, payload, 1);
+      } catch (Throwable t) {
+        parent.streamLimit.release();
+        Operators.error(actual, t);
+        return;
+      }
+
+      RequestResponseSubscriber receiver = new RequestResponseSubscriber(parent, actual, streamId);
+      parent.receivers.put(streamId, receiver);
+      // Started before sending, as the response may arrive before sendFrame returns
+      parent.startDeadline(streamId);
+      actual.onSubscribe(receiver);
+
+      if (receiver.isTerminated()) {
+        // Cancelled from onSubscribe, the server never needs to know about this stream
+        parent.cancelDeadline(streamId);
+        requestFrame.release();
+      } else {
+        parent.sendFrame(requestFrame);
+        receiver.requestSent();
+      }
+    }
+  }
+
+  private static final class RequestResponseSubscriber
+      extends Operators.MonoSubscriber<Payload, Payload> {
+    private static final AtomicIntegerFieldUpdater<RequestResponseSubscriber> TERMINATED =
+        AtomicIntegerFieldUpdater.newUpdater(RequestResponseSubscriber.class, "terminated");
+    private static final AtomicIntegerFieldUpdater<RequestResponseSubscriber> REQUEST_STATE =
+        AtomicIntegerFieldUpdater.newUpdater(RequestResponseSubscriber.class, "requestState");
+
+    private static final int REQUEST_PENDING = 0;
+    private static final int REQUEST_SENT = 1;
+    private static final int CANCELLED_BEFORE_SENT = 2;
+
+    private final RSocketClient parent;
+    private final int streamId;
+    private volatile int terminated;
+    private volatile int requestState;
+
+    RequestResponseSubscriber(
+        RSocketClient parent, CoreSubscriber<? super Payload> actual, int streamId) {
+      super(actual);
+      this.parent = parent;
+      this.streamId = streamId;
+    }
+
+    boolean isTerminated() {
+      return terminated == 1;
+    }
+
+    /** Called once the request frame has been sent, cancels the stream if that raced a cancel. */
+    void requestSent() {
+      if (!REQUEST_STATE.compareAndSet(this, REQUEST_PENDING, REQUEST_SENT)) {
+        parent.sendFrame(Frame.Cancel.from(parent.allocator, streamId));
+      }
+    }
+
+    @Override
+    public void onNext(Payload payload) {
+      if (TERMINATED.compareAndSet(this, 0, 1)) {
+        parent.finishStream(streamId);
+        complete(payload);
+      } else {
+        ReferenceCountUtil.safeRelease(payload);
+      }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      if (TERMINATED.compareAndSet(this, 0, 1)) {
+        parent.finishStream(streamId);
+        actual.onError(t);
+      } else {
+        Operators.onErrorDropped(t);
+      }
+    }
+
+    @Override
+    public void onComplete() {
+      if (TERMINATED.compareAndSet(this, 0, 1)) {
+        parent.finishStream(streamId);
+        actual.onComplete();
+      }
+    }
+
+    @Override
+    public void cancel() {
+      if (TERMINATED.compareAndSet(this, 0, 1)) {
+        parent.finishStream(streamId);
+        // The peer only knows about the stream once the request frame was sent, if it is still
+        // being sent requestSent() follows up with the cancel
+        if (!REQUEST_STATE.compareAndSet(this, REQUEST_PENDING, CANCELLED_BEFORE_SENT)) {
+          parent.sendFrame(Frame.Cancel.from(parent.allocator, streamId));
+        }
+      }
+      super.cancel();
+    }
+  }
 }
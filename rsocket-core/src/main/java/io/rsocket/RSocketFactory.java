@@ -16,22 +16,39 @@
 
 package io.rsocket;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.rsocket.exceptions.InvalidSetupException;
+import io.rsocket.exceptions.UnsupportedSetupException;
 import io.rsocket.fragmentation.FragmentationDuplexConnection;
 import io.rsocket.frame.SetupFrameFlyweight;
 import io.rsocket.frame.VersionFlyweight;
 import io.rsocket.internal.ClientServerInputMultiplexer;
+import io.rsocket.internal.ConcurrentStreamLimit;
+import io.rsocket.internal.ReceiveBuffers;
+import io.rsocket.internal.RequestNCoalescer;
+import io.rsocket.lease.LeaseGenerator;
+import io.rsocket.lease.LeaseTracker;
 import io.rsocket.plugins.DuplexConnectionInterceptor;
 import io.rsocket.plugins.PluginRegistry;
 import io.rsocket.plugins.Plugins;
 import io.rsocket.plugins.RSocketInterceptor;
+import io.rsocket.resume.MappedResumeSpill;
+import io.rsocket.resume.ResumableDuplexConnection;
+import io.rsocket.resume.ResumeCache;
+import io.rsocket.resume.ResumePositionCounter;
+import io.rsocket.resume.ResumeStore;
+import io.rsocket.resume.ResumeToken;
 import io.rsocket.transport.ClientTransport;
 import io.rsocket.transport.ServerTransport;
 import io.rsocket.util.PayloadImpl;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import javax.annotation.Nullable;
 import reactor.core.publisher.Mono;
 
 /** Factory for creating RSocket clients and servers. */
@@ -106,6 +123,36 @@ default <T extends Closeable> Start<T> transport(ServerTransport<T> transport) {
     T keepAliveMissedAcks(int missedAcks);
   }
 
+  public interface Resume<T> {
+    T resume();
+
+    T resumeSessionDuration(Duration sessionDuration);
+
+    T resumeCacheSize(int bytes);
+
+    T resumeSpill(Path directory, int bytes);
+  }
+
+  public interface RequestNBatching<T> {
+    T requestNBatchSize(int batchSize);
+  }
+
+  public interface StreamLimit<T> {
+    T maxConcurrentStreams(int maxStreams);
+  }
+
+  public interface RequestTimeout<T> {
+    T requestTimeout(Duration timeout);
+  }
+
+  public interface PayloadDecoding<T> {
+    T payloadDecoder(PayloadDecoder payloadDecoder);
+  }
+
+  public interface Allocation<T> {
+    T byteBufAllocator(ByteBufAllocator allocator);
+  }
+
   public interface MimeType<T> {
     T mimeType(String metadataMimeType, String dataMimeType);
 
@@ -114,6 +161,13 @@ default <T extends Closeable> Start<T> transport(ServerTransport<T> transport) {
     T metadataMimeType(String metadataMimeType);
   }
 
+  private static ResumeCache newResumeCache(
+      int cacheSize, @Nullable Path spillDirectory, int spillSize) {
+    MappedResumeSpill spill =
+        spillDirectory != null ? new MappedResumeSpill(spillDirectory, spillSize) : null;
+    return new ResumeCache(ResumePositionCounter.size(), cacheSize, spill);
+  }
+
   public static class ClientRSocketFactory
       implements Acceptor<ClientTransportAcceptor, Function<RSocket, RSocket>>,
           ClientTransportAcceptor,
@@ -121,6 +175,12 @@ default <T extends Closeable> Start<T> transport(ServerTransport<T> transport) {
           MimeType<ClientRSocketFactory>,
           Fragmentation<ClientRSocketFactory>,
           ErrorConsumer<ClientRSocketFactory>,
+          PayloadDecoding<ClientRSocketFactory>,
+          Allocation<ClientRSocketFactory>,
+          Resume<ClientRSocketFactory>,
+          RequestNBatching<ClientRSocketFactory>,
+          StreamLimit<ClientRSocketFactory>,
+          RequestTimeout<ClientRSocketFactory>,
           SetupPayload<ClientRSocketFactory> {
 
     private Supplier<Function<RSocket, RSocket>> acceptor =
@@ -132,11 +192,23 @@ default <T extends Closeable> Start<T> transport(ServerTransport<T> transport) {
     private int flags = SetupFrameFlyweight.FLAGS_STRICT_INTERPRETATION;
 
     private Payload setupPayload = PayloadImpl.EMPTY;
+    private PayloadDecoder payloadDecoder = PayloadDecoder.DEFAULT;
+    private @Nullable ByteBufAllocator allocator;
 
     private Duration tickPeriod = Duration.ZERO;
     private Duration ackTimeout = Duration.ofSeconds(30);
     private int missedAcks = 3;
 
+    private boolean resume;
+    private Duration resumeSessionDuration = Duration.ofMinutes(1);
+    private int resumeCacheSize = ResumableDuplexConnection.DEFAULT_CACHE_SIZE;
+    private @Nullable Path resumeSpillDirectory;
+    private int resumeSpillSize;
+
+    private int requestNBatchSize;
+    private int maxConcurrentStreams;
+    private Duration requestTimeout = Duration.ZERO;
+
     private String metadataMimeType = "application/binary";
     private String dataMimeType = "application/binary";
 
@@ -155,6 +227,18 @@ public ClientRSocketFactory addServerPlugin(RSocketInterceptor interceptor) {
       return this;
     }
 
+    /**
+     * Makes the client honor leases: requests are only sent while the server has granted a lease
+     * with permits left, and fail with a {@link io.rsocket.exceptions.RejectedException} otherwise.
+     * No request can be made before the first lease arrives.
+     *
+     * @return this factory
+     */
+    public ClientRSocketFactory honorLease() {
+      flags |= SetupFrameFlyweight.FLAGS_WILL_HONOR_LEASE;
+      return this;
+    }
+
     @Override
     public ClientRSocketFactory keepAlive() {
       tickPeriod = Duration.ofSeconds(20);
@@ -188,6 +272,89 @@ public ClientRSocketFactory keepAliveMissedAcks(int missedAcks) {
       return this;
     }
 
+    /**
+     * Makes the connection survive transport reconnects: when the transport connection is lost
+     * the client reconnects and both sides resend the frames the other one missed. Positions are
+     * acknowledged with keep-alive frames, so keep-alive should be enabled as well.
+     *
+     * @return this factory
+     */
+    @Override
+    public ClientRSocketFactory resume() {
+      this.resume = true;
+      return this;
+    }
+
+    @Override
+    public ClientRSocketFactory resumeSessionDuration(Duration sessionDuration) {
+      this.resumeSessionDuration = sessionDuration;
+      return this;
+    }
+
+    @Override
+    public ClientRSocketFactory resumeCacheSize(int bytes) {
+      this.resumeCacheSize = bytes;
+      return this;
+    }
+
+    /**
+     * Moves frames over the resume cache size to a memory-mapped file of {@code bytes} created in
+     * {@code directory}, instead of dropping them. Sessions can then be resumed after longer
+     * disconnects without holding the frames on heap.
+     *
+     * @return this factory
+     */
+    @Override
+    public ClientRSocketFactory resumeSpill(Path directory, int bytes) {
+      this.resumeSpillDirectory = directory;
+      this.resumeSpillSize = bytes;
+      return this;
+    }
+
+    /**
+     * Batches the credit granted to the peer of streams and channels requested from this side:
+     * up to {@code batchSize} payloads are requested ahead of the subscriber's demand and topped up
+     * once {@link RequestNCoalescer#DEFAULT_REPLENISH_RATIO} of them have been consumed, so
+     * subscribers requesting few payloads at a time do not cause a {@code REQUEST_N} frame each.
+     *
+     * @param batchSize payloads requested ahead, {@code 0} passes every request on as is
+     * @return this factory
+     */
+    @Override
+    public ClientRSocketFactory requestNBatchSize(int batchSize) {
+      this.requestNBatchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Limits the number of streams active at once in each direction of the connection. Requests
+     * made beyond the limit fail right away with a {@link
+     * io.rsocket.exceptions.RejectedException} without being sent, and requests of the server
+     * beyond it are rejected without calling the acceptor's handler.
+     *
+     * @param maxStreams maximum number of active streams, {@code 0} for no limit
+     * @return this factory
+     */
+    @Override
+    public ClientRSocketFactory maxConcurrentStreams(int maxStreams) {
+      this.maxConcurrentStreams = maxStreams;
+      return this;
+    }
+
+    /**
+     * Gives every request made to the server a deadline. A stream still active once its deadline
+     * has passed is cancelled and fails with a {@link java.util.concurrent.TimeoutException}. The
+     * deadline is kept with the stream and dropped as soon as the stream ends.
+     *
+     * @param timeout time from sending a request to its deadline, {@link Duration#ZERO} for none
+     * @return this factory
+     */
+    @Override
+    public ClientRSocketFactory requestTimeout(Duration timeout) {
+      this.requestTimeout = timeout;
+      return this;
+    }
+
     @Override
     public ClientRSocketFactory mimeType(String metadataMimeType, String dataMimeType) {
       this.dataMimeType = dataMimeType;
@@ -236,6 +403,18 @@ public ClientRSocketFactory setupPayload(Payload payload) {
       return this;
     }
 
+    @Override
+    public ClientRSocketFactory payloadDecoder(PayloadDecoder payloadDecoder) {
+      this.payloadDecoder = payloadDecoder;
+      return this;
+    }
+
+    @Override
+    public ClientRSocketFactory byteBufAllocator(ByteBufAllocator allocator) {
+      this.allocator = allocator;
+      return this;
+    }
+
     protected class StartClient implements Start<RSocket> {
       private final Supplier<ClientTransport> transportClient;
 
@@ -243,6 +422,17 @@ protected class StartClient implements Start<RSocket> {
         this.transportClient = transportClient;
       }
 
+      /** Options of one side of a connection, both sides share the receive buffers. */
+      private ConnectionOptions connectionOptions(
+          ByteBufAllocator alloc, ReceiveBuffers receiveBuffers) {
+        return new ConnectionOptions()
+            .payloadDecoder(payloadDecoder)
+            .allocator(alloc)
+            .requestNBatchSize(requestNBatchSize)
+            .streamLimit(new ConcurrentStreamLimit(maxConcurrentStreams))
+            .receiveBuffers(receiveBuffers);
+      }
+
       @Override
       public Mono<RSocket> start() {
         return transportClient
@@ -250,22 +440,42 @@ public Mono<RSocket> start() {
             .connect()
             .flatMap(
                 connection -> {
+                  ByteBufAllocator alloc = allocator != null ? allocator : connection.alloc();
+                  int setupFlags = flags;
+                  ByteBuf resumeToken = Unpooled.EMPTY_BUFFER;
+                  if (resume) {
+                    ResumeToken token = ResumeToken.generate();
+                    connection =
+                        new ResumableDuplexConnection(
+                            connection,
+                            token,
+                            () -> transportClient.get().connect(),
+                            resumeSessionDuration,
+                            newResumeCache(
+                                resumeCacheSize, resumeSpillDirectory, resumeSpillSize));
+                    setupFlags |= SetupFrameFlyweight.FLAGS_RESUME_ENABLE;
+                    resumeToken = Unpooled.wrappedBuffer(token.toByteArray());
+                  }
+
                   Frame setupFrame =
                       Frame.Setup.from(
-                          flags,
+                          alloc,
+                          setupFlags,
                           (int) ackTimeout.toMillis(),
                           (int) ackTimeout.toMillis() * missedAcks,
+                          resumeToken,
                           metadataMimeType,
                           dataMimeType,
                           setupPayload);
 
                   if (mtu > 0) {
-                    connection = new FragmentationDuplexConnection(connection, mtu);
+                    connection = new FragmentationDuplexConnection(alloc, connection, mtu);
                   }
 
                   ClientServerInputMultiplexer multiplexer =
                       new ClientServerInputMultiplexer(connection, plugins);
 
+                  ReceiveBuffers receiveBuffers = new ReceiveBuffers();
                   RSocketClient rSocketClient =
                       new RSocketClient(
                           multiplexer.asClientConnection(),
@@ -273,7 +483,13 @@ public Mono<RSocket> start() {
                           StreamIdSupplier.clientSupplier(),
                           tickPeriod,
                           ackTimeout,
-                          missedAcks);
+                          missedAcks,
+                          connectionOptions(alloc, receiveBuffers)
+                              .leaseTracker(
+                                  Frame.isFlagSet(flags, SetupFrameFlyweight.FLAGS_WILL_HONOR_LEASE)
+                                      ? new LeaseTracker()
+                                      : null)
+                              .requestTimeout(requestTimeout));
 
                   Mono<RSocket> wrappedRSocketClient =
                       Mono.just(rSocketClient).map(plugins::applyClient);
@@ -290,7 +506,10 @@ public Mono<RSocket> start() {
                             .doOnNext(
                                 rSocket ->
                                     new RSocketServer(
-                                        multiplexer.asServerConnection(), rSocket, errorConsumer))
+                                        multiplexer.asServerConnection(),
+                                        rSocket,
+                                        errorConsumer,
+                                        connectionOptions(alloc, receiveBuffers)))
                             .then(finalConnection.sendOne(setupFrame))
                             .then(wrappedRSocketClient);
                       });
@@ -302,12 +521,30 @@ public Mono<RSocket> start() {
   public static class ServerRSocketFactory
       implements Acceptor<ServerTransportAcceptor, SocketAcceptor>,
           Fragmentation<ServerRSocketFactory>,
-          ErrorConsumer<ServerRSocketFactory> {
+          ErrorConsumer<ServerRSocketFactory>,
+          PayloadDecoding<ServerRSocketFactory>,
+          Allocation<ServerRSocketFactory>,
+          Resume<ServerRSocketFactory>,
+          RequestNBatching<ServerRSocketFactory>,
+          StreamLimit<ServerRSocketFactory>,
+          RequestTimeout<ServerRSocketFactory> {
 
     private Supplier<SocketAcceptor> acceptor;
     private Consumer<Throwable> errorConsumer = Throwable::printStackTrace;
     private int mtu = 0;
     private PluginRegistry plugins = new PluginRegistry(Plugins.defaultPlugins());
+    private PayloadDecoder payloadDecoder = PayloadDecoder.DEFAULT;
+    private @Nullable ByteBufAllocator allocator;
+    private @Nullable LeaseGenerator leaseGenerator;
+    private boolean resume;
+    private Duration resumeSessionDuration = Duration.ofMinutes(1);
+    private int resumeCacheSize = ResumableDuplexConnection.DEFAULT_CACHE_SIZE;
+    private @Nullable Path resumeSpillDirectory;
+    private int resumeSpillSize;
+    private int requestNBatchSize;
+    private int maxConcurrentStreams;
+    private int serverMaxConcurrentStreams;
+    private Duration requestTimeout = Duration.ZERO;
 
     private ServerRSocketFactory() {}
 
@@ -326,6 +563,18 @@ public ServerRSocketFactory addServerPlugin(RSocketInterceptor interceptor) {
       return this;
     }
 
+    /**
+     * Grants leases from {@code leaseGenerator} to clients that agree to honor them. Without a
+     * generator, setups of such clients are rejected.
+     *
+     * @param leaseGenerator source of the leases granted to each client
+     * @return this factory
+     */
+    public ServerRSocketFactory lease(LeaseGenerator leaseGenerator) {
+      this.leaseGenerator = leaseGenerator;
+      return this;
+    }
+
     @Override
     public ServerTransportAcceptor acceptor(Supplier<SocketAcceptor> acceptor) {
       this.acceptor = acceptor;
@@ -344,36 +593,167 @@ public ServerRSocketFactory errorConsumer(Consumer<Throwable> errorConsumer) {
       return this;
     }
 
+    /**
+     * Keeps the sessions of clients that enabled resumption for {@link
+     * #resumeSessionDuration(Duration)} after their transport connection is lost, so they can
+     * resume them from a new connection.
+     *
+     * @return this factory
+     */
+    @Override
+    public ServerRSocketFactory resume() {
+      this.resume = true;
+      return this;
+    }
+
+    @Override
+    public ServerRSocketFactory resumeSessionDuration(Duration sessionDuration) {
+      this.resumeSessionDuration = sessionDuration;
+      return this;
+    }
+
+    @Override
+    public ServerRSocketFactory resumeCacheSize(int bytes) {
+      this.resumeCacheSize = bytes;
+      return this;
+    }
+
+    /**
+     * Moves frames over the resume cache size to a memory-mapped file of {@code bytes} created in
+     * {@code directory}, instead of dropping them. Sessions can then be resumed after longer
+     * disconnects without holding the frames on heap.
+     *
+     * @return this factory
+     */
+    @Override
+    public ServerRSocketFactory resumeSpill(Path directory, int bytes) {
+      this.resumeSpillDirectory = directory;
+      this.resumeSpillSize = bytes;
+      return this;
+    }
+
+    /**
+     * Batches the credit granted to the peer of streams and channels requested from this side:
+     * up to {@code batchSize} payloads are requested ahead of the subscriber's demand and topped up
+     * once {@link RequestNCoalescer#DEFAULT_REPLENISH_RATIO} of them have been consumed, so
+     * subscribers requesting few payloads at a time do not cause a {@code REQUEST_N} frame each.
+     *
+     * @param batchSize payloads requested ahead, {@code 0} passes every request on as is
+     * @return this factory
+     */
+    @Override
+    public ServerRSocketFactory requestNBatchSize(int batchSize) {
+      this.requestNBatchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Limits the number of streams active at once in each direction of every connection. Requests
+     * of a client beyond the limit are answered with a {@code REJECTED} error right away, without
+     * calling the handler, and requests made to a client beyond it fail without being sent.
+     *
+     * @param maxStreams maximum number of active streams per connection, {@code 0} for no limit
+     * @return this factory
+     */
+    @Override
+    public ServerRSocketFactory maxConcurrentStreams(int maxStreams) {
+      this.maxConcurrentStreams = maxStreams;
+      return this;
+    }
+
+    /**
+     * Limits the number of streams requested by clients that are active at once over all
+     * connections of the server. Requests beyond the limit are rejected like those beyond {@link
+     * #maxConcurrentStreams(int)}.
+     *
+     * @param maxStreams maximum number of active streams of the server, {@code 0} for no limit
+     * @return this factory
+     */
+    public ServerRSocketFactory serverMaxConcurrentStreams(int maxStreams) {
+      this.serverMaxConcurrentStreams = maxStreams;
+      return this;
+    }
+
+    /**
+     * Gives every request made to a client a deadline. A stream still active once its deadline
+     * has passed is cancelled and fails with a {@link java.util.concurrent.TimeoutException}.
+     *
+     * @param timeout time from sending a request to its deadline, {@link Duration#ZERO} for none
+     * @return this factory
+     */
+    @Override
+    public ServerRSocketFactory requestTimeout(Duration timeout) {
+      this.requestTimeout = timeout;
+      return this;
+    }
+
+    @Override
+    public ServerRSocketFactory payloadDecoder(PayloadDecoder payloadDecoder) {
+      this.payloadDecoder = payloadDecoder;
+      return this;
+    }
+
+    @Override
+    public ServerRSocketFactory byteBufAllocator(ByteBufAllocator allocator) {
+      this.allocator = allocator;
+      return this;
+    }
+
     private class ServerStart<T extends Closeable> implements Start<T> {
       private final Supplier<ServerTransport<T>> transportServer;
+      private final ConcurrentStreamLimit serverStreamLimit =
+          new ConcurrentStreamLimit(serverMaxConcurrentStreams);
 
       ServerStart(Supplier<ServerTransport<T>> transportServer) {
         this.transportServer = transportServer;
       }
 
+      /** Options of one side of a connection, both sides share the receive buffers. */
+      private ConnectionOptions connectionOptions(
+          ByteBufAllocator alloc, ReceiveBuffers receiveBuffers) {
+        return new ConnectionOptions()
+            .payloadDecoder(payloadDecoder)
+            .allocator(alloc)
+            .requestNBatchSize(requestNBatchSize)
+            .streamLimit(new ConcurrentStreamLimit(maxConcurrentStreams))
+            .receiveBuffers(receiveBuffers);
+      }
+
       @Override
       public Mono<T> start() {
+        ResumeStore resumeStore =
+            resume
+                ? new ResumeStore(
+                    resumeSessionDuration,
+                    () -> newResumeCache(resumeCacheSize, resumeSpillDirectory, resumeSpillSize))
+                : null;
         return transportServer
             .get()
             .start(
-                connection -> {
-                  if (mtu > 0) {
-                    connection = new FragmentationDuplexConnection(connection, mtu);
-                  }
+                connection ->
+                    resumeStore != null
+                        ? resumeStore.accept(connection, this::acceptConnection)
+                        : acceptConnection(connection));
+      }
 
-                  ClientServerInputMultiplexer multiplexer =
-                      new ClientServerInputMultiplexer(connection, plugins);
+      private Mono<Void> acceptConnection(DuplexConnection connection) {
+        ByteBufAllocator alloc = allocator != null ? allocator : connection.alloc();
+        if (mtu > 0) {
+          connection = new FragmentationDuplexConnection(alloc, connection, mtu);
+        }
 
-                  return multiplexer
-                      .asStreamZeroConnection()
-                      .receive()
-                      .next()
-                      .flatMap(setupFrame -> processSetupFrame(multiplexer, setupFrame));
-                });
+        ClientServerInputMultiplexer multiplexer =
+            new ClientServerInputMultiplexer(connection, plugins);
+
+        return multiplexer
+            .asStreamZeroConnection()
+            .receive()
+            .next()
+            .flatMap(setupFrame -> processSetupFrame(multiplexer, setupFrame, alloc));
       }
 
-      private Mono<? extends Void> processSetupFrame(
-          ClientServerInputMultiplexer multiplexer, Frame setupFrame) {
+      private Mono<Void> processSetupFrame(
+          ClientServerInputMultiplexer multiplexer, Frame setupFrame, ByteBufAllocator alloc) {
         int version = Frame.Setup.version(setupFrame);
         if (version != SetupFrameFlyweight.CURRENT_VERSION) {
           InvalidSetupException error =
@@ -381,15 +761,41 @@ private Mono<? extends Void> processSetupFrame(
                   "Unsupported version " + VersionFlyweight.toString(version));
           return multiplexer
               .asStreamZeroConnection()
-              .sendOne(Frame.Error.from(0, error))
+              .sendOne(Frame.Error.from(alloc, 0, error))
+              .then(multiplexer.close());
+        }
+
+        if (!resume && Frame.Setup.resumeToken(setupFrame) != null) {
+          UnsupportedSetupException error =
+              new UnsupportedSetupException("Resumption is not supported by this server");
+          return multiplexer
+              .asStreamZeroConnection()
+              .sendOne(Frame.Error.from(alloc, 0, error))
               .then(multiplexer.close());
         }
 
         ConnectionSetupPayload setupPayload = ConnectionSetupPayload.create(setupFrame);
+        if (setupPayload.willClientHonorLease() && leaseGenerator == null) {
+          UnsupportedSetupException error =
+              new UnsupportedSetupException("Leases are not supported by this server");
+          return multiplexer
+              .asStreamZeroConnection()
+              .sendOne(Frame.Error.from(alloc, 0, error))
+              .then(multiplexer.close());
+        }
+        LeaseGenerator connectionLeases =
+            setupPayload.willClientHonorLease() ? leaseGenerator : null;
 
+        ReceiveBuffers receiveBuffers = new ReceiveBuffers();
         RSocketClient rSocketClient =
             new RSocketClient(
-                multiplexer.asServerConnection(), errorConsumer, StreamIdSupplier.serverSupplier());
+                multiplexer.asServerConnection(),
+                errorConsumer,
+                StreamIdSupplier.serverSupplier(),
+                Duration.ZERO,
+                Duration.ZERO,
+                0,
+                connectionOptions(alloc, receiveBuffers).requestTimeout(requestTimeout));
 
         Mono<RSocket> wrappedRSocketClient = Mono.just(rSocketClient).map(plugins::applyClient);
 
@@ -398,7 +804,15 @@ private Mono<? extends Void> processSetupFrame(
                 sender -> acceptor.get().accept(setupPayload, sender).map(plugins::applyServer))
             .map(
                 handler ->
-                    new RSocketServer(multiplexer.asClientConnection(), handler, errorConsumer))
+                    new RSocketServer(
+                        multiplexer.asClientConnection(),
+                        handler,
+                        errorConsumer,
+                        connectionOptions(alloc, receiveBuffers)
+                            .leaseGenerator(connectionLeases)
+                            .streamLimit(
+                                new ConcurrentStreamLimit(
+                                    maxConcurrentStreams, serverStreamLimit))))
             .then();
       }
     }
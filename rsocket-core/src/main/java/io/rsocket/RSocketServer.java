@@ -19,13 +19,25 @@
 import static io.rsocket.Frame.Request.initialRequestN;
 import static io.rsocket.frame.FrameHeaderFlyweight.FLAGS_C;
 import static io.rsocket.frame.FrameHeaderFlyweight.FLAGS_M;
+import static io.rsocket.util.ExceptionUtil.noStacktrace;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
-import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.ReferenceCountUtil;
 import io.rsocket.exceptions.ApplicationException;
+import io.rsocket.exceptions.ConnectionException;
+import io.rsocket.exceptions.RejectedException;
+import io.rsocket.internal.ConcurrentStreamLimit;
+import io.rsocket.internal.FairFrameProcessor;
 import io.rsocket.internal.LimitableRequestPublisher;
-import io.rsocket.util.PayloadImpl;
+import io.rsocket.internal.OutboundWatermark;
+import io.rsocket.internal.ReceiveBuffers;
+import io.rsocket.internal.RequestNCoalescer;
+import io.rsocket.internal.StreamTable;
+import io.rsocket.lease.Lease;
+import io.rsocket.lease.LeaseGenerator;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.function.Consumer;
 import javax.annotation.Nullable;
@@ -37,28 +49,53 @@
 
 /** Server side RSocket. Receives {@link Frame}s from a {@link RSocketClient} */
 class RSocketServer implements RSocket {
+  private static final RejectedException STREAM_LIMIT_EXCEPTION =
+      noStacktrace(new RejectedException("Too many concurrent streams on the connection"));
 
   private final DuplexConnection connection;
   private final RSocket requestHandler;
   private final Consumer<Throwable> errorConsumer;
+  private final PayloadDecoder payloadDecoder;
+  private final ByteBufAllocator allocator;
+  private final int requestNBatchSize;
+  private final ConcurrentStreamLimit streamLimit;
+  private final ReceiveBuffers receiveBuffers;
 
-  private final IntObjectHashMap<Subscription> sendingSubscriptions;
-  private final IntObjectHashMap<UnicastProcessor<Payload>> channelProcessors;
+  private final StreamTable<Subscription> sendingSubscriptions;
+  private final StreamTable<UnicastProcessor<Payload>> channelProcessors;
 
-  private final EmitterProcessor<Frame> sendProcessor;
+  private final FairFrameProcessor sendProcessor;
+  private final OutboundWatermark outbound;
   private Disposable receiveDisposable;
+  private @Nullable Disposable leaseDisposable;
 
   RSocketServer(
       DuplexConnection connection, RSocket requestHandler, Consumer<Throwable> errorConsumer) {
+    this(connection, requestHandler, errorConsumer, new ConnectionOptions());
+  }
+
+  RSocketServer(
+      DuplexConnection connection,
+      RSocket requestHandler,
+      Consumer<Throwable> errorConsumer,
+      ConnectionOptions options) {
     this.connection = connection;
     this.requestHandler = requestHandler;
     this.errorConsumer = errorConsumer;
-    this.sendingSubscriptions = new IntObjectHashMap<>();
-    this.channelProcessors = new IntObjectHashMap<>();
+    this.payloadDecoder = options.payloadDecoder();
+    this.allocator = options.allocator(connection);
+    this.requestNBatchSize = options.requestNBatchSize();
+    this.streamLimit = options.streamLimit();
+    this.receiveBuffers = options.receiveBuffers();
+    this.sendingSubscriptions = new StreamTable<>();
+    this.channelProcessors = new StreamTable<>();
+    this.sendProcessor = new FairFrameProcessor();
+    this.outbound = new OutboundWatermark();
+
+    // Frames are dispatched inline, handlers subscribe to their results without going through a
+    // flatMap inner subscriber per frame
     this.receiveDisposable =
-        connection.receive().flatMap(this::handleFrame).doOnError(errorConsumer).then().subscribe();
-
-    this.sendProcessor = EmitterProcessor.create();
+        connection.receive().doOnNext(this::handleFrame).doOnError(errorConsumer).subscribe();
 
     this.connection
         .onClose()
@@ -67,23 +104,44 @@ class RSocketServer implements RSocket {
             s -> {
               cleanup();
               receiveDisposable.dispose();
+              if (leaseDisposable != null) {
+                leaseDisposable.dispose();
+              }
             })
         .subscribe();
 
     connection
-        .send(sendProcessor)
+        .send(sendProcessor.doOnNext(outbound::dequeued))
         .doOnError(this::handleSendProcessorError)
         .doFinally(this::handleSendProcessorCancel)
         .subscribe();
+
+    LeaseGenerator leaseGenerator = options.leaseGenerator();
+    if (leaseGenerator != null) {
+      this.leaseDisposable =
+          Flux.from(leaseGenerator.leases(sendingSubscriptions::size))
+              .subscribe(this::sendLease, errorConsumer);
+    }
+  }
+
+  private void sendLease(Lease lease) {
+    ByteBuffer metadata = lease.getMetadata();
+    sendFrame(
+        Frame.Lease.from(
+            allocator,
+            lease.getTtl(),
+            lease.getAllowedRequests(),
+            metadata == null ? Unpooled.EMPTY_BUFFER : Unpooled.wrappedBuffer(metadata)));
+  }
+
+  private void sendFrame(Frame frame) {
+    outbound.enqueued(frame);
+    sendProcessor.onNext(frame);
   }
 
   private void handleSendProcessorError(Throwable t) {
-    Collection<Subscription> values;
-    Collection<UnicastProcessor<Payload>> values1;
-    synchronized (RSocketServer.this) {
-      values = sendingSubscriptions.values();
-      values1 = channelProcessors.values();
-    }
+    Collection<Subscription> values = sendingSubscriptions.values();
+    Collection<UnicastProcessor<Payload>> values1 = channelProcessors.values();
 
     for (Subscription subscription : values) {
       try {
@@ -106,12 +164,8 @@ private void handleSendProcessorCancel(SignalType t) {
     if (SignalType.ON_ERROR == t) {
       return;
     }
-    Collection<Subscription> values;
-    Collection<UnicastProcessor<Payload>> values1;
-    synchronized (RSocketServer.this) {
-      values = sendingSubscriptions.values();
-      values1 = channelProcessors.values();
-    }
+    Collection<Subscription> values = sendingSubscriptions.values();
+    Collection<UnicastProcessor<Payload>> values1 = channelProcessors.values();
 
     for (Subscription subscription : values) {
       try {
@@ -192,96 +246,159 @@ private void cleanup() {
     requestHandler.close().subscribe();
   }
 
-  private synchronized void cleanUpSendingSubscriptions() {
-    sendingSubscriptions.values().forEach(Subscription::cancel);
-    sendingSubscriptions.clear();
+  private void cleanUpSendingSubscriptions() {
+    for (Subscription subscription : sendingSubscriptions.clear()) {
+      subscription.cancel();
+      streamLimit.release();
+    }
   }
 
-  private synchronized void cleanUpChannelProcessors() {
-    channelProcessors.values().forEach(Subscription::cancel);
-    channelProcessors.clear();
+  private void cleanUpChannelProcessors() {
+    channelProcessors.clear().forEach(Subscription::cancel);
   }
 
-  private Mono<Void> handleFrame(Frame frame) {
+  private void handleFrame(Frame frame) {
     try {
       int streamId = frame.getStreamId();
+      FrameType type = frame.getType();
+      if (type.isRequestType()) {
+        if (isActiveStream(streamId)) {
+          handleStreamIdReuse(streamId);
+          return;
+        }
+        if (!streamLimit.tryAcquire()) {
+          rejectRequest(streamId, type);
+          return;
+        }
+      }
+
       Subscriber<Payload> receiver;
-      switch (frame.getType()) {
+      switch (type) {
         case FIRE_AND_FORGET:
-          return handleFireAndForget(streamId, fireAndForget(new PayloadImpl(frame)));
+          handleFireAndForget(streamId, fireAndForget(payloadDecoder.apply(frame)));
+          break;
         case REQUEST_RESPONSE:
-          return handleRequestResponse(streamId, requestResponse(new PayloadImpl(frame)));
+          handleRequestResponse(streamId, requestResponse(payloadDecoder.apply(frame)));
+          break;
         case CANCEL:
-          return handleCancelFrame(streamId);
+          handleCancelFrame(streamId);
+          break;
         case KEEPALIVE:
-          return handleKeepAliveFrame(frame);
+          handleKeepAliveFrame(frame);
+          break;
         case REQUEST_N:
-          return handleRequestN(streamId, frame);
+          handleRequestN(streamId, frame);
+          break;
         case REQUEST_STREAM:
-          return handleStream(
-              streamId, requestStream(new PayloadImpl(frame)), initialRequestN(frame));
+          handleStream(
+              streamId, requestStream(payloadDecoder.apply(frame)), initialRequestN(frame));
+          break;
         case REQUEST_CHANNEL:
-          return handleChannel(streamId, frame);
+          handleChannel(streamId, frame);
+          break;
         case PAYLOAD:
           // TODO: Hook in receiving socket.
-          return Mono.empty();
+          break;
         case METADATA_PUSH:
-          return metadataPush(new PayloadImpl(frame));
+          metadataPush(payloadDecoder.apply(frame)).subscribe(null, errorConsumer);
+          break;
         case LEASE:
           // Lease must not be received here as this is the server end of the socket which sends
           // leases.
-          return Mono.empty();
+          break;
         case NEXT:
           receiver = getChannelProcessor(streamId);
           if (receiver != null) {
-            receiver.onNext(new PayloadImpl(frame));
+            deliver(streamId, receiver, frame);
           }
-          return Mono.empty();
+          break;
         case COMPLETE:
           receiver = getChannelProcessor(streamId);
           if (receiver != null) {
             receiver.onComplete();
           }
-          return Mono.empty();
+          break;
         case ERROR:
           receiver = getChannelProcessor(streamId);
           if (receiver != null) {
             receiver.onError(new ApplicationException(Frame.Error.message(frame)));
           }
-          return Mono.empty();
+          break;
         case NEXT_COMPLETE:
           receiver = getChannelProcessor(streamId);
-          if (receiver != null) {
-            receiver.onNext(new PayloadImpl(frame));
+          if (receiver != null && deliver(streamId, receiver, frame)) {
             receiver.onComplete();
           }
-
-          return Mono.empty();
-
+          break;
         case SETUP:
-          return handleError(
-              streamId, new IllegalStateException("Setup frame received post setup."));
+          handleError(streamId, new IllegalStateException("Setup frame received post setup."));
+          break;
         default:
-          return handleError(
+          handleError(
               streamId,
               new IllegalStateException(
                   "ServerRSocket: Unexpected frame type: " + frame.getType()));
+          break;
       }
     } finally {
       frame.release();
     }
   }
 
-  private Mono<Void> handleFireAndForget(int streamId, Mono<Void> result) {
-    return result
+  /** @return {@code false} if the payload was over the credit of the stream and dropped */
+  private boolean deliver(int streamId, Subscriber<Payload> receiver, Frame frame) {
+    Payload payload = payloadDecoder.apply(frame);
+    if (!receiveBuffers.received(streamId, payload)) {
+      ReferenceCountUtil.safeRelease(payload);
+      handleCreditOverrun(streamId);
+      return false;
+    }
+    receiver.onNext(payload);
+    return true;
+  }
+
+  /**
+   * A peer sending payloads it was not asked for is broken, so rather than buffering them the
+   * connection is closed with a connection error.
+   */
+  private void handleCreditOverrun(int streamId) {
+    closeWithError(
+        new ConnectionException("Received more payloads than requested on stream " + streamId));
+  }
+
+  /**
+   * A request on a stream that is still active would replace it, leaking the stream's slot of the
+   * stream limit, so it is treated as a protocol error rather than admitted.
+   */
+  private void handleStreamIdReuse(int streamId) {
+    closeWithError(new ConnectionException("Request received on active stream " + streamId));
+  }
+
+  private void closeWithError(ConnectionException error) {
+    errorConsumer.accept(error);
+    connection
+        .sendOne(Frame.Error.from(allocator, 0, error))
+        .then(Mono.defer(connection::close))
+        .subscribe(null, errorConsumer);
+  }
+
+  /** Rejects a request over the stream limit without calling the handler. */
+  private void rejectRequest(int streamId, FrameType type) {
+    // A fire-and-forget has no response the requester would look at
+    if (type != FrameType.FIRE_AND_FORGET) {
+      sendFrame(Frame.Error.from(allocator, streamId, STREAM_LIMIT_EXCEPTION));
+    }
+  }
+
+  private void handleFireAndForget(int streamId, Mono<Void> result) {
+    result
         .doOnSubscribe(subscription -> addSubscription(streamId, subscription))
-        .doOnError(errorConsumer)
-        .doFinally(signalType -> removeSubscription(streamId))
-        .ignoreElement();
+        .doFinally(signalType -> finishStream(streamId))
+        .subscribe(null, errorConsumer);
   }
 
-  private Mono<Void> handleRequestResponse(int streamId, Mono<Payload> response) {
-    return response
+  private void handleRequestResponse(int streamId, Mono<Payload> response) {
+    response
         .doOnSubscribe(subscription -> addSubscription(streamId, subscription))
         .map(
             payload -> {
@@ -289,58 +406,67 @@ private Mono<Void> handleRequestResponse(int streamId, Mono<Payload> response) {
               if (payload.hasMetadata()) {
                 flags = Frame.setFlag(flags, FLAGS_M);
               }
-              return Frame.PayloadFrame.from(streamId, FrameType.NEXT_COMPLETE, payload, flags);
+              return Frame.PayloadFrame.from(
+                  allocator, streamId, FrameType.NEXT_COMPLETE, payload, flags);
             })
         .doOnError(errorConsumer)
-        .onErrorResume(t -> Mono.just(Frame.Error.from(streamId, t)))
-        .doOnNext(sendProcessor::onNext)
-        .doFinally(signalType -> removeSubscription(streamId))
-        .then();
+        .onErrorResume(t -> Mono.just(Frame.Error.from(allocator, streamId, t)))
+        .doFinally(signalType -> finishStream(streamId))
+        .subscribe(this::sendFrame);
   }
 
-  private Mono<Void> handleStream(int streamId, Flux<Payload> response, int initialRequestN) {
+  private void handleStream(int streamId, Flux<Payload> response, int initialRequestN) {
     response
-        .map(payload -> Frame.PayloadFrame.from(streamId, FrameType.NEXT, payload))
+        .map(payload -> Frame.PayloadFrame.from(allocator, streamId, FrameType.NEXT, payload))
         .transform(
             frameFlux -> {
               LimitableRequestPublisher<Frame> frames = LimitableRequestPublisher.wrap(frameFlux);
-              synchronized (RSocketServer.this) {
-                sendingSubscriptions.put(streamId, frames);
-              }
+              sendingSubscriptions.put(streamId, frames);
               frames.increaseRequestLimit(initialRequestN);
               return frames;
             })
-        .concatWith(Mono.just(Frame.PayloadFrame.from(streamId, FrameType.COMPLETE)))
-        .onErrorResume(t -> Mono.just(Frame.Error.from(streamId, t)))
-        .doOnNext(sendProcessor::onNext)
-        .doFinally(signalType -> removeSubscription(streamId))
-        .subscribe();
-
-    return Mono.empty();
+        .concatWith(Mono.just(Frame.PayloadFrame.from(allocator, streamId, FrameType.COMPLETE)))
+        .onErrorResume(t -> Mono.just(Frame.Error.from(allocator, streamId, t)))
+        .doFinally(signalType -> finishStream(streamId))
+        .subscribe(outbound.paced(this::sendFrame));
   }
 
-  private Mono<Void> handleChannel(int streamId, Frame firstFrame) {
-    UnicastProcessor<Payload> frames = UnicastProcessor.create();
+  private void handleChannel(int streamId, Frame firstFrame) {
+    UnicastProcessor<Payload> frames =
+        UnicastProcessor.create(ReceiveBuffers.newQueue(requestNBatchSize));
+    RequestNCoalescer requestN = new RequestNCoalescer(requestNBatchSize);
+    ReceiveBuffers.StreamBuffer buffer = receiveBuffers.open(streamId);
     addChannelProcessor(streamId, frames);
 
     Flux<Payload> payloads =
         frames
+            .doOnNext(
+                p -> {
+                  buffer.delivered(p);
+                  long n = requestN.received();
+                  if (n > 0 && connection.availability() > 0.0) {
+                    buffer.granted(n);
+                    sendFrame(Frame.RequestN.from(allocator, streamId, n));
+                  }
+                })
             .doOnCancel(
                 () -> {
                   if (connection.availability() > 0.0) {
-                    sendProcessor.onNext(Frame.Cancel.from(streamId));
+                    sendFrame(Frame.Cancel.from(allocator, streamId));
                   }
                 })
             .doOnError(
                 t -> {
                   if (connection.availability() > 0.0) {
-                    sendProcessor.onNext(Frame.Error.from(streamId, t));
+                    sendFrame(Frame.Error.from(allocator, streamId, t));
                   }
                 })
             .doOnRequest(
                 l -> {
-                  if (connection.availability() > 0.0) {
-                    sendProcessor.onNext(Frame.RequestN.from(streamId, l));
+                  long n = requestN.request(l);
+                  if (n > 0 && connection.availability() > 0.0) {
+                    buffer.granted(n);
+                    sendFrame(Frame.RequestN.from(allocator, streamId, n));
                   }
                 })
             .doFinally(signalType -> removeChannelProcessor(streamId));
@@ -348,73 +474,71 @@ private Mono<Void> handleChannel(int streamId, Frame firstFrame) {
     // not chained, as the payload should be enqueued in the Unicast processor before this method
     // returns
     // and any later payload can be processed
-    frames.onNext(new PayloadImpl(firstFrame));
+    // The first payload comes with the request rather than against credit
+    buffer.granted(1);
+    deliver(streamId, frames, firstFrame);
 
-    return handleStream(streamId, requestChannel(payloads), initialRequestN(firstFrame));
+    handleStream(streamId, requestChannel(payloads), initialRequestN(firstFrame));
   }
 
-  private Mono<Void> handleKeepAliveFrame(Frame frame) {
-    return Mono.fromRunnable(
-        () -> {
-          if (Frame.Keepalive.hasRespondFlag(frame)) {
-            ByteBuf data = Unpooled.wrappedBuffer(frame.getData());
-            sendProcessor.onNext(Frame.Keepalive.from(data, false));
-          }
-        });
+  private void handleKeepAliveFrame(Frame frame) {
+    if (Frame.Keepalive.hasRespondFlag(frame)) {
+      ByteBuf data = frame.sliceData();
+      sendFrame(Frame.Keepalive.from(allocator, data, false));
+    }
   }
 
-  private Mono<Void> handleCancelFrame(int streamId) {
-    return Mono.fromRunnable(
-        () -> {
-          Subscription subscription;
-          synchronized (this) {
-            subscription = sendingSubscriptions.remove(streamId);
-          }
+  private void handleCancelFrame(int streamId) {
+    Subscription subscription = sendingSubscriptions.remove(streamId);
 
-          if (subscription != null) {
-            subscription.cancel();
-          }
-        });
+    if (subscription != null) {
+      subscription.cancel();
+      streamLimit.release();
+    }
   }
 
-  private Mono<Void> handleError(int streamId, Throwable t) {
-    return Mono.fromRunnable(
-        () -> {
-          errorConsumer.accept(t);
-          sendProcessor.onNext(Frame.Error.from(streamId, t));
-        });
+  private void handleError(int streamId, Throwable t) {
+    errorConsumer.accept(t);
+    sendFrame(Frame.Error.from(allocator, streamId, t));
   }
 
-  private Mono<Void> handleRequestN(int streamId, Frame frame) {
+  private void handleRequestN(int streamId, Frame frame) {
     final Subscription subscription = getSubscription(streamId);
     if (subscription != null) {
       int n = Frame.RequestN.requestN(frame);
       subscription.request(n >= Integer.MAX_VALUE ? Long.MAX_VALUE : n);
     }
-    return Mono.empty();
   }
 
-  private synchronized void addSubscription(int streamId, Subscription subscription) {
+  private boolean isActiveStream(int streamId) {
+    return sendingSubscriptions.containsKey(streamId) || channelProcessors.containsKey(streamId);
+  }
+
+  private void addSubscription(int streamId, Subscription subscription) {
     sendingSubscriptions.put(streamId, subscription);
   }
 
-  private synchronized @Nullable Subscription getSubscription(int streamId) {
+  private @Nullable Subscription getSubscription(int streamId) {
     return sendingSubscriptions.get(streamId);
   }
 
-  private synchronized void removeSubscription(int streamId) {
-    sendingSubscriptions.remove(streamId);
+  // A stream ends when its entry is removed, whether it completed or was cancelled by the peer
+  private void finishStream(int streamId) {
+    if (sendingSubscriptions.remove(streamId) != null) {
+      streamLimit.release();
+    }
   }
 
-  private synchronized void addChannelProcessor(int streamId, UnicastProcessor<Payload> processor) {
+  private void addChannelProcessor(int streamId, UnicastProcessor<Payload> processor) {
     channelProcessors.put(streamId, processor);
   }
 
-  private synchronized @Nullable UnicastProcessor<Payload> getChannelProcessor(int streamId) {
+  private @Nullable UnicastProcessor<Payload> getChannelProcessor(int streamId) {
     return channelProcessors.get(streamId);
   }
 
-  private synchronized void removeChannelProcessor(int streamId) {
+  private void removeChannelProcessor(int streamId) {
     channelProcessors.remove(streamId);
+    receiveBuffers.close(streamId);
   }
 }
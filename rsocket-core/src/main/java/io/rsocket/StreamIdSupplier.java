@@ -16,28 +16,71 @@
 
 package io.rsocket;
 
+import io.rsocket.internal.StreamTable;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import javax.annotation.Nullable;
+
+/**
+ * Hands out stream ids of one parity, odd for the client and even for the server.
+ *
+ * <p>Once the 31 bit id space is exhausted ids start over from the beginning. From then on ids
+ * still present in the table of active streams passed to {@link #nextStreamId(StreamTable)} are
+ * skipped, and every id of the right range counts as already issued for {@link
+ * #isBeforeOrCurrent(int)}.
+ */
 final class StreamIdSupplier {
+  private static final int MAX_STREAM_ID = Integer.MAX_VALUE;
+
+  private static final AtomicIntegerFieldUpdater<StreamIdSupplier> STREAM_ID =
+      AtomicIntegerFieldUpdater.newUpdater(StreamIdSupplier.class, "streamId");
 
-  private int streamId;
+  private final int initialStreamId;
+  private final int maxStreamId;
 
-  private StreamIdSupplier(int streamId) {
+  private volatile int streamId;
+  private volatile boolean wrapped;
+
+  StreamIdSupplier(int streamId, int maxStreamId) {
+    this.initialStreamId = streamId;
+    this.maxStreamId = maxStreamId;
     this.streamId = streamId;
   }
 
-  synchronized int nextStreamId() {
-    streamId += 2;
-    return streamId;
+  int nextStreamId() {
+    return nextStreamId(null);
+  }
+
+  int nextStreamId(@Nullable StreamTable<?> activeStreams) {
+    for (; ; ) {
+      final int current = streamId;
+      final int next;
+      if (current > maxStreamId - 2) {
+        next = initialStreamId + 2;
+      } else {
+        next = current + 2;
+      }
+
+      if (next < current) {
+        // Set before the id is published, so that nobody sees a reused id without the check
+        wrapped = true;
+      }
+      if (STREAM_ID.compareAndSet(this, current, next)) {
+        if (activeStreams == null || !wrapped || !activeStreams.containsKey(next)) {
+          return next;
+        }
+      }
+    }
   }
 
-  synchronized boolean isBeforeOrCurrent(int streamId) {
-    return this.streamId >= streamId && streamId > 0;
+  boolean isBeforeOrCurrent(int streamId) {
+    return streamId > 0 && (wrapped || this.streamId >= streamId);
   }
 
   static StreamIdSupplier clientSupplier() {
-    return new StreamIdSupplier(-1);
+    return new StreamIdSupplier(-1, MAX_STREAM_ID);
   }
 
   static StreamIdSupplier serverSupplier() {
-    return new StreamIdSupplier(0);
+    return new StreamIdSupplier(0, MAX_STREAM_ID);
   }
 }
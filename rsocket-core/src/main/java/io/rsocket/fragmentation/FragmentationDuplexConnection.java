@@ -16,6 +16,7 @@
 
 package io.rsocket.fragmentation;
 
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.util.collection.IntObjectHashMap;
 import io.rsocket.DuplexConnection;
 import io.rsocket.Frame;
@@ -27,13 +28,20 @@
 /** Fragments and Re-assembles frames. MTU is number of bytes per fragment. The default is 1024 */
 public class FragmentationDuplexConnection implements DuplexConnection {
 
+  private final ByteBufAllocator allocator;
   private final DuplexConnection source;
   private final IntObjectHashMap<FrameReassembler> frameReassemblers = new IntObjectHashMap<>();
   private final FrameFragmenter frameFragmenter;
 
   public FragmentationDuplexConnection(DuplexConnection source, int mtu) {
+    this(source.alloc(), source, mtu);
+  }
+
+  public FragmentationDuplexConnection(
+      ByteBufAllocator allocator, DuplexConnection source, int mtu) {
+    this.allocator = allocator;
     this.source = source;
-    this.frameFragmenter = new FrameFragmenter(mtu);
+    this.frameFragmenter = new FrameFragmenter(allocator, mtu);
   }
 
   public static int getDefaultMTU() {
@@ -49,6 +57,11 @@ public double availability() {
     return source.availability();
   }
 
+  @Override
+  public ByteBufAllocator alloc() {
+    return allocator;
+  }
+
   @Override
   public Mono<Void> send(Publisher<Frame> frames) {
     return Flux.from(frames).concatMap(this::sendOne).then();
@@ -77,6 +90,7 @@ public Flux<Frame> receive() {
                 FrameReassembler frameReassembler = removeFrameReassembler(frame.getStreamId());
                 frameReassembler.append(frame);
                 Frame reassembled = frameReassembler.reassemble();
+                frameReassembler.dispose();
                 return Mono.just(reassembled);
               } else {
                 return Mono.just(frame);
@@ -90,7 +104,8 @@ public Mono<Void> close() {
   }
 
   private synchronized FrameReassembler getFrameReassembler(Frame frame) {
-    return frameReassemblers.computeIfAbsent(frame.getStreamId(), s -> new FrameReassembler(frame));
+    return frameReassemblers.computeIfAbsent(
+        frame.getStreamId(), s -> new FrameReassembler(allocator, frame));
   }
 
   private synchronized FrameReassembler removeFrameReassembler(int streamId) {
@@ -17,6 +17,7 @@
 package io.rsocket.fragmentation;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.rsocket.Frame;
 import io.rsocket.FrameType;
@@ -27,9 +28,15 @@
 import reactor.core.publisher.SynchronousSink;
 
 public class FrameFragmenter {
+  private final ByteBufAllocator allocator;
   private final int mtu;
 
   public FrameFragmenter(int mtu) {
+    this(ByteBufAllocator.DEFAULT, mtu);
+  }
+
+  public FrameFragmenter(ByteBufAllocator allocator, int mtu) {
+    this.allocator = allocator;
     this.mtu = mtu;
   }
 
@@ -72,9 +79,8 @@ public FragmentGenerator(Frame frame) {
       this.streamId = frame.getStreamId();
       this.frameType = frame.getType();
       this.flags = frame.flags() & ~FrameHeaderFlyweight.FLAGS_M;
-      metadata =
-          frame.hasMetadata() ? FrameHeaderFlyweight.sliceFrameMetadata(frame.content()) : null;
-      data = FrameHeaderFlyweight.sliceFrameData(frame.content());
+      metadata = frame.hasMetadata() ? frame.sliceMetadata() : null;
+      data = frame.sliceData();
     }
 
     @Override
@@ -87,6 +93,7 @@ public void accept(SynchronousSink<Frame> sink) {
         if (metadataLength > mtu) {
           sink.next(
               Frame.PayloadFrame.from(
+                  allocator,
                   streamId,
                   frameType,
                   metadata.readSlice(mtu),
@@ -96,6 +103,7 @@ public void accept(SynchronousSink<Frame> sink) {
           if (dataLength > mtu - metadataLength) {
             sink.next(
                 Frame.PayloadFrame.from(
+                    allocator,
                     streamId,
                     frameType,
                     metadata.readSlice(metadataLength),
@@ -104,6 +112,7 @@ public void accept(SynchronousSink<Frame> sink) {
           } else {
             sink.next(
                 Frame.PayloadFrame.from(
+                    allocator,
                     streamId,
                     frameType,
                     metadata.readSlice(metadataLength),
@@ -117,6 +126,7 @@ public void accept(SynchronousSink<Frame> sink) {
         if (dataLength > mtu) {
           sink.next(
               Frame.PayloadFrame.from(
+                  allocator,
                   streamId,
                   frameType,
                   Unpooled.EMPTY_BUFFER,
@@ -125,7 +135,12 @@ public void accept(SynchronousSink<Frame> sink) {
         } else {
           sink.next(
               Frame.PayloadFrame.from(
-                  streamId, frameType, Unpooled.EMPTY_BUFFER, data.readSlice(dataLength), flags));
+                  allocator,
+                  streamId,
+                  frameType,
+                  Unpooled.EMPTY_BUFFER,
+                  data.readSlice(dataLength),
+                  flags));
           frame.release();
           sink.complete();
         }
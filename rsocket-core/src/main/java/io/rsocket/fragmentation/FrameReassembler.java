@@ -17,15 +17,17 @@
 package io.rsocket.fragmentation;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.rsocket.Frame;
 import io.rsocket.FrameType;
-import io.rsocket.frame.FrameHeaderFlyweight;
+import io.rsocket.frame.FrameHeader;
 import reactor.core.Disposable;
 
 /** Assembles Fragmented frames. */
 public class FrameReassembler implements Disposable {
+  private final ByteBufAllocator allocator;
   private final FrameType frameType;
   private final int streamId;
   private final int flags;
@@ -33,34 +35,34 @@ public class FrameReassembler implements Disposable {
   private final CompositeByteBuf metadataBuffer;
 
   public FrameReassembler(Frame frame) {
+    this(PooledByteBufAllocator.DEFAULT, frame);
+  }
+
+  public FrameReassembler(ByteBufAllocator allocator, Frame frame) {
+    this.allocator = allocator;
     this.frameType = frame.getType();
     this.streamId = frame.getStreamId();
     this.flags = frame.flags();
-    dataBuffer = PooledByteBufAllocator.DEFAULT.compositeBuffer();
-    metadataBuffer = PooledByteBufAllocator.DEFAULT.compositeBuffer();
+    dataBuffer = allocator.compositeBuffer();
+    metadataBuffer = allocator.compositeBuffer();
   }
 
   public synchronized void append(Frame frame) {
     final ByteBuf byteBuf = frame.content();
-    final FrameType frameType = FrameHeaderFlyweight.frameType(byteBuf);
-    final int frameLength = FrameHeaderFlyweight.frameLength(byteBuf);
-    final int metadataLength = FrameHeaderFlyweight.metadataLength(byteBuf, frameType, frameLength);
-    final int dataLength = FrameHeaderFlyweight.dataLength(byteBuf, frameType);
-    if (0 < metadataLength) {
-      int metadataOffset = FrameHeaderFlyweight.metadataOffset(byteBuf);
-      if (FrameHeaderFlyweight.hasMetadataLengthField(frameType)) {
-        metadataOffset += FrameHeaderFlyweight.FRAME_LENGTH_SIZE;
-      }
-      metadataBuffer.addComponent(true, byteBuf.retainedSlice(metadataOffset, metadataLength));
+    final FrameHeader header = frame.header();
+    if (0 < header.metadataLength()) {
+      metadataBuffer.addComponent(
+          true, byteBuf.retainedSlice(header.metadataOffset(), header.metadataLength()));
     }
-    if (0 < dataLength) {
-      final int dataOffset = FrameHeaderFlyweight.dataOffset(byteBuf, frameType, frameLength);
-      dataBuffer.addComponent(true, byteBuf.retainedSlice(dataOffset, dataLength));
+    if (0 < header.dataLength()) {
+      dataBuffer.addComponent(
+          true, byteBuf.retainedSlice(header.dataOffset(), header.dataLength()));
     }
   }
 
   public synchronized Frame reassemble() {
-    return Frame.PayloadFrame.from(streamId, frameType, metadataBuffer, dataBuffer, flags);
+    return Frame.PayloadFrame.from(
+        allocator, streamId, frameType, metadataBuffer, dataBuffer, flags);
   }
 
   @Override
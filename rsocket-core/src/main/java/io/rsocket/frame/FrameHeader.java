@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.frame;
+
+import static io.rsocket.frame.FrameHeaderFlyweight.FLAGS_M;
+import static io.rsocket.frame.FrameHeaderFlyweight.FRAME_LENGTH_SIZE;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.FrameType;
+import javax.annotation.Nullable;
+
+/**
+ * Header fields of a frame decoded once from its buffer: type, flags, stream id and where metadata
+ * and data sit in the buffer. Unlike the static accessors of {@link FrameHeaderFlyweight}, which
+ * re-read the header on every call, a {@code FrameHeader} can be queried any number of times
+ * without touching the buffer again.
+ *
+ * <p>Offsets are absolute indexes into the buffer the header was decoded from. Instances are
+ * immutable.
+ */
+public final class FrameHeader {
+  private final FrameType frameType;
+  private final int flags;
+  private final int streamId;
+  private final int metadataOffset;
+  private final int metadataLength;
+  private final int dataOffset;
+  private final int dataLength;
+
+  private FrameHeader(
+      FrameType frameType,
+      int flags,
+      int streamId,
+      int metadataOffset,
+      int metadataLength,
+      int dataOffset,
+      int dataLength) {
+    this.frameType = frameType;
+    this.flags = flags;
+    this.streamId = streamId;
+    this.metadataOffset = metadataOffset;
+    this.metadataLength = metadataLength;
+    this.dataOffset = dataOffset;
+    this.dataLength = dataLength;
+  }
+
+  /**
+   * Decodes the header of the frame held in {@code byteBuf}.
+   *
+   * @param byteBuf buffer holding a complete frame.
+   * @return decoded header.
+   */
+  public static FrameHeader decode(final ByteBuf byteBuf) {
+    final FrameType frameType = FrameHeaderFlyweight.frameType(byteBuf);
+    final int flags = FrameHeaderFlyweight.flags(byteBuf);
+    final int streamId = FrameHeaderFlyweight.streamId(byteBuf);
+    final int frameLength = FrameHeaderFlyweight.frameLength(byteBuf);
+    final int payloadOffset = FrameHeaderFlyweight.metadataOffset(byteBuf);
+
+    int metadataOffset = payloadOffset;
+    final int metadataLength;
+    final int dataOffset;
+    if (!FrameHeaderFlyweight.hasMetadataLengthField(frameType)) {
+      // Frames without data have no metadata length field, metadata runs to the end of the frame
+      metadataLength = frameLength - payloadOffset;
+      dataOffset = frameLength;
+    } else if (FLAGS_M == (flags & FLAGS_M)) {
+      metadataLength = FrameHeaderFlyweight.decodeLength(byteBuf, payloadOffset);
+      metadataOffset += FRAME_LENGTH_SIZE;
+      dataOffset = metadataOffset + metadataLength;
+    } else {
+      metadataLength = -1;
+      dataOffset = payloadOffset;
+    }
+
+    return new FrameHeader(
+        frameType,
+        flags,
+        streamId,
+        metadataOffset,
+        metadataLength,
+        dataOffset,
+        frameLength - dataOffset);
+  }
+
+  public FrameType frameType() {
+    return frameType;
+  }
+
+  public int flags() {
+    return flags;
+  }
+
+  public int streamId() {
+    return streamId;
+  }
+
+  /**
+   * Returns the offset of the metadata, after its length field if the frame type has one.
+   *
+   * @return metadata offset.
+   */
+  public int metadataOffset() {
+    return metadataOffset;
+  }
+
+  /**
+   * Returns the length of the metadata or {@code -1} if the frame does not carry metadata.
+   *
+   * @return metadata length.
+   */
+  public int metadataLength() {
+    return metadataLength;
+  }
+
+  public int dataOffset() {
+    return dataOffset;
+  }
+
+  public int dataLength() {
+    return dataLength;
+  }
+
+  /**
+   * Slices the metadata out of the buffer this header was decoded from. Behaves like {@link
+   * FrameHeaderFlyweight#sliceFrameMetadata(ByteBuf)}.
+   *
+   * @param byteBuf buffer this header was decoded from.
+   * @return metadata slice, or {@code null} if the frame does not carry metadata.
+   */
+  public @Nullable ByteBuf sliceMetadata(final ByteBuf byteBuf) {
+    if (metadataLength < 0) {
+      return null;
+    }
+
+    return 0 < metadataLength
+        ? byteBuf.slice(metadataOffset, metadataLength)
+        : Unpooled.EMPTY_BUFFER;
+  }
+
+  /**
+   * Slices the data out of the buffer this header was decoded from. Behaves like {@link
+   * FrameHeaderFlyweight#sliceFrameData(ByteBuf)}.
+   *
+   * @param byteBuf buffer this header was decoded from.
+   * @return data slice.
+   */
+  public ByteBuf sliceData(final ByteBuf byteBuf) {
+    return 0 < dataLength ? byteBuf.slice(dataOffset, dataLength) : Unpooled.EMPTY_BUFFER;
+  }
+
+  @Override
+  public String toString() {
+    return "FrameHeader{"
+        + "frameType="
+        + frameType
+        + ", flags="
+        + flags
+        + ", streamId="
+        + streamId
+        + ", metadataLength="
+        + metadataLength
+        + ", dataLength="
+        + dataLength
+        + '}';
+  }
+}
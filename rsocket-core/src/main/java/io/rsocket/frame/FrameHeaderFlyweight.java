@@ -99,14 +99,7 @@ public static int encodeMetadata(
     if (metadata != null) {
       final int metadataLength = metadata.readableBytes();
 
-      int typeAndFlags = byteBuf.getShort(FRAME_TYPE_AND_FLAGS_FIELD_OFFSET);
-      typeAndFlags |= FLAGS_M;
-      byteBuf.setShort(FRAME_TYPE_AND_FLAGS_FIELD_OFFSET, (short) typeAndFlags);
-
-      if (hasMetadataLengthField(frameType)) {
-        encodeLength(byteBuf, metadataOffset, metadataLength);
-        length += FRAME_LENGTH_SIZE;
-      }
+      length += encodeMetadataLength(byteBuf, frameType, metadataOffset, metadataLength);
       byteBuf.setBytes(metadataOffset + length, metadata);
       length += metadataLength;
     }
@@ -114,6 +107,28 @@ public static int encodeMetadata(
     return length;
   }
 
+  /**
+   * Sets the metadata flag and, for frame types that have one, writes the metadata length field.
+   *
+   * @return number of bytes written at {@code metadataOffset}
+   */
+  public static int encodeMetadataLength(
+      final ByteBuf byteBuf,
+      final FrameType frameType,
+      final int metadataOffset,
+      final int metadataLength) {
+    int typeAndFlags = byteBuf.getShort(FRAME_TYPE_AND_FLAGS_FIELD_OFFSET);
+    typeAndFlags |= FLAGS_M;
+    byteBuf.setShort(FRAME_TYPE_AND_FLAGS_FIELD_OFFSET, (short) typeAndFlags);
+
+    if (hasMetadataLengthField(frameType)) {
+      encodeLength(byteBuf, metadataOffset, metadataLength);
+      return FRAME_LENGTH_SIZE;
+    }
+
+    return 0;
+  }
+
   public static int encodeData(final ByteBuf byteBuf, final int dataOffset, final ByteBuf data) {
     int length = 0;
     final int dataLength = data.readableBytes();
@@ -134,13 +149,38 @@ public static int encode(
       final FrameType frameType,
       final @Nullable ByteBuf metadata,
       final ByteBuf data) {
-    if (Frame.isFlagSet(flags, FLAGS_M) != (metadata != null)) {
+    final @Nullable Integer metadataLength = metadata != null ? metadata.readableBytes() : null;
+
+    int length =
+        encodeHeader(byteBuf, streamId, flags, frameType, metadataLength, data.readableBytes());
+
+    if (metadata != null) {
+      byteBuf.setBytes(length, metadata);
+      length += metadataLength;
+    }
+    length += encodeData(byteBuf, length, data);
+
+    return length;
+  }
+
+  /**
+   * Encodes everything but the metadata and data of a frame, so that they can be appended by the
+   * caller without being copied, e.g. as components of a {@link io.netty.buffer.CompositeByteBuf}.
+   *
+   * @return number of bytes written, which is also the offset of the metadata in the frame
+   */
+  public static int encodeHeader(
+      final ByteBuf byteBuf,
+      final int streamId,
+      int flags,
+      final FrameType frameType,
+      final @Nullable Integer metadataLength,
+      final int dataLength) {
+    if (Frame.isFlagSet(flags, FLAGS_M) != (metadataLength != null)) {
       throw new IllegalStateException("bad value for metadata flag");
     }
 
-    final int frameLength =
-        computeFrameHeaderLength(
-            frameType, metadata != null ? metadata.readableBytes() : null, data.readableBytes());
+    final int frameLength = computeFrameHeaderLength(frameType, metadataLength, dataLength);
 
     final FrameType outFrameType;
     switch (frameType) {
@@ -166,8 +206,9 @@ public static int encode(
 
     int length = encodeFrameHeader(byteBuf, frameLength, flags, outFrameType, streamId);
 
-    length += encodeMetadata(byteBuf, frameType, length, metadata);
-    length += encodeData(byteBuf, length, data);
+    if (metadataLength != null) {
+      length += encodeMetadataLength(byteBuf, frameType, length, metadataLength);
+    }
 
     return length;
   }
@@ -291,7 +332,7 @@ public static void encodeLength(final ByteBuf byteBuf, final int offset, final i
     byteBuf.setByte(offset + 2, length);
   }
 
-  private static int decodeLength(final ByteBuf byteBuf, final int offset) {
+  static int decodeLength(final ByteBuf byteBuf, final int offset) {
     int length = (byteBuf.getByte(offset) & 0xFF) << 16;
     length |= (byteBuf.getByte(offset + 1) & 0xFF) << 8;
     length |= byteBuf.getByte(offset + 2) & 0xFF;
@@ -343,6 +384,12 @@ private static int payloadOffset(final ByteBuf byteBuf) {
       case REQUEST_N:
         result = RequestNFrameFlyweight.payloadOffset(byteBuf);
         break;
+      case RESUME:
+        result = ResumeFrameFlyweight.payloadOffset(byteBuf);
+        break;
+      case RESUME_OK:
+        result = ResumeOkFrameFlyweight.payloadOffset(byteBuf);
+        break;
     }
 
     return result;
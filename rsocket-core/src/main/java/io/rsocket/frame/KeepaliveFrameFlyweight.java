@@ -32,13 +32,18 @@ public static int computeFrameLength(final int dataLength) {
   }
 
   public static int encode(final ByteBuf byteBuf, int flags, final ByteBuf data) {
+    return encode(byteBuf, flags, 0, data);
+  }
+
+  public static int encode(
+      final ByteBuf byteBuf, int flags, final long lastPosition, final ByteBuf data) {
     final int frameLength = computeFrameLength(data.readableBytes());
 
     int length =
         FrameHeaderFlyweight.encodeFrameHeader(byteBuf, frameLength, flags, FrameType.KEEPALIVE, 0);
 
-    // We don't support resumability, last position is always zero
-    byteBuf.setLong(length, 0);
+    // Last position received by the sender, only meaningful for resumable connections
+    byteBuf.setLong(length, lastPosition);
     length += Long.BYTES;
 
     length += FrameHeaderFlyweight.encodeData(byteBuf, length, data);
@@ -46,6 +51,10 @@ public static int encode(final ByteBuf byteBuf, int flags, final ByteBuf data) {
     return length;
   }
 
+  public static long lastPosition(final ByteBuf byteBuf) {
+    return byteBuf.getLong(LAST_POSITION_OFFSET);
+  }
+
   public static int payloadOffset(final ByteBuf byteBuf) {
     return PAYLOAD_OFFSET;
   }
@@ -93,6 +93,41 @@ public static int encode(
     return length;
   }
 
+  /**
+   * Encodes everything but the metadata and data of a request frame. The initial request n is only
+   * written for types that carry one.
+   *
+   * @return number of bytes written, which is also the offset of the metadata in the frame
+   */
+  public static int encodeHeader(
+      final ByteBuf byteBuf,
+      final int streamId,
+      final int flags,
+      final FrameType type,
+      final int initialRequestN,
+      final @Nullable Integer metadataLength,
+      final int dataLength) {
+    if (Frame.isFlagSet(flags, FrameHeaderFlyweight.FLAGS_M) != (metadataLength != null)) {
+      throw new IllegalArgumentException("metadata flag set incorrectly");
+    }
+
+    final int frameLength = computeFrameLength(type, metadataLength, dataLength);
+
+    int length =
+        FrameHeaderFlyweight.encodeFrameHeader(byteBuf, frameLength, flags, type, streamId);
+
+    if (type.hasInitialRequestN()) {
+      byteBuf.setInt(INITIAL_REQUEST_N_FIELD_OFFSET, initialRequestN);
+      length += Integer.BYTES;
+    }
+
+    if (metadataLength != null) {
+      length += FrameHeaderFlyweight.encodeMetadataLength(byteBuf, type, length, metadataLength);
+    }
+
+    return length;
+  }
+
   public static int initialRequestN(final ByteBuf byteBuf) {
     return byteBuf.getInt(INITIAL_REQUEST_N_FIELD_OFFSET);
   }
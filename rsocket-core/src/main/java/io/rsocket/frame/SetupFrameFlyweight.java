@@ -21,6 +21,7 @@
 import io.netty.buffer.Unpooled;
 import io.rsocket.FrameType;
 import java.nio.charset.StandardCharsets;
+import javax.annotation.Nullable;
 
 public class SetupFrameFlyweight {
   private SetupFrameFlyweight() {}
@@ -50,7 +51,7 @@ public static int computeFrameLength(
     return computeFrameLength(flags, 0, metadataMimeType, dataMimeType, metadataLength, dataLength);
   }
 
-  private static int computeFrameLength(
+  public static int computeFrameLength(
       final int flags,
       final int resumeTokenLength,
       final String metadataMimeType,
@@ -97,8 +98,7 @@ public static int encode(
         data);
   }
 
-  // Only exposed for testing, other code shouldn't create frames with resumption tokens for now
-  static int encode(
+  public static int encode(
       final ByteBuf byteBuf,
       int flags,
       final int keepaliveInterval,
@@ -108,14 +108,76 @@ static int encode(
       final String dataMimeType,
       final ByteBuf metadata,
       final ByteBuf data) {
+    final int metadataLength = metadata.readableBytes();
+
+    int length =
+        encodeHeader(
+            byteBuf,
+            flags,
+            keepaliveInterval,
+            maxLifetime,
+            resumeToken,
+            metadataMimeType,
+            dataMimeType,
+            metadataLength,
+            data.readableBytes());
+
+    byteBuf.setBytes(length, metadata);
+    length += metadataLength;
+    length += FrameHeaderFlyweight.encodeData(byteBuf, length, data);
+
+    return length;
+  }
+
+  /**
+   * Encodes everything but the metadata and data of a setup frame, so that they can be appended by
+   * the caller without being copied.
+   *
+   * @return number of bytes written, which is also the offset of the metadata in the frame
+   */
+  public static int encodeHeader(
+      final ByteBuf byteBuf,
+      int flags,
+      final int keepaliveInterval,
+      final int maxLifetime,
+      final String metadataMimeType,
+      final String dataMimeType,
+      final int metadataLength,
+      final int dataLength) {
+    if ((flags & FLAGS_RESUME_ENABLE) != 0) {
+      throw new IllegalArgumentException("RESUME_ENABLE not supported");
+    }
+
+    return encodeHeader(
+        byteBuf,
+        flags,
+        keepaliveInterval,
+        maxLifetime,
+        Unpooled.EMPTY_BUFFER,
+        metadataMimeType,
+        dataMimeType,
+        metadataLength,
+        dataLength);
+  }
+
+  public static int encodeHeader(
+      final ByteBuf byteBuf,
+      int flags,
+      final int keepaliveInterval,
+      final int maxLifetime,
+      final ByteBuf resumeToken,
+      final String metadataMimeType,
+      final String dataMimeType,
+      final int metadataLength,
+      final int dataLength) {
     final int frameLength =
         computeFrameLength(
             flags,
             resumeToken.readableBytes(),
             metadataMimeType,
             dataMimeType,
-            metadata.readableBytes(),
-            data.readableBytes());
+            metadataLength,
+            dataLength);
 
     int length =
         FrameHeaderFlyweight.encodeFrameHeader(byteBuf, frameLength, flags, FrameType.SETUP, 0);
@@ -137,8 +199,8 @@ static int encode(
     length += putMimeType(byteBuf, length, metadataMimeType);
     length += putMimeType(byteBuf, length, dataMimeType);
 
-    length += FrameHeaderFlyweight.encodeMetadata(byteBuf, FrameType.SETUP, length, metadata);
-    length += FrameHeaderFlyweight.encodeData(byteBuf, length, data);
+    length +=
+        FrameHeaderFlyweight.encodeMetadataLength(byteBuf, FrameType.SETUP, length, metadataLength);
 
     return length;
   }
@@ -155,6 +217,20 @@ public static int maxLifetime(final ByteBuf byteBuf) {
     return byteBuf.getInt(MAX_LIFETIME_FIELD_OFFSET);
   }
 
+  /**
+   * Returns the resumption token of a setup frame, the slice shares the reference count of the
+   * frame.
+   *
+   * @return the token, or {@code null} if the frame does not have the resume flag
+   */
+  public static @Nullable ByteBuf resumeToken(final ByteBuf byteBuf) {
+    if ((FrameHeaderFlyweight.flags(byteBuf) & FLAGS_RESUME_ENABLE) == 0) {
+      return null;
+    }
+    int tokenLength = byteBuf.getUnsignedShort(VARIABLE_DATA_OFFSET);
+    return byteBuf.slice(VARIABLE_DATA_OFFSET + Short.BYTES, tokenLength);
+  }
+
   public static String metadataMimeType(final ByteBuf byteBuf) {
     final byte[] bytes = getMimeType(byteBuf, metadataMimetypeOffset(byteBuf));
     return new String(bytes, StandardCharsets.UTF_8);
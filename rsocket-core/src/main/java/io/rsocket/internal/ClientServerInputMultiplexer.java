@@ -16,17 +16,25 @@
 
 package io.rsocket.internal;
 
+import io.netty.buffer.ByteBufAllocator;
 import io.rsocket.DuplexConnection;
 import io.rsocket.Frame;
 import io.rsocket.FrameType;
 import io.rsocket.plugins.DuplexConnectionInterceptor.Type;
 import io.rsocket.plugins.PluginRegistry;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import javax.annotation.Nullable;
 import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.CoreSubscriber;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.Operators;
+import reactor.util.concurrent.Queues;
 
 /**
  * {@link DuplexConnection#receive()} is a single stream on which the following type of frames
@@ -40,6 +48,12 @@
  * <p>The only way to differentiate these two frames is determining whether the stream Id is odd or
  * even. Even IDs are for the streams initiated by server and odds are for streams initiated by the
  * client.
+ *
+ * <p>Frames are routed on the thread that receives them and handed straight to the subscriber of
+ * the matching connection while it has outstanding demand. Frames only queue up, per connection,
+ * when that connection is not subscribed yet or its subscriber is not keeping up. The source is
+ * requested in batches which are replenished as frames get consumed, so a slow consumer eventually
+ * stops reads on the source.
  */
 public class ClientServerInputMultiplexer {
   private static final Logger LOGGER = LoggerFactory.getLogger("io.rsocket.FrameLogger");
@@ -51,53 +65,20 @@ public class ClientServerInputMultiplexer {
 
   public ClientServerInputMultiplexer(DuplexConnection source, PluginRegistry plugins) {
     this.source = source;
-    final MonoProcessor<Flux<Frame>> streamZero = MonoProcessor.create();
-    final MonoProcessor<Flux<Frame>> server = MonoProcessor.create();
-    final MonoProcessor<Flux<Frame>> client = MonoProcessor.create();
+    final Demultiplexer demultiplexer = new Demultiplexer();
 
     source = plugins.applyConnection(Type.SOURCE, source);
     streamZeroConnection =
-        plugins.applyConnection(Type.STREAM_ZERO, new InternalDuplexConnection(source, streamZero));
+        plugins.applyConnection(
+            Type.STREAM_ZERO, new InternalDuplexConnection(source, demultiplexer.streamZero));
     serverConnection =
-        plugins.applyConnection(Type.SERVER, new InternalDuplexConnection(source, server));
+        plugins.applyConnection(
+            Type.SERVER, new InternalDuplexConnection(source, demultiplexer.server));
     clientConnection =
-        plugins.applyConnection(Type.CLIENT, new InternalDuplexConnection(source, client));
-
-    source
-        .receive()
-        .groupBy(
-            frame -> {
-              int streamId = frame.getStreamId();
-              final Type type;
-              if (streamId == 0) {
-                if (frame.getType() == FrameType.SETUP) {
-                  type = Type.STREAM_ZERO;
-                } else {
-                  type = Type.CLIENT;
-                }
-              } else if ((streamId & 0b1) == 0) {
-                type = Type.SERVER;
-              } else {
-                type = Type.CLIENT;
-              }
-              return type;
-            })
-        .subscribe(
-            group -> {
-              switch (group.key()) {
-                case STREAM_ZERO:
-                  streamZero.onNext(group);
-                  break;
-
-                case SERVER:
-                  server.onNext(group);
-                  break;
-
-                case CLIENT:
-                  client.onNext(group);
-                  break;
-              }
-            });
+        plugins.applyConnection(
+            Type.CLIENT, new InternalDuplexConnection(source, demultiplexer.client));
+
+    source.receive().subscribe(demultiplexer);
   }
 
   public DuplexConnection asServerConnection() {
@@ -116,14 +97,286 @@ public Mono<Void> close() {
     return source.close();
   }
 
+  private static final class Demultiplexer implements CoreSubscriber<Frame> {
+    private static final int PREFETCH = Queues.SMALL_BUFFER_SIZE;
+    private static final int LIMIT = PREFETCH - (PREFETCH >> 2);
+
+    private static final AtomicIntegerFieldUpdater<Demultiplexer> CONSUMED =
+        AtomicIntegerFieldUpdater.newUpdater(Demultiplexer.class, "consumed");
+
+    private final FrameReceiver streamZero = new FrameReceiver(this);
+    private final FrameReceiver server = new FrameReceiver(this);
+    private final FrameReceiver client = new FrameReceiver(this);
+
+    private @Nullable Subscription s;
+    private volatile int consumed;
+
+    @Override
+    public void onSubscribe(Subscription s) {
+      if (Operators.validate(this.s, s)) {
+        this.s = s;
+        s.request(PREFETCH);
+      }
+    }
+
+    @Override
+    public void onNext(Frame frame) {
+      int streamId = frame.getStreamId();
+      final FrameReceiver receiver;
+      if (streamId == 0) {
+        if (frame.getType() == FrameType.SETUP) {
+          receiver = streamZero;
+        } else {
+          receiver = client;
+        }
+      } else if ((streamId & 0b1) == 0) {
+        receiver = server;
+      } else {
+        receiver = client;
+      }
+      receiver.onNext(frame);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      streamZero.onError(t);
+      server.onError(t);
+      client.onError(t);
+    }
+
+    @Override
+    public void onComplete() {
+      streamZero.onComplete();
+      server.onComplete();
+      client.onComplete();
+    }
+
+    /** Called by the receivers for frames delivered or dropped, to replenish the source. */
+    void consumed(long n) {
+      int c = CONSUMED.addAndGet(this, (int) n);
+      if (c >= LIMIT && CONSUMED.compareAndSet(this, c, 0)) {
+        Subscription s = this.s;
+        if (s != null) {
+          s.request(c);
+        }
+      }
+    }
+  }
+
+  /**
+   * Frames of one kind, as a publisher for a single subscriber. Frames are emitted directly when
+   * possible and otherwise kept in a queue that is only allocated the first time it is needed.
+   */
+  private static final class FrameReceiver extends Flux<Frame> implements Subscription {
+    private static final AtomicIntegerFieldUpdater<FrameReceiver> ONCE =
+        AtomicIntegerFieldUpdater.newUpdater(FrameReceiver.class, "once");
+
+    private static final AtomicIntegerFieldUpdater<FrameReceiver> WIP =
+        AtomicIntegerFieldUpdater.newUpdater(FrameReceiver.class, "wip");
+
+    private static final AtomicLongFieldUpdater<FrameReceiver> REQUESTED =
+        AtomicLongFieldUpdater.newUpdater(FrameReceiver.class, "requested");
+
+    private final Demultiplexer parent;
+
+    private volatile @Nullable Queue<Frame> queue;
+    private volatile @Nullable CoreSubscriber<? super Frame> actual;
+
+    private volatile boolean done;
+    private @Nullable Throwable error;
+    private volatile boolean cancelled;
+
+    private volatile int once;
+    private volatile int wip;
+    private volatile long requested;
+
+    FrameReceiver(Demultiplexer parent) {
+      this.parent = parent;
+    }
+
+    void onNext(Frame frame) {
+      if (cancelled) {
+        frame.release();
+        parent.consumed(1);
+        return;
+      }
+
+      if (wip == 0 && WIP.compareAndSet(this, 0, 1)) {
+        final CoreSubscriber<? super Frame> a = actual;
+        final Queue<Frame> q = queue;
+        if (a != null && requested != 0 && (q == null || q.isEmpty())) {
+          a.onNext(frame);
+          if (requested != Long.MAX_VALUE) {
+            REQUESTED.decrementAndGet(this);
+          }
+          parent.consumed(1);
+          if (WIP.decrementAndGet(this) == 0) {
+            return;
+          }
+        } else {
+          queue().offer(frame);
+        }
+      } else {
+        queue().offer(frame);
+        if (WIP.getAndIncrement(this) != 0) {
+          return;
+        }
+      }
+      drainLoop();
+    }
+
+    void onError(Throwable t) {
+      error = t;
+      done = true;
+      drain();
+    }
+
+    void onComplete() {
+      done = true;
+      drain();
+    }
+
+    @Override
+    public void subscribe(CoreSubscriber<? super Frame> actual) {
+      if (once == 0 && ONCE.compareAndSet(this, 0, 1)) {
+        actual.onSubscribe(this);
+        this.actual = actual;
+        drain();
+      } else {
+        Operators.error(
+            actual, new IllegalStateException("Only a single subscriber allowed per connection"));
+      }
+    }
+
+    @Override
+    public void request(long n) {
+      if (Operators.validate(n)) {
+        Operators.addCap(REQUESTED, this, n);
+        drain();
+      }
+    }
+
+    @Override
+    public void cancel() {
+      if (cancelled) {
+        return;
+      }
+      cancelled = true;
+      drain();
+    }
+
+    private Queue<Frame> queue() {
+      Queue<Frame> q = queue;
+      if (q == null) {
+        q = Queues.<Frame>unbounded().get();
+        queue = q;
+      }
+      return q;
+    }
+
+    private void drain() {
+      if (WIP.getAndIncrement(this) == 0) {
+        drainLoop();
+      }
+    }
+
+    private void drainLoop() {
+      int missed = 1;
+      for (; ; ) {
+        if (cancelled) {
+          clear();
+          actual = null;
+          return;
+        }
+
+        final CoreSubscriber<? super Frame> a = actual;
+        if (a != null) {
+          final Queue<Frame> q = queue;
+          final long r = requested;
+          long e = 0L;
+
+          while (e != r) {
+            final boolean d = done;
+            final Frame frame = q == null ? null : q.poll();
+            final boolean empty = frame == null;
+
+            if (checkTerminated(d, empty, a)) {
+              return;
+            }
+
+            if (empty) {
+              break;
+            }
+
+            a.onNext(frame);
+            e++;
+          }
+
+          if (e == r && checkTerminated(done, q == null || q.isEmpty(), a)) {
+            return;
+          }
+
+          if (e != 0) {
+            parent.consumed(e);
+            if (r != Long.MAX_VALUE) {
+              REQUESTED.addAndGet(this, -e);
+            }
+          }
+        }
+
+        missed = WIP.addAndGet(this, -missed);
+        if (missed == 0) {
+          break;
+        }
+      }
+    }
+
+    private boolean checkTerminated(boolean d, boolean empty, CoreSubscriber<? super Frame> a) {
+      if (cancelled) {
+        clear();
+        actual = null;
+        return true;
+      }
+
+      if (d && empty) {
+        actual = null;
+        Throwable e = error;
+        if (e != null) {
+          a.onError(e);
+        } else {
+          a.onComplete();
+        }
+        return true;
+      }
+
+      return false;
+    }
+
+    private void clear() {
+      final Queue<Frame> q = queue;
+      if (q == null) {
+        return;
+      }
+      long n = 0;
+      Frame frame;
+      while ((frame = q.poll()) != null) {
+        frame.release();
+        n++;
+      }
+      if (n != 0) {
+        parent.consumed(n);
+      }
+    }
+  }
+
   private static class InternalDuplexConnection implements DuplexConnection {
     private final DuplexConnection source;
-    private final MonoProcessor<Flux<Frame>> processor;
+    private final FrameReceiver receiver;
     private final boolean debugEnabled;
 
-    public InternalDuplexConnection(DuplexConnection source, MonoProcessor<Flux<Frame>> processor) {
+    public InternalDuplexConnection(DuplexConnection source, FrameReceiver receiver) {
       this.source = source;
-      this.processor = processor;
+      this.receiver = receiver;
       this.debugEnabled = LOGGER.isDebugEnabled();
     }
 
@@ -147,14 +400,11 @@ public Mono<Void> sendOne(Frame frame) {
 
     @Override
     public Flux<Frame> receive() {
-      return processor.flatMapMany(
-          f -> {
-            if (debugEnabled) {
-              return f.doOnNext(frame -> LOGGER.debug("receiving -> " + frame.toString()));
-            } else {
-              return f;
-            }
-          });
+      if (debugEnabled) {
+        return receiver.doOnNext(frame -> LOGGER.debug("receiving -> " + frame.toString()));
+      } else {
+        return receiver;
+      }
     }
 
     @Override
@@ -171,5 +421,10 @@ public Mono<Void> onClose() {
     public double availability() {
       return source.availability();
     }
+
+    @Override
+    public ByteBufAllocator alloc() {
+      return source.alloc();
+    }
   }
 }
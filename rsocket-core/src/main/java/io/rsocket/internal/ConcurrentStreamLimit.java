@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import javax.annotation.Nullable;
+
+/**
+ * Counts the active streams of a connection against a maximum.
+ *
+ * <p>A stream is admitted by a successful {@link #tryAcquire()} and must call {@link #release()}
+ * exactly once when it ends. A limit may be nested in a parent limit shared by several connections,
+ * a stream is then only admitted if both have room for it.
+ */
+public final class ConcurrentStreamLimit {
+  private static final AtomicIntegerFieldUpdater<ConcurrentStreamLimit> ACTIVE =
+      AtomicIntegerFieldUpdater.newUpdater(ConcurrentStreamLimit.class, "active");
+
+  private final int maxStreams;
+  private final @Nullable ConcurrentStreamLimit parent;
+
+  private volatile int active;
+
+  /** @param maxStreams maximum number of active streams, {@code 0} for no limit */
+  public ConcurrentStreamLimit(int maxStreams) {
+    this(maxStreams, null);
+  }
+
+  /**
+   * @param maxStreams maximum number of active streams, {@code 0} for no limit
+   * @param parent limit shared with other connections, or {@code null}
+   */
+  public ConcurrentStreamLimit(int maxStreams, @Nullable ConcurrentStreamLimit parent) {
+    if (maxStreams < 0) {
+      throw new IllegalArgumentException("maxStreams must not be negative: " + maxStreams);
+    }
+    this.maxStreams = maxStreams == 0 ? Integer.MAX_VALUE : maxStreams;
+    this.parent = parent;
+  }
+
+  /** @return {@code true} if the stream is admitted and must be released once it ends */
+  public boolean tryAcquire() {
+    for (; ; ) {
+      int active = this.active;
+      if (active >= maxStreams) {
+        return false;
+      }
+      if (ACTIVE.compareAndSet(this, active, active + 1)) {
+        break;
+      }
+    }
+
+    if (parent != null && !parent.tryAcquire()) {
+      ACTIVE.decrementAndGet(this);
+      return false;
+    }
+    return true;
+  }
+
+  public void release() {
+    ACTIVE.decrementAndGet(this);
+    if (parent != null) {
+      parent.release();
+    }
+  }
+
+  /** @return number of active streams */
+  public int active() {
+    return active;
+  }
+
+  /** @return maximum number of active streams, {@link Integer#MAX_VALUE} if there is no limit */
+  public int maxStreams() {
+    return maxStreams;
+  }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import io.netty.util.collection.IntObjectHashMap;
+import io.rsocket.Frame;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import javax.annotation.Nullable;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.FluxProcessor;
+import reactor.core.publisher.Operators;
+
+/**
+ * A processor that accepts frames from any number of threads and emits them to a single
+ * subscriber, sharing the subscriber's demand fairly between streams.
+ *
+ * <p>Like {@link UnboundedProcessor} frames are buffered in an unbounded {@link MpscLinkedQueue}
+ * and drained by whichever thread finds the processor idle. The draining thread sorts them into a
+ * queue per stream id and takes turns between the streams with frames queued, using deficit round
+ * robin: on its turn a stream may emit frames worth up to {@code quantum} bytes plus whatever it
+ * did not use on previous turns in which it had frames left. A stream emitting thousands of large
+ * frames therefore delays a frame of another stream by at most one quantum per queued stream,
+ * rather than by everything it queued before. Frames of the same stream keep their order.
+ *
+ * <p>Control frames skip the stream queues: {@code KEEPALIVE}, {@code LEASE}, {@code REQUEST_N},
+ * {@code CANCEL} and {@code ERROR} frames go to an express queue which is always drained first, so
+ * credit, cancellations and keepalive acks are not held up behind payloads. They only wait for
+ * the frames of their own stream they must not overtake: {@code REQUEST_N} and {@code CANCEL} wait
+ * for the request opening their stream, and a stream's {@code ERROR} waits for all frames of its
+ * stream since the peer drops anything received after it.
+ *
+ * <p>The default quantum can be changed with the {@code io.rsocket.outbound.quantum} system
+ * property.
+ */
+public final class FairFrameProcessor extends FluxProcessor<Frame, Frame> implements Subscription {
+  public static final int DEFAULT_QUANTUM =
+      Integer.getInteger("io.rsocket.outbound.quantum", 16 * 1024);
+
+  private static final AtomicIntegerFieldUpdater<FairFrameProcessor> ONCE =
+      AtomicIntegerFieldUpdater.newUpdater(FairFrameProcessor.class, "once");
+
+  private static final AtomicIntegerFieldUpdater<FairFrameProcessor> WIP =
+      AtomicIntegerFieldUpdater.newUpdater(FairFrameProcessor.class, "wip");
+
+  private static final AtomicLongFieldUpdater<FairFrameProcessor> REQUESTED =
+      AtomicLongFieldUpdater.newUpdater(FairFrameProcessor.class, "requested");
+
+  private final MpscLinkedQueue<Frame> queue;
+  private final int quantum;
+
+  // Only accessed by the draining thread
+  private final IntObjectHashMap<StreamQueue> streams = new IntObjectHashMap<>();
+  // Streams with frames queued, the first one has the turn
+  private final ArrayDeque<StreamQueue> active = new ArrayDeque<>();
+  private final ArrayDeque<Frame> express = new ArrayDeque<>();
+
+  private volatile boolean done;
+  private @Nullable Throwable error;
+
+  private volatile @Nullable CoreSubscriber<? super Frame> actual;
+
+  private volatile boolean cancelled;
+
+  private volatile int once;
+  private volatile int wip;
+  private volatile long requested;
+
+  public FairFrameProcessor() {
+    this(DEFAULT_QUANTUM);
+  }
+
+  /** @param quantum bytes a stream may emit per turn */
+  public FairFrameProcessor(int quantum) {
+    if (quantum <= 0) {
+      throw new IllegalArgumentException("quantum must be positive: " + quantum);
+    }
+    this.queue = new MpscLinkedQueue<>();
+    this.quantum = quantum;
+  }
+
+  @Override
+  public void onSubscribe(Subscription s) {
+    if (done || cancelled) {
+      s.cancel();
+    } else {
+      s.request(Long.MAX_VALUE);
+    }
+  }
+
+  @Override
+  public void onNext(Frame frame) {
+    if (done || cancelled) {
+      frame.release();
+      return;
+    }
+
+    queue.offer(frame);
+    drain();
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    if (done || cancelled) {
+      Operators.onErrorDropped(t);
+      return;
+    }
+
+    error = t;
+    done = true;
+    drain();
+  }
+
+  @Override
+  public void onComplete() {
+    if (done || cancelled) {
+      return;
+    }
+
+    done = true;
+    drain();
+  }
+
+  @Override
+  public void subscribe(CoreSubscriber<? super Frame> actual) {
+    Objects.requireNonNull(actual, "subscribe");
+    if (once == 0 && ONCE.compareAndSet(this, 0, 1)) {
+      actual.onSubscribe(this);
+      this.actual = actual;
+      if (cancelled) {
+        this.actual = null;
+      } else {
+        drain();
+      }
+    } else {
+      Operators.error(
+          actual,
+          new IllegalStateException("FairFrameProcessor allows only a single Subscriber"));
+    }
+  }
+
+  @Override
+  public void request(long n) {
+    if (Operators.validate(n)) {
+      Operators.addCap(REQUESTED, this, n);
+      drain();
+    }
+  }
+
+  @Override
+  public void cancel() {
+    if (cancelled) {
+      return;
+    }
+    cancelled = true;
+    drain();
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return done;
+  }
+
+  @Override
+  public @Nullable Throwable getError() {
+    return error;
+  }
+
+  @Override
+  public boolean hasDownstreams() {
+    return actual != null;
+  }
+
+  private void drain() {
+    if (WIP.getAndIncrement(this) != 0) {
+      return;
+    }
+
+    int missed = 1;
+    for (; ; ) {
+      if (cancelled) {
+        // Elements offered concurrently with cancel() are released by the next drain
+        clear();
+        actual = null;
+      } else {
+        final CoreSubscriber<? super Frame> a = actual;
+        if (a != null) {
+          drainRegular(a);
+          return;
+        }
+      }
+
+      missed = WIP.addAndGet(this, -missed);
+      if (missed == 0) {
+        break;
+      }
+    }
+  }
+
+  private void drainRegular(CoreSubscriber<? super Frame> a) {
+    int missed = 1;
+
+    for (; ; ) {
+      if (cancelled) {
+        clear();
+        actual = null;
+      } else {
+        final long r = requested;
+        long e = 0L;
+
+        while (r != e && !cancelled) {
+          final boolean d = done;
+          final Frame frame = poll();
+          final boolean empty = frame == null;
+
+          if (checkTerminated(d, empty, a)) {
+            return;
+          }
+
+          if (empty) {
+            break;
+          }
+
+          a.onNext(frame);
+          e++;
+        }
+
+        if (r == e && checkTerminated(done, isEmpty(), a)) {
+          return;
+        }
+
+        if (e != 0 && r != Long.MAX_VALUE) {
+          REQUESTED.addAndGet(this, -e);
+        }
+      }
+
+      missed = WIP.addAndGet(this, -missed);
+      if (missed == 0) {
+        break;
+      }
+    }
+  }
+
+  private @Nullable Frame poll() {
+    Frame frame;
+    while ((frame = queue.poll()) != null) {
+      enqueue(frame);
+    }
+
+    frame = express.pollFirst();
+    if (frame != null) {
+      return frame;
+    }
+
+    for (; ; ) {
+      final StreamQueue stream = active.peekFirst();
+      if (stream == null) {
+        return null;
+      }
+
+      if (!stream.hasTurn) {
+        stream.hasTurn = true;
+        stream.deficit += quantum;
+      }
+
+      frame = stream.frames.peekFirst();
+      final int length = frame.content().readableBytes();
+      if (length <= stream.deficit) {
+        stream.frames.pollFirst();
+        stream.deficit -= length;
+        if (stream.frames.isEmpty()) {
+          // An idle stream does not save up its deficit for later
+          active.pollFirst();
+          streams.remove(stream.streamId);
+        }
+        return frame;
+      }
+
+      stream.hasTurn = false;
+      active.pollFirst();
+      active.offerLast(stream);
+    }
+  }
+
+  private void enqueue(Frame frame) {
+    final int streamId = frame.getStreamId();
+    StreamQueue stream = streams.get(streamId);
+    if (isExpress(frame, stream)) {
+      express.offerLast(frame);
+      return;
+    }
+    if (stream == null) {
+      stream = new StreamQueue(streamId);
+      streams.put(streamId, stream);
+      active.offerLast(stream);
+    }
+    stream.frames.offerLast(frame);
+  }
+
+  private static boolean isExpress(Frame frame, @Nullable StreamQueue stream) {
+    switch (frame.getType()) {
+      case KEEPALIVE:
+      case LEASE:
+        return true;
+      case REQUEST_N:
+      case CANCEL:
+        return stream == null || !stream.frames.peekFirst().getType().isRequestType();
+      case ERROR:
+        return stream == null || frame.getStreamId() == 0;
+      default:
+        return false;
+    }
+  }
+
+  private boolean isEmpty() {
+    return queue.isEmpty() && express.isEmpty() && active.isEmpty();
+  }
+
+  private boolean checkTerminated(boolean d, boolean empty, CoreSubscriber<? super Frame> a) {
+    if (cancelled) {
+      // Left to the drain loop, which clears and still releases the work-in-progress count
+      return false;
+    }
+
+    if (d && empty) {
+      actual = null;
+      final Throwable e = error;
+      if (e != null) {
+        a.onError(e);
+      } else {
+        a.onComplete();
+      }
+      return true;
+    }
+
+    return false;
+  }
+
+  private void clear() {
+    Frame frame;
+    while ((frame = queue.poll()) != null) {
+      frame.release();
+    }
+    while ((frame = express.pollFirst()) != null) {
+      frame.release();
+    }
+    StreamQueue stream;
+    while ((stream = active.pollFirst()) != null) {
+      while ((frame = stream.frames.pollFirst()) != null) {
+        frame.release();
+      }
+    }
+    streams.clear();
+  }
+
+  private static final class StreamQueue {
+    final int streamId;
+    final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    int deficit;
+    boolean hasTurn;
+
+    StreamQueue(int streamId) {
+      this.streamId = streamId;
+    }
+  }
+}
@@ -16,7 +16,9 @@
 
 package io.rsocket.internal;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import javax.annotation.Nullable;
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
@@ -25,23 +27,52 @@
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Operators;
 
-/** */
+/**
+ * Only requests from its source what both its subscriber and the other side of the stream have
+ * asked for: the subscriber through the {@link Subscription} it is given, the other side through
+ * {@link #increaseRequestLimit(long)}.
+ *
+ * <p>Both sides add to their counter with a CAS and then try to enter a work-in-progress drain
+ * loop. Only the thread in the loop takes the minimum of both counters off them and requests it
+ * from the source, requests from either side that arrive meanwhile make it loop again.
+ */
 public class LimitableRequestPublisher<T> extends Flux<T> implements Subscription {
+  private static final AtomicLongFieldUpdater<LimitableRequestPublisher> INTERNAL_REQUESTED =
+      AtomicLongFieldUpdater.newUpdater(LimitableRequestPublisher.class, "internalRequested");
+
+  private static final AtomicLongFieldUpdater<LimitableRequestPublisher> EXTERNAL_REQUESTED =
+      AtomicLongFieldUpdater.newUpdater(LimitableRequestPublisher.class, "externalRequested");
+
+  private static final AtomicIntegerFieldUpdater<LimitableRequestPublisher> WIP =
+      AtomicIntegerFieldUpdater.newUpdater(LimitableRequestPublisher.class, "wip");
+
+  private static final AtomicIntegerFieldUpdater<LimitableRequestPublisher> SUBSCRIBED =
+      AtomicIntegerFieldUpdater.newUpdater(LimitableRequestPublisher.class, "subscribed");
+
+  private static final AtomicIntegerFieldUpdater<LimitableRequestPublisher> CANCELED =
+      AtomicIntegerFieldUpdater.newUpdater(LimitableRequestPublisher.class, "canceled");
+
+  private static final AtomicReferenceFieldUpdater<LimitableRequestPublisher, Subscription>
+      INTERNAL_SUBSCRIPTION =
+          AtomicReferenceFieldUpdater.newUpdater(
+              LimitableRequestPublisher.class, Subscription.class, "internalSubscription");
+
   private final Publisher<T> source;
 
-  private final AtomicBoolean canceled;
+  private volatile long internalRequested;
+
+  private volatile long externalRequested;
 
-  private long internalRequested;
+  private volatile int wip;
 
-  private long externalRequested;
+  private volatile int subscribed;
 
-  private volatile boolean subscribed;
+  private volatile int canceled;
 
   private volatile @Nullable Subscription internalSubscription;
 
   private LimitableRequestPublisher(Publisher<T> source) {
     this.source = source;
-    this.canceled = new AtomicBoolean();
   }
 
   public static <T> LimitableRequestPublisher<T> wrap(Publisher<T> source) {
@@ -50,12 +81,8 @@ public static <T> LimitableRequestPublisher<T> wrap(Publisher<T> source) {
 
   @Override
   public void subscribe(CoreSubscriber<? super T> destination) {
-    synchronized (this) {
-      if (subscribed) {
-        throw new IllegalStateException("only one subscriber at a time");
-      }
-
-      subscribed = true;
+    if (!SUBSCRIBED.compareAndSet(this, 0, 1)) {
+      throw new IllegalStateException("only one subscriber at a time");
     }
 
     destination.onSubscribe(new InnerSubscription());
@@ -63,10 +90,7 @@ public void subscribe(CoreSubscriber<? super T> destination) {
   }
 
   public void increaseRequestLimit(long n) {
-    synchronized (this) {
-      externalRequested = Operators.addCap(n, externalRequested);
-    }
-
+    addCap(EXTERNAL_REQUESTED, n);
     requestN();
   }
 
@@ -75,28 +99,47 @@ public void request(long n) {
     increaseRequestLimit(n);
   }
 
-  private void requestN() {
-    long r;
-    synchronized (this) {
-      if (internalSubscription == null) {
+  private void addCap(AtomicLongFieldUpdater<LimitableRequestPublisher> requested, long n) {
+    for (; ; ) {
+      long current = requested.get(this);
+      if (requested.compareAndSet(this, current, Operators.addCap(n, current))) {
         return;
       }
+    }
+  }
 
-      r = Math.min(internalRequested, externalRequested);
-      externalRequested -= r;
-      internalRequested -= r;
+  private void requestN() {
+    if (WIP.getAndIncrement(this) != 0) {
+      return;
     }
 
-    if (r > 0) {
-      internalSubscription.request(r);
+    int missed = 1;
+    for (; ; ) {
+      Subscription subscription = internalSubscription;
+      if (subscription != null) {
+        // Only this loop takes from the counters, so both still hold at least r afterwards
+        long r = Math.min(internalRequested, externalRequested);
+        if (r > 0) {
+          INTERNAL_REQUESTED.addAndGet(this, -r);
+          EXTERNAL_REQUESTED.addAndGet(this, -r);
+          subscription.request(r);
+        }
+      }
+
+      missed = WIP.addAndGet(this, -missed);
+      if (missed == 0) {
+        return;
+      }
     }
   }
 
   public void cancel() {
-    if (canceled.compareAndSet(false, true) && internalSubscription != null) {
-      internalSubscription.cancel();
-      internalSubscription = null;
-      subscribed = false;
+    if (CANCELED.compareAndSet(this, 0, 1)) {
+      Subscription subscription = INTERNAL_SUBSCRIPTION.getAndSet(this, null);
+      if (subscription != null) {
+        subscription.cancel();
+        subscribed = 0;
+      }
     }
   }
 
@@ -109,14 +152,14 @@ private InnerSubscriber(Subscriber<? super T> destination) {
 
     @Override
     public void onSubscribe(Subscription s) {
-      synchronized (LimitableRequestPublisher.this) {
-        LimitableRequestPublisher.this.internalSubscription = s;
+      internalSubscription = s;
 
-        if (canceled.get()) {
-          s.cancel();
-          subscribed = false;
-          LimitableRequestPublisher.this.internalSubscription = null;
-        }
+      // A cancel which did not see the subscription yet leaves cancelling it to this side
+      if (canceled == 1
+          && INTERNAL_SUBSCRIPTION.compareAndSet(LimitableRequestPublisher.this, s, null)) {
+        s.cancel();
+        subscribed = 0;
+        return;
       }
 
       requestN();
@@ -145,10 +188,7 @@ public void onComplete() {
   private class InnerSubscription implements Subscription {
     @Override
     public void request(long n) {
-      synchronized (LimitableRequestPublisher.this) {
-        internalRequested = Operators.addCap(n, internalRequested);
-      }
-
+      addCap(INTERNAL_REQUESTED, n);
       requestN();
     }
 
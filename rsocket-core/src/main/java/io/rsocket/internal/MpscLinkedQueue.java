@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import javax.annotation.Nullable;
+
+/**
+ * Unbounded multi-producer single-consumer queue of linked nodes, after Dmitry Vyukov's
+ * non-intrusive MPSC node-based queue. Producers only contend on a single atomic swap of the
+ * producer node; the consumer never contends with producers.
+ *
+ * <p>{@link #offer(Object)} may be called from any thread, {@link #poll()} and {@link #isEmpty()}
+ * only from one thread at a time.
+ */
+final class MpscLinkedQueue<E> {
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<MpscLinkedQueue, Node> PRODUCER_NODE =
+      AtomicReferenceFieldUpdater.newUpdater(MpscLinkedQueue.class, Node.class, "producerNode");
+
+  private volatile Node<E> producerNode;
+  private Node<E> consumerNode;
+
+  MpscLinkedQueue() {
+    Node<E> stub = new Node<>(null);
+    this.consumerNode = stub;
+    this.producerNode = stub;
+  }
+
+  @SuppressWarnings("unchecked")
+  void offer(E value) {
+    final Node<E> node = new Node<>(value);
+    final Node<E> previous = PRODUCER_NODE.getAndSet(this, node);
+    // Between the swap and this store the queue is briefly disconnected, poll() spins over it
+    previous.soNext(node);
+  }
+
+  @Nullable
+  E poll() {
+    final Node<E> current = consumerNode;
+    Node<E> next = current.next;
+    if (next == null) {
+      if (current == producerNode) {
+        return null;
+      }
+      // A producer swapped in its node but has not linked it yet
+      do {
+        next = current.next;
+      } while (next == null);
+    }
+
+    final E value = next.value;
+    next.value = null;
+    consumerNode = next;
+    return value;
+  }
+
+  boolean isEmpty() {
+    return consumerNode == producerNode;
+  }
+
+  private static final class Node<E> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+        AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+    @Nullable E value;
+    volatile @Nullable Node<E> next;
+
+    Node(@Nullable E value) {
+      this.value = value;
+    }
+
+    void soNext(Node<E> next) {
+      NEXT.lazySet(this, next);
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import io.rsocket.Frame;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Consumer;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.util.concurrent.Queues;
+
+/**
+ * Tracks the bytes of the frames queued for a connection but not taken by its transport yet.
+ *
+ * <p>Once the queued bytes go over the high watermark the connection is no longer writable, and it
+ * only becomes writable again once they drop to the low watermark. Publishers subscribed with
+ * {@link #paced(Consumer)} are asked for more frames only while the connection is writable, so a
+ * transport which stops taking frames, for example because its socket buffer is full, pauses
+ * them instead of letting the queue grow without bounds. Frames already requested are still
+ * queued, the high watermark is a soft limit.
+ *
+ * <p>Defaults can be changed with the {@code io.rsocket.outbound.highWatermark} and {@code
+ * io.rsocket.outbound.lowWatermark} system properties.
+ */
+public final class OutboundWatermark {
+  public static final int DEFAULT_HIGH_WATERMARK =
+      Integer.getInteger("io.rsocket.outbound.highWatermark", 256 * 1024);
+
+  public static final int DEFAULT_LOW_WATERMARK =
+      Integer.getInteger("io.rsocket.outbound.lowWatermark", 128 * 1024);
+
+  private static final int PREFETCH = Queues.XS_BUFFER_SIZE;
+  private static final int LIMIT = PREFETCH - (PREFETCH >> 2);
+
+  private static final AtomicLongFieldUpdater<OutboundWatermark> QUEUED =
+      AtomicLongFieldUpdater.newUpdater(OutboundWatermark.class, "queued");
+
+  private static final AtomicIntegerFieldUpdater<OutboundWatermark> UNWRITABLE =
+      AtomicIntegerFieldUpdater.newUpdater(OutboundWatermark.class, "unwritable");
+
+  private final int lowWatermark;
+  private final int highWatermark;
+  private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+  private volatile long queued;
+  private volatile int unwritable;
+
+  public OutboundWatermark() {
+    this(DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK);
+  }
+
+  /**
+   * @param lowWatermark queued bytes at which an unwritable connection becomes writable again
+   * @param highWatermark queued bytes over which the connection is no longer writable
+   */
+  public OutboundWatermark(int lowWatermark, int highWatermark) {
+    if (lowWatermark < 0 || highWatermark < lowWatermark) {
+      throw new IllegalArgumentException(
+          "Invalid watermarks, low: " + lowWatermark + " high: " + highWatermark);
+    }
+    this.lowWatermark = lowWatermark;
+    this.highWatermark = highWatermark;
+  }
+
+  /** Records a frame being queued, to be called before it is handed to the queue. */
+  public void enqueued(Frame frame) {
+    long queued = QUEUED.addAndGet(this, frame.content().readableBytes());
+    if (queued > highWatermark && unwritable == 0 && UNWRITABLE.compareAndSet(this, 0, 1)) {
+      // The transport may have drained the queue before the connection was marked unwritable
+      if (this.queued <= lowWatermark && UNWRITABLE.compareAndSet(this, 1, 0)) {
+        runWaiting();
+      }
+    }
+  }
+
+  /** Records a frame being taken from the queue by the transport. */
+  public void dequeued(Frame frame) {
+    long queued = QUEUED.addAndGet(this, -frame.content().readableBytes());
+    if (queued <= lowWatermark && unwritable == 1 && UNWRITABLE.compareAndSet(this, 1, 0)) {
+      runWaiting();
+    }
+  }
+
+  public boolean isWritable() {
+    return unwritable == 0;
+  }
+
+  /** @return number of bytes queued */
+  public long queued() {
+    return queued;
+  }
+
+  /**
+   * @return {@code 1.0} while writable, otherwise the share of the queued bytes below the low
+   *     watermark
+   */
+  public double availability() {
+    if (isWritable()) {
+      return 1.0;
+    }
+    long queued = this.queued;
+    return queued <= lowWatermark ? 1.0 : Math.max(lowWatermark, 1) / (double) queued;
+  }
+
+  /**
+   * Runs a task right away if the connection is writable, or else once it becomes writable again.
+   */
+  public void whenWritable(Runnable task) {
+    if (isWritable()) {
+      task.run();
+      return;
+    }
+    waiting.offer(task);
+    // The connection may have become writable before the task was queued
+    if (isWritable()) {
+      runWaiting();
+    }
+  }
+
+  /**
+   * Creates a subscriber which hands every frame to {@code sender} and requests more from its
+   * publisher only while the connection is writable.
+   *
+   * @param sender queues a frame for the connection
+   * @return subscriber pacing its publisher to the connection
+   */
+  public <T> BaseSubscriber<T> paced(Consumer<? super T> sender) {
+    return new PacedSubscriber<>(this, sender);
+  }
+
+  private void runWaiting() {
+    Runnable task;
+    while (isWritable() && (task = waiting.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private static final class PacedSubscriber<T> extends BaseSubscriber<T> {
+    private final OutboundWatermark watermark;
+    private final Consumer<? super T> sender;
+    private final Runnable requestMore = () -> request(LIMIT);
+    private int consumed;
+
+    PacedSubscriber(OutboundWatermark watermark, Consumer<? super T> sender) {
+      this.watermark = watermark;
+      this.sender = sender;
+    }
+
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {
+      subscription.request(PREFETCH);
+    }
+
+    @Override
+    protected void hookOnNext(T value) {
+      sender.accept(value);
+      if (++consumed == LIMIT) {
+        consumed = 0;
+        watermark.whenWritable(requestMore);
+      }
+    }
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import io.rsocket.Payload;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import javax.annotation.Nullable;
+import reactor.util.concurrent.Queues;
+
+/**
+ * Payloads received on the streams of a connection and not yet delivered to their subscribers.
+ *
+ * <p>Each receiving stream keeps the credit it has granted its peer with {@code REQUEST_N} frames
+ * and not seen used yet. A payload is only admitted against that credit, so a receive queue never
+ * holds more payloads than the stream has asked for, and a peer sending more than it was granted
+ * is detected as soon as it does. The bytes of admitted payloads are counted until they are
+ * delivered, per stream and for the whole connection.
+ *
+ * <p>Client and server of a connection share one instance, their streams never have the same id.
+ */
+public final class ReceiveBuffers {
+  private static final AtomicLongFieldUpdater<ReceiveBuffers> BUFFERED_BYTES =
+      AtomicLongFieldUpdater.newUpdater(ReceiveBuffers.class, "bufferedBytes");
+
+  private final StreamTable<StreamBuffer> streams = new StreamTable<>();
+  private volatile long bufferedBytes;
+
+  /**
+   * Creates the queue of a receiving stream. Admission against credit bounds its length, it only
+   * grows in links sized to the credit a stream keeps in flight.
+   *
+   * @param requestNBatchSize credit kept in flight by the stream, {@code 0} if not batching
+   * @return empty queue
+   */
+  public static <T> Queue<T> newQueue(int requestNBatchSize) {
+    int linkSize = requestNBatchSize > 0 ? requestNBatchSize : Queues.XS_BUFFER_SIZE;
+    return Queues.<T>unbounded(linkSize).get();
+  }
+
+  /** Starts accounting for a receiving stream, it must be closed once the stream ends. */
+  public StreamBuffer open(int streamId) {
+    StreamBuffer buffer = new StreamBuffer(this);
+    streams.put(streamId, buffer);
+    return buffer;
+  }
+
+  /** Stops accounting for a stream, payloads it still buffers are no longer counted. */
+  public void close(int streamId) {
+    StreamBuffer buffer = streams.remove(streamId);
+    if (buffer != null) {
+      buffer.close();
+    }
+  }
+
+  /**
+   * Admits a payload received on a stream.
+   *
+   * @return {@code false} if the stream has no credit left for it, {@code true} if it was admitted
+   *     or the stream is not accounted for
+   */
+  public boolean received(int streamId, Payload payload) {
+    StreamBuffer buffer = streams.get(streamId);
+    return buffer == null || buffer.received(payload);
+  }
+
+  /** @return bytes received on all streams and not delivered yet */
+  public long bufferedBytes() {
+    return bufferedBytes;
+  }
+
+  /** @return bytes received on a stream and not delivered yet, {@code 0} if it is not active */
+  public long bufferedBytes(int streamId) {
+    StreamBuffer buffer = streams.get(streamId);
+    return buffer == null ? 0 : buffer.bufferedBytes();
+  }
+
+  /** @return largest number of bytes received on one stream and not delivered yet */
+  public long maxStreamBufferedBytes() {
+    long max = 0;
+    for (StreamBuffer buffer : streams.values()) {
+      max = Math.max(max, buffer.bufferedBytes());
+    }
+    return max;
+  }
+
+  // Measured on slices, getData() and getMetadata() may copy the payload
+  private static int size(Payload payload) {
+    int metadata = payload.hasMetadata() ? payload.sliceMetadata().readableBytes() : 0;
+    return metadata + payload.sliceData().readableBytes();
+  }
+
+  /** Credit and buffered bytes of one receiving stream. */
+  public static final class StreamBuffer {
+    private static final AtomicLongFieldUpdater<StreamBuffer> CREDIT =
+        AtomicLongFieldUpdater.newUpdater(StreamBuffer.class, "credit");
+    private static final AtomicLongFieldUpdater<StreamBuffer> BYTES =
+        AtomicLongFieldUpdater.newUpdater(StreamBuffer.class, "bytes");
+
+    private static final long CLOSED = -1;
+
+    private final ReceiveBuffers parent;
+    // Long.MAX_VALUE once the peer may send without limit
+    private volatile long credit;
+    private volatile long bytes;
+
+    private StreamBuffer(ReceiveBuffers parent) {
+      this.parent = parent;
+    }
+
+    /** Records {@code n} more payloads granted to the peer, before the grant is sent. */
+    public void granted(long n) {
+      if (n >= Integer.MAX_VALUE) {
+        credit = Long.MAX_VALUE;
+        return;
+      }
+      for (; ; ) {
+        long c = credit;
+        if (c == Long.MAX_VALUE || CREDIT.compareAndSet(this, c, c + n)) {
+          return;
+        }
+      }
+    }
+
+    /** @return {@code false} if the peer had no credit left to send the payload */
+    public boolean received(Payload payload) {
+      for (; ; ) {
+        long c = credit;
+        if (c == 0) {
+          return false;
+        }
+        if (c == Long.MAX_VALUE || CREDIT.compareAndSet(this, c, c - 1)) {
+          break;
+        }
+      }
+      add(size(payload));
+      return true;
+    }
+
+    /** Records a payload being handed to the subscriber, call before it can be released. */
+    public void delivered(Payload payload) {
+      add(-size(payload));
+    }
+
+    /** @return bytes received and not delivered yet */
+    public long bufferedBytes() {
+      return Math.max(0, bytes);
+    }
+
+    private void add(long delta) {
+      for (; ; ) {
+        long b = bytes;
+        if (b == CLOSED) {
+          return;
+        }
+        if (BYTES.compareAndSet(this, b, b + delta)) {
+          BUFFERED_BYTES.addAndGet(parent, delta);
+          return;
+        }
+      }
+    }
+
+    private void close() {
+      long b = BYTES.getAndSet(this, CLOSED);
+      if (b != CLOSED && b != 0) {
+        BUFFERED_BYTES.addAndGet(parent, -b);
+      }
+    }
+  }
+}
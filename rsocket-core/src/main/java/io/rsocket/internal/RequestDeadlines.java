@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.IntConsumer;
+import javax.annotation.Nullable;
+
+/**
+ * Deadlines of the streams of a connection, all expiring the same time after they start.
+ *
+ * <p>Deadlines are kept in a {@link StreamTable} by stream id and scheduled on a hashed wheel
+ * {@link Timer} shared by all connections, so a deadline costs one wheel entry instead of a task
+ * on a scheduler. A stream cancels its deadline when it ends, which drops the entry from the
+ * wheel before it fires. Expiry is only precise to the tick of the wheel, which can be changed
+ * with the {@code io.rsocket.deadline.tickDurationMillis} system property.
+ */
+public final class RequestDeadlines {
+  private static final long TICK_DURATION_MILLIS =
+      Long.getLong("io.rsocket.deadline.tickDurationMillis", 10);
+
+  private static final class SharedHolder {
+    static final Timer TIMER =
+        new HashedWheelTimer(
+            new DefaultThreadFactory("rsocket-deadline", true),
+            TICK_DURATION_MILLIS,
+            TimeUnit.MILLISECONDS);
+  }
+
+  private final Timer timer;
+  private final long timeoutNanos;
+  private final IntConsumer onExpired;
+  private final StreamTable<Deadline> deadlines = new StreamTable<>();
+
+  /**
+   * @param timeout time after which a stream expires
+   * @param onExpired called on the timer thread with the id of an expired stream
+   */
+  public RequestDeadlines(Duration timeout, IntConsumer onExpired) {
+    this(SharedHolder.TIMER, timeout, onExpired);
+  }
+
+  public RequestDeadlines(Timer timer, Duration timeout, IntConsumer onExpired) {
+    if (timeout.isNegative() || timeout.isZero()) {
+      throw new IllegalArgumentException("timeout must be positive: " + timeout);
+    }
+    this.timer = timer;
+    this.timeoutNanos = timeout.toNanos();
+    this.onExpired = onExpired;
+  }
+
+  /** Starts the deadline of a stream, it must be cancelled once the stream ends. */
+  public void start(int streamId) {
+    Deadline deadline = new Deadline(this, streamId);
+    deadlines.put(streamId, deadline);
+    deadline.timeout = timer.newTimeout(deadline, timeoutNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** Cancels the deadline of a stream, if it has not expired yet. */
+  public void cancel(int streamId) {
+    Deadline deadline = deadlines.remove(streamId);
+    if (deadline != null) {
+      deadline.cancel();
+    }
+  }
+
+  /** @return number of streams with a pending deadline */
+  public int size() {
+    return deadlines.size();
+  }
+
+  private static final class Deadline implements TimerTask {
+    private static final AtomicIntegerFieldUpdater<Deadline> DONE =
+        AtomicIntegerFieldUpdater.newUpdater(Deadline.class, "done");
+
+    private final RequestDeadlines parent;
+    private final int streamId;
+    private volatile @Nullable Timeout timeout;
+    private volatile int done;
+
+    Deadline(RequestDeadlines parent, int streamId) {
+      this.parent = parent;
+      this.streamId = streamId;
+    }
+
+    @Override
+    public void run(Timeout timeout) {
+      if (DONE.compareAndSet(this, 0, 1)) {
+        parent.deadlines.remove(streamId);
+        parent.onExpired.accept(streamId);
+      }
+    }
+
+    void cancel() {
+      if (DONE.compareAndSet(this, 0, 1)) {
+        Timeout timeout = this.timeout;
+        if (timeout != null) {
+          timeout.cancel();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import reactor.core.publisher.Operators;
+
+/**
+ * Decides how much credit the requesting side of a stream grants its peer with {@code REQUEST_N}
+ * frames.
+ *
+ * <p>Without a batch size every {@code request(n)} of the subscriber is passed on as is. With a
+ * batch size credit is granted ahead of the subscriber's demand: whenever the subscriber wants
+ * more, the credit in flight is topped up to the batch size once the replenish ratio of it has
+ * been consumed. A subscriber requesting one payload at a time then causes one frame per batch
+ * rather than one per payload, at the cost of receiving up to a batch of payloads it has not asked
+ * for yet. Demand beyond the credit in flight is always granted right away.
+ */
+public final class RequestNCoalescer {
+  public static final float DEFAULT_REPLENISH_RATIO = 0.75f;
+
+  private final int batchSize;
+  private final int replenishThreshold;
+
+  // requested by the subscriber and not delivered yet
+  private long demand;
+  // granted to the peer and not delivered yet
+  private long credit;
+  private boolean unbounded;
+
+  /** @param batchSize credit kept in flight, or {@code 0} to pass every request on as is */
+  public RequestNCoalescer(int batchSize) {
+    this(batchSize, DEFAULT_REPLENISH_RATIO);
+  }
+
+  /**
+   * @param batchSize credit kept in flight, or {@code 0} to pass every request on as is
+   * @param replenishRatio share of the credit in flight consumed before it is topped up
+   */
+  public RequestNCoalescer(int batchSize, float replenishRatio) {
+    if (replenishRatio <= 0 || replenishRatio > 1) {
+      throw new IllegalArgumentException("replenishRatio must be in (0, 1]: " + replenishRatio);
+    }
+    this.batchSize = Math.max(0, batchSize);
+    this.replenishThreshold = this.batchSize - Math.round(this.batchSize * replenishRatio);
+  }
+
+  /**
+   * Records the subscriber requesting {@code n} more payloads.
+   *
+   * @return credit to grant the peer now, {@code 0} if none
+   */
+  public synchronized long request(long n) {
+    if (unbounded) {
+      return 0;
+    }
+    if (n == Long.MAX_VALUE || batchSize == 0) {
+      unbounded = n == Long.MAX_VALUE;
+      return n;
+    }
+
+    demand = Operators.addCap(demand, n);
+    return replenish();
+  }
+
+  /**
+   * Records a payload being delivered to the subscriber.
+   *
+   * @return credit to grant the peer now, {@code 0} if none
+   */
+  public synchronized long received() {
+    if (unbounded || batchSize == 0) {
+      return 0;
+    }
+
+    if (demand > 0) {
+      demand--;
+    }
+    if (credit > 0) {
+      credit--;
+    }
+    return replenish();
+  }
+
+  private long replenish() {
+    long n;
+    if (demand > credit) {
+      n = Math.max(demand, batchSize) - credit;
+    } else if (demand > 0 && credit <= replenishThreshold) {
+      n = batchSize - credit;
+    } else {
+      return 0;
+    }
+
+    credit += n;
+    return n;
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import io.netty.util.collection.IntObjectHashMap;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A thread-safe map from stream id to per-stream state.
+ *
+ * <p>Entries are spread over a power of two number of {@link IntObjectHashMap} stripes, each
+ * guarded by its own monitor, so that threads working on different streams rarely contend. Stream
+ * ids allocated by one side of a connection step by two, the stripe is therefore picked from the
+ * id without its lowest bit to keep consecutive streams on different stripes.
+ *
+ * <p>Every connection has several tables, so the default is a few small stripes rather than one
+ * per core: an idle connection should cost little, and the maps grow with the streams they hold.
+ * The default can be changed with the {@code io.rsocket.streamTable.stripes} system property.
+ */
+public final class StreamTable<V> {
+  private static final int DEFAULT_STRIPES =
+      stripesFor(Integer.getInteger("io.rsocket.streamTable.stripes", 4));
+
+  private static final int DEFAULT_STRIPE_CAPACITY = 4;
+
+  private final Stripe<V>[] stripes;
+  private final int mask;
+
+  public StreamTable() {
+    this(DEFAULT_STRIPES);
+  }
+
+  @SuppressWarnings("unchecked")
+  public StreamTable(int stripes) {
+    final int n = stripesFor(stripes);
+    this.stripes = new Stripe[n];
+    this.mask = n - 1;
+    for (int i = 0; i < n; i++) {
+      this.stripes[i] = new Stripe<>(DEFAULT_STRIPE_CAPACITY);
+    }
+  }
+
+  public @Nullable V get(int streamId) {
+    final Stripe<V> stripe = stripe(streamId);
+    synchronized (stripe) {
+      return stripe.get(streamId);
+    }
+  }
+
+  public @Nullable V put(int streamId, V value) {
+    final Stripe<V> stripe = stripe(streamId);
+    synchronized (stripe) {
+      return stripe.put(streamId, value);
+    }
+  }
+
+  public @Nullable V remove(int streamId) {
+    final Stripe<V> stripe = stripe(streamId);
+    synchronized (stripe) {
+      return stripe.remove(streamId);
+    }
+  }
+
+  public boolean containsKey(int streamId) {
+    final Stripe<V> stripe = stripe(streamId);
+    synchronized (stripe) {
+      return stripe.containsKey(streamId);
+    }
+  }
+
+  /**
+   * Returns the number of entries. Stripes are counted one after the other, so the result is only
+   * exact when the table is not concurrently modified.
+   *
+   * @return number of entries
+   */
+  public int size() {
+    int size = 0;
+    for (Stripe<V> stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns a snapshot of the values. Changes made to the table after the call are not reflected in
+   * the returned list.
+   *
+   * @return copy of the values
+   */
+  public List<V> values() {
+    final List<V> values = new ArrayList<>();
+    for (Stripe<V> stripe : stripes) {
+      synchronized (stripe) {
+        values.addAll(stripe.values());
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Removes all entries and returns them.
+   *
+   * @return the removed values
+   */
+  public List<V> clear() {
+    final List<V> values = new ArrayList<>();
+    for (Stripe<V> stripe : stripes) {
+      synchronized (stripe) {
+        values.addAll(stripe.values());
+        stripe.clear();
+      }
+    }
+    return values;
+  }
+
+  private Stripe<V> stripe(int streamId) {
+    return stripes[(streamId >>> 1) & mask];
+  }
+
+  private static int stripesFor(int stripes) {
+    if (stripes < 1) {
+      throw new IllegalArgumentException("stripes must be greater than 0");
+    }
+    final int n = Integer.highestOneBit(stripes);
+    return n == stripes ? n : n << 1;
+  }
+
+  private static final class Stripe<V> extends IntObjectHashMap<V> {
+    Stripe(int initialCapacity) {
+      super(initialCapacity);
+    }
+  }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import io.netty.util.ReferenceCountUtil;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import javax.annotation.Nullable;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.FluxProcessor;
+import reactor.core.publisher.Operators;
+
+/**
+ * A processor that accepts signals from any number of threads and emits them to a single
+ * subscriber. Values are buffered in an unbounded {@link MpscLinkedQueue} until the subscriber
+ * requests them, and are drained in batches by whichever thread finds the processor idle, usually
+ * the transport thread requesting more.
+ *
+ * <p>Unlike {@link reactor.core.publisher.EmitterProcessor} there is no subscriber array and no
+ * prefetch limit, so {@link #onNext(Object)} never blocks or drops while the subscriber is slow.
+ * Reference counted values still queued when the subscriber cancels are released.
+ */
+public final class UnboundedProcessor<T> extends FluxProcessor<T, T> implements Subscription {
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<UnboundedProcessor> ONCE =
+      AtomicIntegerFieldUpdater.newUpdater(UnboundedProcessor.class, "once");
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<UnboundedProcessor> WIP =
+      AtomicIntegerFieldUpdater.newUpdater(UnboundedProcessor.class, "wip");
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicLongFieldUpdater<UnboundedProcessor> REQUESTED =
+      AtomicLongFieldUpdater.newUpdater(UnboundedProcessor.class, "requested");
+
+  private final MpscLinkedQueue<T> queue;
+
+  private volatile boolean done;
+  private @Nullable Throwable error;
+
+  private volatile @Nullable CoreSubscriber<? super T> actual;
+
+  private volatile boolean cancelled;
+
+  private volatile int once;
+  private volatile int wip;
+  private volatile long requested;
+
+  public UnboundedProcessor() {
+    this.queue = new MpscLinkedQueue<>();
+  }
+
+  @Override
+  public void onSubscribe(Subscription s) {
+    if (done || cancelled) {
+      s.cancel();
+    } else {
+      s.request(Long.MAX_VALUE);
+    }
+  }
+
+  @Override
+  public void onNext(T t) {
+    if (done || cancelled) {
+      ReferenceCountUtil.safeRelease(t);
+      return;
+    }
+
+    queue.offer(t);
+    drain();
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    if (done || cancelled) {
+      Operators.onErrorDropped(t);
+      return;
+    }
+
+    error = t;
+    done = true;
+    drain();
+  }
+
+  @Override
+  public void onComplete() {
+    if (done || cancelled) {
+      return;
+    }
+
+    done = true;
+    drain();
+  }
+
+  @Override
+  public void subscribe(CoreSubscriber<? super T> actual) {
+    Objects.requireNonNull(actual, "subscribe");
+    if (once == 0 && ONCE.compareAndSet(this, 0, 1)) {
+      actual.onSubscribe(this);
+      this.actual = actual;
+      if (cancelled) {
+        this.actual = null;
+      } else {
+        drain();
+      }
+    } else {
+      Operators.error(
+          actual,
+          new IllegalStateException("UnboundedProcessor allows only a single Subscriber"));
+    }
+  }
+
+  @Override
+  public void request(long n) {
+    if (Operators.validate(n)) {
+      Operators.addCap(REQUESTED, this, n);
+      drain();
+    }
+  }
+
+  @Override
+  public void cancel() {
+    if (cancelled) {
+      return;
+    }
+    cancelled = true;
+    drain();
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return done;
+  }
+
+  @Override
+  public @Nullable Throwable getError() {
+    return error;
+  }
+
+  @Override
+  public boolean hasDownstreams() {
+    return actual != null;
+  }
+
+  private void drain() {
+    if (WIP.getAndIncrement(this) != 0) {
+      return;
+    }
+
+    int missed = 1;
+    for (; ; ) {
+      if (cancelled) {
+        // Elements offered concurrently with cancel() are released by the next drain
+        clear();
+        actual = null;
+      } else {
+        final CoreSubscriber<? super T> a = actual;
+        if (a != null) {
+          drainRegular(a);
+          return;
+        }
+      }
+
+      missed = WIP.addAndGet(this, -missed);
+      if (missed == 0) {
+        break;
+      }
+    }
+  }
+
+  private void drainRegular(CoreSubscriber<? super T> a) {
+    int missed = 1;
+
+    for (; ; ) {
+      if (cancelled) {
+        clear();
+        actual = null;
+      } else {
+        final long r = requested;
+        long e = 0L;
+
+        while (r != e && !cancelled) {
+          final boolean d = done;
+          final T t = queue.poll();
+          final boolean empty = t == null;
+
+          if (checkTerminated(d, empty, a)) {
+            return;
+          }
+
+          if (empty) {
+            break;
+          }
+
+          a.onNext(t);
+          e++;
+        }
+
+        if (r == e && checkTerminated(done, queue.isEmpty(), a)) {
+          return;
+        }
+
+        if (e != 0 && r != Long.MAX_VALUE) {
+          REQUESTED.addAndGet(this, -e);
+        }
+      }
+
+      missed = WIP.addAndGet(this, -missed);
+      if (missed == 0) {
+        break;
+      }
+    }
+  }
+
+  private boolean checkTerminated(boolean d, boolean empty, CoreSubscriber<? super T> a) {
+    if (cancelled) {
+      // Left to the drain loop, which clears and still releases the work-in-progress count
+      return false;
+    }
+
+    if (d && empty) {
+      actual = null;
+      final Throwable e = error;
+      if (e != null) {
+        a.onError(e);
+      } else {
+        a.onComplete();
+      }
+      return true;
+    }
+
+    return false;
+  }
+
+  private void clear() {
+    T t;
+    while ((t = queue.poll()) != null) {
+      ReferenceCountUtil.safeRelease(t);
+    }
+  }
+}
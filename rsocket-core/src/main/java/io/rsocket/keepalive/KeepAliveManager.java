@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.keepalive;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+
+/**
+ * Drives keep-alive ticks of any number of connections from a single {@link Timer}.
+ *
+ * <p>Connections registered with the same tick period share one bucket, a bucket holds a single
+ * pending timeout and ticks all its connections in one go when it fires, reading the clock once
+ * for the whole batch. Scheduler cost therefore depends on the number of distinct tick periods
+ * rather than on the number of connections, and each connection only costs one entry in a set.
+ */
+public final class KeepAliveManager {
+  private static final Logger LOGGER = LoggerFactory.getLogger(KeepAliveManager.class);
+
+  private static final long TICK_DURATION_MILLIS =
+      Long.getLong("io.rsocket.keepalive.tickDurationMillis", 100);
+
+  private static final class SharedHolder {
+    static final KeepAliveManager INSTANCE =
+        new KeepAliveManager(
+            new HashedWheelTimer(
+                new DefaultThreadFactory("rsocket-keepalive", true),
+                TICK_DURATION_MILLIS,
+                TimeUnit.MILLISECONDS));
+  }
+
+  private final Timer timer;
+  private final ConcurrentMap<Long, Bucket> buckets;
+
+  public KeepAliveManager(Timer timer) {
+    this.timer = timer;
+    this.buckets = new ConcurrentHashMap<>();
+  }
+
+  /** @return the manager used by all connections unless configured otherwise */
+  public static KeepAliveManager shared() {
+    return SharedHolder.INSTANCE;
+  }
+
+  /**
+   * Calls {@code onTick} every {@code tickPeriod} until the returned {@link Disposable} is
+   * disposed. The callback runs on the timer thread and must not block, it receives the time in
+   * milliseconds at which the current batch started.
+   *
+   * @param tickPeriod time between two ticks
+   * @param onTick callback for each tick
+   * @return handle cancelling further ticks
+   */
+  public Disposable start(Duration tickPeriod, LongConsumer onTick) {
+    long periodMillis = Math.max(1, tickPeriod.toMillis());
+    Bucket bucket = buckets.computeIfAbsent(periodMillis, Bucket::new);
+    Registration registration = new Registration(bucket, onTick);
+    bucket.add(registration);
+    return registration;
+  }
+
+  private final class Bucket implements TimerTask {
+    private final long periodMillis;
+    private final Set<Registration> registrations;
+    private boolean scheduled;
+
+    Bucket(long periodMillis) {
+      this.periodMillis = periodMillis;
+      this.registrations = ConcurrentHashMap.newKeySet();
+    }
+
+    void add(Registration registration) {
+      registrations.add(registration);
+      synchronized (this) {
+        if (!scheduled) {
+          scheduled = true;
+          timer.newTimeout(this, periodMillis, TimeUnit.MILLISECONDS);
+        }
+      }
+    }
+
+    void remove(Registration registration) {
+      registrations.remove(registration);
+    }
+
+    @Override
+    public void run(Timeout timeout) {
+      long now = System.currentTimeMillis();
+      for (Registration registration : registrations) {
+        try {
+          registration.onTick.accept(now);
+        } catch (Throwable t) {
+          LOGGER.error("Keep-alive tick failed", t);
+        }
+      }
+
+      synchronized (this) {
+        if (registrations.isEmpty()) {
+          scheduled = false;
+        } else {
+          timer.newTimeout(this, periodMillis, TimeUnit.MILLISECONDS);
+        }
+      }
+    }
+  }
+
+  private static final class Registration implements Disposable {
+    private final Bucket bucket;
+    private final LongConsumer onTick;
+    private volatile boolean disposed;
+
+    Registration(Bucket bucket, LongConsumer onTick) {
+      this.bucket = bucket;
+      this.onTick = onTick;
+    }
+
+    @Override
+    public void dispose() {
+      if (!disposed) {
+        disposed = true;
+        bucket.remove(this);
+      }
+    }
+
+    @Override
+    public boolean isDisposed() {
+      return disposed;
+    }
+  }
+}
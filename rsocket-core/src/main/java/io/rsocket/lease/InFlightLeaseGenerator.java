@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.lease;
+
+import java.time.Duration;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+
+final class InFlightLeaseGenerator implements LeaseGenerator {
+  private final int maxInFlightRequests;
+  private final Duration ttl;
+
+  InFlightLeaseGenerator(int maxInFlightRequests, Duration ttl) {
+    if (maxInFlightRequests <= 0) {
+      throw new IllegalArgumentException("maxInFlightRequests must be positive");
+    }
+    if (ttl.toMillis() < 2) {
+      throw new IllegalArgumentException("ttl must be at least 2 ms");
+    }
+    this.maxInFlightRequests = maxInFlightRequests;
+    this.ttl = ttl;
+  }
+
+  @Override
+  public Publisher<Lease> leases(LeaseStats stats) {
+    // Refreshing before the previous lease expires avoids a window without any valid lease
+    int ttlMillis = (int) Math.min(Integer.MAX_VALUE, ttl.toMillis());
+    return Flux.interval(Duration.ZERO, Duration.ofMillis(ttlMillis / 2))
+        .onBackpressureDrop()
+        .map(
+            tick -> {
+              int allowed = Math.max(0, maxInFlightRequests - stats.inFlightRequests());
+              return new LeaseImpl(allowed, ttlMillis);
+            });
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.lease;
+
+import java.time.Duration;
+import org.reactivestreams.Publisher;
+
+/**
+ * Decides which leases a responder grants to a requester that agreed to honor them. Every lease
+ * emitted is sent in a {@code LEASE} frame on stream 0 and replaces the previous one on the
+ * requester.
+ */
+@FunctionalInterface
+public interface LeaseGenerator {
+
+  /**
+   * Leases to grant over the lifetime of a connection, subscribed to once the connection is set
+   * up and cancelled when it closes.
+   *
+   * @param stats load of the responder serving the connection.
+   * @return Leases to send to the requester.
+   */
+  Publisher<Lease> leases(LeaseStats stats);
+
+  /**
+   * Grants, every half {@code ttl}, as many requests as are missing for the responder to have
+   * {@code maxInFlightRequests} requests in flight. A saturated responder therefore grants an
+   * empty lease, which stops the requester from sending more requests until load drops.
+   *
+   * @param maxInFlightRequests number of requests the responder is willing to work on at once.
+   * @param ttl validity of each lease.
+   * @return A generator sizing leases after the number of requests in flight.
+   */
+  static LeaseGenerator inFlightRequests(int maxInFlightRequests, Duration ttl) {
+    return new InFlightLeaseGenerator(maxInFlightRequests, ttl);
+  }
+}
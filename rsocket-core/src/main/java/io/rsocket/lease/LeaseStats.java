@@ -0,0 +1,28 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.lease;
+
+/** Load figures of a responder that a {@link LeaseGenerator} sizes leases after. */
+public interface LeaseStats {
+
+  /**
+   * Number of requests accepted by the responder that have not terminated yet.
+   *
+   * @return The number of requests currently in flight.
+   */
+  int inFlightRequests();
+}
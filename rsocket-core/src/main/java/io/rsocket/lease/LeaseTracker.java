@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.lease;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import javax.annotation.Nullable;
+
+/**
+ * Requester side view of the lease granted by a responder. Each request takes one permit of the
+ * current lease, requests made without a valid lease or once its permits are used up must not be
+ * sent.
+ */
+public final class LeaseTracker {
+  private volatile @Nullable Permits permits;
+
+  /**
+   * Replaces the current lease, permits left over from the previous lease are dropped.
+   *
+   * @param lease lease received from the responder.
+   */
+  public void update(Lease lease) {
+    permits = new Permits(lease);
+  }
+
+  /** @return The current lease, or {@code null} if none was received yet. */
+  public @Nullable Lease current() {
+    Permits p = permits;
+    return p == null ? null : p.lease;
+  }
+
+  /**
+   * Takes one permit of the current lease.
+   *
+   * @return {@code true} if a request may be sent, {@code false} if there is no valid lease or it
+   *     has no permits left.
+   */
+  public boolean tryAcquire() {
+    Permits p = permits;
+    return p != null && !p.lease.isExpired() && p.tryAcquire();
+  }
+
+  /**
+   * Fraction of the current lease that is still available, {@code 0.0} once it has expired.
+   *
+   * @return A value between {@code 0.0} and {@code 1.0}.
+   */
+  public double availability() {
+    Permits p = permits;
+    if (p == null || p.lease.isExpired()) {
+      return 0.0;
+    }
+    int allowed = p.lease.getAllowedRequests();
+    return allowed <= 0 ? 0.0 : (double) p.remaining / allowed;
+  }
+
+  private static final class Permits {
+    private static final AtomicIntegerFieldUpdater<Permits> REMAINING =
+        AtomicIntegerFieldUpdater.newUpdater(Permits.class, "remaining");
+
+    private final Lease lease;
+    private volatile int remaining;
+
+    Permits(Lease lease) {
+      this.lease = lease;
+      this.remaining = lease.getAllowedRequests();
+    }
+
+    boolean tryAcquire() {
+      for (; ; ) {
+        int r = remaining;
+        if (r <= 0) {
+          return false;
+        }
+        if (REMAINING.compareAndSet(this, r, r - 1)) {
+          return true;
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    Permits p = permits;
+    return "LeaseTracker{"
+        + "lease="
+        + (p == null ? null : p.lease)
+        + ", remaining="
+        + (p == null ? 0 : p.remaining)
+        + '}';
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.resume;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.Frame;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the oldest frames of a {@link ResumeCache} in a memory-mapped file once its in-memory
+ * budget is used up.
+ *
+ * <p>Frames are appended to a ring within the mapped region, each one prefixed by the position it
+ * starts at and its length, and never wrap around the end of the region. Frames resent from the
+ * spill are slices of the mapped region rather than copies. Their bytes are only overwritten once
+ * the remote peer has acknowledged them, so a spilled frame which can no longer be resent keeps
+ * its space until then.
+ *
+ * <p>The backing file is created and mapped when the first frame is spilled and deleted right
+ * away, the mapping itself is released once it is garbage collected. If the file cannot be mapped
+ * nothing is spilled and frames over budget are evicted. Like {@link ResumeCache} this class is not
+ * thread safe.
+ */
+public final class MappedResumeSpill {
+  private static final Logger LOGGER = LoggerFactory.getLogger(MappedResumeSpill.class);
+
+  private static final int HEADER_LENGTH = Long.BYTES + Integer.BYTES;
+  private static final int PADDING = -1;
+
+  private final Path directory;
+  private final int capacity;
+  private @Nullable MappedByteBuffer region;
+  private boolean failed;
+
+  private long head;
+  private long tail;
+  private int count;
+
+  /**
+   * @param directory directory to create the spill file in
+   * @param capacity size of the spill file in bytes
+   */
+  public MappedResumeSpill(Path directory, int capacity) {
+    this.directory = directory;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Copies a frame to the end of the spill.
+   *
+   * @param position position the frame starts at
+   * @param frame frame to copy, it is not released
+   * @return {@code false} if there is no room left for the frame
+   */
+  public boolean append(long position, Frame frame) {
+    MappedByteBuffer region = region();
+    if (region == null) {
+      return false;
+    }
+
+    ByteBuf content = frame.content();
+    int length = content.readableBytes();
+    int recordLength = HEADER_LENGTH + length;
+    int offset = offset(tail);
+    int padding = capacity - offset < recordLength ? capacity - offset : 0;
+    if (padding + recordLength > capacity - (tail - head)) {
+      return false;
+    }
+
+    if (padding > 0) {
+      if (padding >= HEADER_LENGTH) {
+        region.putInt(offset + Long.BYTES, PADDING);
+      }
+      tail += padding;
+      offset = 0;
+    }
+
+    ByteBuffer record = region.duplicate();
+    record.position(offset);
+    record.putLong(position);
+    record.putInt(length);
+    record.limit(offset + recordLength);
+    content.getBytes(content.readerIndex(), record);
+
+    tail += recordLength;
+    count++;
+    return true;
+  }
+
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  /** @return position the oldest spilled frame starts at */
+  public long firstPosition() {
+    if (count == 0) {
+      throw new NoSuchElementException();
+    }
+    skipPadding();
+    return region.getLong(offset(head));
+  }
+
+  /** Drops the oldest spilled frame, making its space available again. */
+  public void removeFirst() {
+    if (count == 0) {
+      throw new NoSuchElementException();
+    }
+    skipPadding();
+    head += HEADER_LENGTH + region.getInt(offset(head) + Long.BYTES);
+    count--;
+    if (count == 0) {
+      head = 0;
+      tail = 0;
+    }
+  }
+
+  /**
+   * Iterates over the spilled frames starting at or after a position, oldest first. Frames are
+   * slices of the mapped region owned by the caller, which has to release them, and the iterator is
+   * only valid until the spill is modified again.
+   *
+   * @param fromPosition position of the first frame to return
+   * @return spilled frames
+   */
+  public Iterator<Frame> iterator(long fromPosition) {
+    return new SpillIterator(fromPosition);
+  }
+
+  /** @return number of bytes in use, including record headers and padding */
+  public long size() {
+    return tail - head;
+  }
+
+  public void clear() {
+    head = 0;
+    tail = 0;
+    count = 0;
+  }
+
+  private @Nullable MappedByteBuffer region() {
+    if (region == null && !failed) {
+      try {
+        Path file = Files.createTempFile(directory, "rsocket-resume-", ".spill");
+        try (FileChannel channel =
+            FileChannel.open(
+                file,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE)) {
+          region = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+      } catch (IOException e) {
+        LOGGER.warn("Unable to map resume spill file in " + directory, e);
+        failed = true;
+      }
+    }
+    return region;
+  }
+
+  private int offset(long index) {
+    return (int) (index % capacity);
+  }
+
+  private void skipPadding() {
+    head = skipPadding(head);
+  }
+
+  private long skipPadding(long index) {
+    int offset = offset(index);
+    int remaining = capacity - offset;
+    if (remaining < HEADER_LENGTH || region.getInt(offset + Long.BYTES) == PADDING) {
+      return index + remaining;
+    }
+    return index;
+  }
+
+  private final class SpillIterator implements Iterator<Frame> {
+    private final long fromPosition;
+    private long index;
+    private int remaining;
+
+    SpillIterator(long fromPosition) {
+      this.fromPosition = fromPosition;
+      this.index = head;
+      this.remaining = count;
+      skipBefore();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return remaining > 0;
+    }
+
+    @Override
+    public Frame next() {
+      if (remaining == 0) {
+        throw new NoSuchElementException();
+      }
+      int offset = offset(index);
+      int length = region.getInt(offset + Long.BYTES);
+      ByteBuffer content = region.duplicate();
+      content.position(offset + HEADER_LENGTH);
+      content.limit(offset + HEADER_LENGTH + length);
+
+      advance();
+      return Frame.from(Unpooled.wrappedBuffer(content.slice()));
+    }
+
+    private void skipBefore() {
+      while (remaining > 0) {
+        index = skipPadding(index);
+        if (region.getLong(offset(index)) >= fromPosition) {
+          return;
+        }
+        advance();
+      }
+    }
+
+    private void advance() {
+      index += HEADER_LENGTH + region.getInt(offset(index) + Long.BYTES);
+      remaining--;
+      if (remaining > 0) {
+        index = skipPadding(index);
+      }
+    }
+  }
+}
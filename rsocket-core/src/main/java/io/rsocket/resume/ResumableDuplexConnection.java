@@ -0,0 +1,468 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.resume;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.rsocket.DuplexConnection;
+import io.rsocket.Frame;
+import io.rsocket.FrameType;
+import io.rsocket.exceptions.Exceptions;
+import io.rsocket.exceptions.RejectedResumeException;
+import io.rsocket.internal.UnboundedProcessor;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.UnicastProcessor;
+
+/**
+ * A {@link DuplexConnection} for a resumable session, which outlives the transport connections it
+ * runs over.
+ *
+ * <p>Stream frames sent are kept in a {@link ResumeCache} until the peer acknowledges them with
+ * the position carried by its {@code KEEPALIVE} frames. When the transport connection is lost the
+ * client reconnects and sends {@code RESUME} with the position it received up to, the server
+ * answers {@code RESUME_OK} with its own position and both sides resend what the other one is
+ * missing. Streams running on top of the session do not notice the reconnect, the session is only
+ * closed if it cannot be resumed within the session duration.
+ */
+public class ResumableDuplexConnection implements DuplexConnection {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResumableDuplexConnection.class);
+
+  /** Default budget in bytes for the frames kept until the peer acknowledges them. */
+  public static final int DEFAULT_CACHE_SIZE =
+      Integer.getInteger("io.rsocket.resume.cacheSize", 16 * 1024 * 1024);
+
+  private static final Duration RECONNECT_DELAY = Duration.ofSeconds(1);
+
+  /**
+   * Reported while the session waits for a new transport connection, frames sent in the meantime
+   * are cached and resent once it is resumed.
+   */
+  private static final double RESUMING_AVAILABILITY = 0.1;
+
+  private final @Nullable ResumeToken resumeToken;
+  private final @Nullable Supplier<Mono<DuplexConnection>> reconnect;
+  private final Duration sessionDuration;
+  private final ByteBufAllocator allocator;
+  private final ResumeCache cache;
+  private final UnboundedProcessor<Frame> outbound;
+  private final UnicastProcessor<Frame> inbound;
+  private final MonoProcessor<Void> onClose;
+
+  private volatile long impliedPosition;
+  private volatile @Nullable DuplexConnection transport;
+  // guarded by this
+  private @Nullable UnboundedProcessor<Frame> transportFrames;
+  private @Nullable Disposable expiry;
+  private long reconnectDeadline;
+  private boolean resumable;
+  private volatile boolean closed;
+
+  /**
+   * Creates the client side of a resumable session.
+   *
+   * @param transport initial transport connection
+   * @param resumeToken token sent in the setup frame
+   * @param reconnect opens a new transport connection to the same server
+   * @param sessionDuration time after which a lost session is given up
+   * @param cache keeps the frames sent until the server acknowledges them
+   */
+  public ResumableDuplexConnection(
+      DuplexConnection transport,
+      ResumeToken resumeToken,
+      Supplier<Mono<DuplexConnection>> reconnect,
+      Duration sessionDuration,
+      ResumeCache cache) {
+    this(sessionDuration, cache, transport, resumeToken, reconnect);
+    transport
+        .receive()
+        .subscribe(
+            frame -> receiveFrame(transport, frame),
+            t -> transport.close().subscribe(),
+            () -> transport.close().subscribe());
+  }
+
+  /** Server side of a session, frames received from the transport are passed in by the store. */
+  ResumableDuplexConnection(
+      DuplexConnection transport, Duration sessionDuration, ResumeCache cache) {
+    this(sessionDuration, cache, transport, null, null);
+  }
+
+  private ResumableDuplexConnection(
+      Duration sessionDuration,
+      ResumeCache cache,
+      DuplexConnection transport,
+      @Nullable ResumeToken resumeToken,
+      @Nullable Supplier<Mono<DuplexConnection>> reconnect) {
+    this.resumeToken = resumeToken;
+    this.reconnect = reconnect;
+    this.sessionDuration = sessionDuration;
+    this.allocator = transport.alloc();
+    this.cache = cache;
+    this.outbound = new UnboundedProcessor<>();
+    this.inbound = UnicastProcessor.create();
+    this.onClose = MonoProcessor.create();
+    this.resumable = resumeToken != null;
+
+    // Frames of all senders are serialized so that they are cached in the order they are written
+    outbound.subscribe(this::sendFrame);
+    attach(transport, 0, null);
+  }
+
+  @Override
+  public Mono<Void> send(Publisher<Frame> frames) {
+    return Flux.from(frames).takeUntilOther(onClose).doOnNext(outbound::onNext).then();
+  }
+
+  @Override
+  public Flux<Frame> receive() {
+    return inbound;
+  }
+
+  @Override
+  public ByteBufAllocator alloc() {
+    return allocator;
+  }
+
+  @Override
+  public double availability() {
+    if (closed) {
+      return 0.0;
+    }
+    DuplexConnection current = transport;
+    double availability = current == null ? 0.0 : current.availability();
+    return availability > 0.0 ? availability : RESUMING_AVAILABILITY;
+  }
+
+  @Override
+  public Mono<Void> close() {
+    return Mono.defer(
+        () -> {
+          terminate(null);
+          return onClose;
+        });
+  }
+
+  @Override
+  public Mono<Void> onClose() {
+    return onClose;
+  }
+
+  /** Keeps the session alive when the transport connection is lost, see {@link ResumeStore}. */
+  synchronized void enableResumption() {
+    resumable = true;
+  }
+
+  /**
+   * Takes over {@code transport} for a client that sent {@code RESUME}, answering {@code
+   * RESUME_OK} if the session can be continued from the positions of the client.
+   *
+   * @return {@code false} if the session cannot be resumed
+   */
+  boolean resume(DuplexConnection transport, Frame resumeFrame) {
+    long lastReceivedServerPosition = Frame.Resume.lastReceivedServerPosition(resumeFrame);
+    long firstAvailableClientPosition = Frame.Resume.firstAvailableClientPosition(resumeFrame);
+    long position = impliedPosition;
+    if (firstAvailableClientPosition > position) {
+      return false;
+    }
+
+    Frame resumeOk = Frame.ResumeOk.from(allocator, position);
+    if (attach(transport, lastReceivedServerPosition, resumeOk)) {
+      return true;
+    }
+    resumeOk.release();
+    return false;
+  }
+
+  void receiveFrame(DuplexConnection from, Frame frame) {
+    if (from != transport) {
+      // Late frame of a replaced transport connection, it is resent by the peer if needed
+      frame.release();
+      return;
+    }
+
+    if (frame.getType() == FrameType.KEEPALIVE) {
+      acknowledge(Frame.Keepalive.lastPosition(frame));
+    } else if (ResumeUtil.isTracked(frame)) {
+      impliedPosition += ResumeUtil.offset(frame);
+    }
+    inbound.onNext(frame);
+  }
+
+  private void sendFrame(Frame frame) {
+    UnboundedProcessor<Frame> target;
+    synchronized (this) {
+      if (frame.getType() == FrameType.KEEPALIVE) {
+        // Tells the peer which frames it can drop from its cache
+        Frame keepAlive =
+            Frame.Keepalive.from(
+                allocator,
+                frame.sliceData(),
+                Frame.Keepalive.hasRespondFlag(frame),
+                impliedPosition);
+        frame.release();
+        frame = keepAlive;
+      } else if (resumable && ResumeUtil.isTracked(frame)) {
+        // Sessions without a resume token are never resumed, nor is anything acknowledged
+        cache.sent(frame);
+      }
+      target = transportFrames;
+    }
+
+    if (target != null) {
+      target.onNext(frame);
+    } else {
+      frame.release();
+    }
+  }
+
+  private synchronized void acknowledge(long remotePosition) {
+    if (remotePosition > cache.getRemotePosition()
+        && remotePosition <= cache.getCurrentPosition()) {
+      cache.updateRemotePosition(remotePosition);
+    }
+  }
+
+  private synchronized boolean canResendFrom(long remotePosition) {
+    return remotePosition >= cache.getEarliestResendPosition()
+        && remotePosition <= cache.getCurrentPosition();
+  }
+
+  private boolean attach(
+      DuplexConnection transport, long remotePosition, @Nullable Frame firstFrame) {
+    UnboundedProcessor<Frame> frames = new UnboundedProcessor<>();
+    DuplexConnection previous;
+    UnboundedProcessor<Frame> previousFrames;
+    synchronized (this) {
+      if (closed || !canResendFrom(remotePosition)) {
+        return false;
+      }
+      if (expiry != null) {
+        expiry.dispose();
+        expiry = null;
+      }
+
+      if (firstFrame != null) {
+        frames.onNext(firstFrame);
+      }
+      Iterator<Frame> resend = cache.resendIterator(remotePosition);
+      while (resend.hasNext()) {
+        frames.onNext(resend.next());
+      }
+
+      previous = this.transport;
+      previousFrames = transportFrames;
+      this.transport = transport;
+      this.transportFrames = frames;
+    }
+
+    if (previous != null) {
+      // The peer resumed on a new connection before the old one was noticed to be gone
+      previousFrames.cancel();
+      previous.close().subscribe();
+    }
+
+    transport.send(frames).subscribe(null, t -> transport.close().subscribe());
+    transport.onClose().doFinally(s -> detach(transport)).subscribe();
+    return true;
+  }
+
+  private void detach(DuplexConnection from) {
+    boolean reconnecting = false;
+    boolean closing = false;
+    synchronized (this) {
+      if (from != transport) {
+        return;
+      }
+      transport = null;
+      if (transportFrames != null) {
+        transportFrames.cancel();
+        transportFrames = null;
+      }
+
+      if (closed) {
+        return;
+      } else if (!resumable) {
+        closing = true;
+      } else if (reconnect != null) {
+        reconnecting = true;
+        reconnectDeadline = System.nanoTime() + sessionDuration.toNanos();
+      } else {
+        expiry = Mono.delay(sessionDuration).subscribe(t -> expire());
+      }
+    }
+
+    if (closing) {
+      terminate(null);
+    } else if (reconnecting) {
+      LOGGER.debug("Transport connection lost, resuming session");
+      reconnect();
+    }
+  }
+
+  private void expire() {
+    synchronized (this) {
+      if (transport != null || closed) {
+        return;
+      }
+    }
+    LOGGER.debug("Session not resumed within {}, closing it", sessionDuration);
+    terminate(null);
+  }
+
+  private void reconnect() {
+    long remaining;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      remaining = reconnectDeadline - System.nanoTime();
+    }
+    if (remaining <= 0 || reconnect == null) {
+      terminate(new RejectedResumeException("Session could not be resumed in time"));
+      return;
+    }
+
+    reconnect
+        .get()
+        .retryWhen(errors -> errors.delayElements(RECONNECT_DELAY))
+        .timeout(Duration.ofNanos(remaining))
+        .subscribe(this::sendResume, this::terminate);
+  }
+
+  private void sendResume(DuplexConnection transport) {
+    Frame resumeFrame;
+    synchronized (this) {
+      if (closed || resumeToken == null) {
+        transport.close().subscribe();
+        return;
+      }
+      resumeFrame =
+          Frame.Resume.from(
+              allocator,
+              Unpooled.wrappedBuffer(resumeToken.toByteArray()),
+              impliedPosition,
+              cache.getEarliestResendPosition());
+    }
+
+    ClientHandshake handshake = new ClientHandshake(transport);
+    transport.receive().subscribe(handshake::onNext, handshake::onError, handshake::onComplete);
+    transport.sendOne(resumeFrame).subscribe(null, handshake::onError);
+  }
+
+  private void terminate(@Nullable Throwable error) {
+    DuplexConnection current;
+    UnboundedProcessor<Frame> frames;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      current = transport;
+      frames = transportFrames;
+      transport = null;
+      transportFrames = null;
+      if (expiry != null) {
+        expiry.dispose();
+        expiry = null;
+      }
+      cache.clear();
+    }
+
+    if (frames != null) {
+      frames.onComplete();
+    }
+    if (current != null) {
+      current.close().subscribe();
+    }
+    outbound.onComplete();
+    if (error != null) {
+      inbound.onError(error);
+    } else {
+      inbound.onComplete();
+    }
+    onClose.onComplete();
+  }
+
+  /** Receives the frames of a new transport connection of the client until it is resumed. */
+  private final class ClientHandshake {
+    private final DuplexConnection transport;
+    private boolean resumed;
+    private boolean failed;
+
+    ClientHandshake(DuplexConnection transport) {
+      this.transport = transport;
+    }
+
+    void onNext(Frame frame) {
+      if (resumed) {
+        receiveFrame(transport, frame);
+        return;
+      }
+
+      try {
+        switch (frame.getType()) {
+          case RESUME_OK:
+            long position = Frame.ResumeOk.lastReceivedClientPosition(frame);
+            if (attach(transport, position, null)) {
+              resumed = true;
+            } else {
+              fail(new RejectedResumeException("Server is missing frames no longer cached"));
+            }
+            break;
+          case ERROR:
+            fail(Exceptions.from(frame));
+            break;
+          default:
+            // Anything else can only belong to a session that has not been resumed yet
+            break;
+        }
+      } finally {
+        frame.release();
+      }
+    }
+
+    void onError(Throwable t) {
+      onComplete();
+    }
+
+    void onComplete() {
+      transport.close().subscribe();
+      if (!resumed && !failed) {
+        // Lost before resuming, try again on yet another connection
+        failed = true;
+        reconnect();
+      }
+    }
+
+    private void fail(Throwable t) {
+      failed = true;
+      transport.close().subscribe();
+      terminate(t);
+    }
+  }
+}
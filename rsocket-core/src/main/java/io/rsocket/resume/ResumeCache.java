@@ -1,28 +1,62 @@
 package io.rsocket.resume;
 
 import io.rsocket.Frame;
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
 import reactor.core.publisher.Flux;
 
+/**
+ * Frames sent on a resumable connection which the remote peer has not acknowledged yet.
+ *
+ * <p>Frames are kept in a ring in the order they were sent, each one together with the position
+ * it starts at. The ring holds retained duplicates of the sent frames rather than copies, so
+ * caching a frame does not touch its bytes. Acknowledged frames are trimmed from the head of the
+ * ring, and once the total cost of the cached frames exceeds the budget the oldest ones are evicted
+ * and can no longer be resent. Both only look at the head of the ring.
+ *
+ * <p>With a {@link MappedResumeSpill} frames over budget are moved to the spill instead, and only
+ * evicted once the spill is full as well. Resends then start with the spilled frames.
+ */
 public class ResumeCache {
+  private static final int INITIAL_CAPACITY = 16;
+
   private final ResumePositionCounter strategy;
   private final int maxBufferSize;
-
-  private final LinkedHashMap<Integer, Frame> frames = new LinkedHashMap<>();
-  private int lastRemotePosition = 0;
-  private int currentPosition = 0;
+  private final @Nullable MappedResumeSpill spill;
+
+  private Frame[] frames = new Frame[INITIAL_CAPACITY];
+  private long[] positions = new long[INITIAL_CAPACITY];
+  private int head;
+  private int count;
+  private long lastRemotePosition = 0;
+  private long currentPosition = 0;
+  // Frames before this position have been evicted, spilled ones may still take up space
+  private long evictedPosition = 0;
   private int bufferSize;
 
+  /**
+   * @param strategy cost of a cached frame
+   * @param maxBufferSize budget for the total cost of the cached frames, in bytes when using
+   *     {@link ResumePositionCounter#size()}
+   */
   public ResumeCache(ResumePositionCounter strategy, int maxBufferSize) {
+    this(strategy, maxBufferSize, null);
+  }
+
+  /**
+   * @param strategy cost of a cached frame
+   * @param maxBufferSize budget for the total cost of the frames cached in memory
+   * @param spill where frames over budget are moved to, or {@code null} to evict them
+   */
+  public ResumeCache(
+      ResumePositionCounter strategy, int maxBufferSize, @Nullable MappedResumeSpill spill) {
     this.strategy = strategy;
     this.maxBufferSize = maxBufferSize;
+    this.spill = spill;
   }
 
-  public void updateRemotePosition(int remotePosition) {
+  public void updateRemotePosition(long remotePosition) {
     if (remotePosition > currentPosition) {
       throw new IllegalStateException(
           "Remote ahead of " + lastRemotePosition + " , expected " + remotePosition);
@@ -39,76 +73,140 @@ public void updateRemotePosition(int remotePosition) {
 
     lastRemotePosition = remotePosition;
 
-    Iterator<Map.Entry<Integer, Frame>> positions = frames.entrySet().iterator();
-
-    while (positions.hasNext()) {
-      Map.Entry<Integer, Frame> cachePosition = positions.next();
-
-      if (cachePosition.getKey() <= remotePosition) {
-        positions.remove();
-        bufferSize -= strategy.cost(cachePosition.getValue());
-        cachePosition.getValue().release();
+    // A frame is acknowledged once the remote position is past the position it starts at
+    if (spill != null) {
+      while (!spill.isEmpty() && spill.firstPosition() < remotePosition) {
+        spill.removeFirst();
       }
-
-      // TODO check for a bad position
+    }
+    while (count > 0 && positions[head] < remotePosition) {
+      removeFirst();
     }
   }
 
   public void sent(Frame frame) {
     if (ResumeUtil.isTracked(frame)) {
-      frames.put(currentPosition, frame.copy());
+      addLast(currentPosition, frame.retainedDuplicate());
       bufferSize += strategy.cost(frame);
 
       currentPosition += ResumeUtil.offset(frame);
 
-      if (frames.size() > maxBufferSize) {
-        Frame f = frames.remove(first(frames));
-        bufferSize -= strategy.cost(f);
+      while (bufferSize > maxBufferSize && count > 0) {
+        if (spill == null || !spill.append(positions[head], frames[head])) {
+          evictedPosition = positions[head] + ResumeUtil.offset(frames[head]);
+        }
+        removeFirst();
       }
     }
   }
 
-  private int first(LinkedHashMap<Integer, Frame> frames) {
-    return frames.keySet().iterator().next();
-  }
-
-  public Flux<Frame> resend(int remotePosition) {
+  /**
+   * Acknowledges {@code remotePosition} and returns the frames sent after it, oldest first. Every
+   * frame returned is owned by the caller, which has to release it, and the iterator is only valid
+   * until the cache is modified again.
+   *
+   * @param remotePosition position the remote peer received up to
+   * @return cached frames to send again
+   */
+  public Iterator<Frame> resendIterator(long remotePosition) {
     updateRemotePosition(remotePosition);
+    return new ResendIterator();
+  }
 
-    if (remotePosition == currentPosition) {
-      return Flux.empty();
-    }
-
-    List<Frame> resend = new ArrayList<>();
-
-    for (Map.Entry<Integer, Frame> cachePosition : frames.entrySet()) {
-      if (remotePosition < cachePosition.getKey()) {
-        resend.add(cachePosition.getValue());
-      }
-
-      // TODO error handling
-    }
-
-    return Flux.fromIterable(resend);
+  public Flux<Frame> resend(long remotePosition) {
+    Iterator<Frame> resend = resendIterator(remotePosition);
+    return Flux.fromIterable(() -> resend);
   }
 
-  public int getCurrentPosition() {
+  public long getCurrentPosition() {
     return currentPosition;
   }
 
-  public int getRemotePosition() {
+  public long getRemotePosition() {
     return lastRemotePosition;
   }
 
-  public int getEarliestResendPosition() {
-    if (frames.isEmpty()) {
-      return currentPosition;
+  public long getEarliestResendPosition() {
+    long earliest;
+    if (spill != null && !spill.isEmpty()) {
+      earliest = spill.firstPosition();
     } else {
-      return first(frames);
+      earliest = count == 0 ? currentPosition : positions[head];
     }
+    return Math.max(earliest, evictedPosition);
   }
 
   public int size() {
     return bufferSize;
   }
+
+  /** Releases all cached frames, positions are left untouched. */
+  public void clear() {
+    while (count > 0) {
+      removeFirst();
+    }
+    if (spill != null) {
+      spill.clear();
+    }
+    evictedPosition = currentPosition;
+  }
+
+  private void addLast(long position, Frame frame) {
+    if (count == frames.length) {
+      grow();
+    }
+    int index = (head + count) & (frames.length - 1);
+    frames[index] = frame;
+    positions[index] = position;
+    count++;
+  }
+
+  private void removeFirst() {
+    Frame frame = frames[head];
+    frames[head] = null;
+    head = (head + 1) & (frames.length - 1);
+    count--;
+
+    bufferSize -= strategy.cost(frame);
+    frame.release();
+  }
+
+  private void grow() {
+    int capacity = frames.length;
+    Frame[] newFrames = new Frame[capacity << 1];
+    long[] newPositions = new long[capacity << 1];
+    for (int i = 0; i < count; i++) {
+      int index = (head + i) & (capacity - 1);
+      newFrames[i] = frames[index];
+      newPositions[i] = positions[index];
+    }
+    frames = newFrames;
+    positions = newPositions;
+    head = 0;
+  }
+
+  private final class ResendIterator implements Iterator<Frame> {
+    private final @Nullable Iterator<Frame> spilled;
+    private int next;
+
+    ResendIterator() {
+      this.spilled = spill != null ? spill.iterator(evictedPosition) : null;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return (spilled != null && spilled.hasNext()) || next < count;
+    }
+
+    @Override
+    public Frame next() {
+      if (spilled != null && spilled.hasNext()) {
+        return spilled.next();
+      }
+      if (next >= count) {
+        throw new NoSuchElementException();
+      }
+      return frames[(head + next++) & (frames.length - 1)].retainedDuplicate();
+    }
+  }
 }
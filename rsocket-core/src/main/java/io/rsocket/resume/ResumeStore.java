@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.resume;
+
+import io.rsocket.DuplexConnection;
+import io.rsocket.Frame;
+import io.rsocket.FrameType;
+import io.rsocket.exceptions.RejectedResumeException;
+import io.rsocket.frame.SetupFrameFlyweight;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+/**
+ * Server side registry of resumable sessions by {@link ResumeToken}.
+ *
+ * <p>Every accepted transport connection goes through {@link #accept(DuplexConnection, Function)}.
+ * A connection starting with {@code RESUME} is handed over to the session it names, any other
+ * connection starts a new session, which is registered if its setup frame asks for resumption.
+ */
+public class ResumeStore {
+  private final ConcurrentMap<ResumeToken, ResumableDuplexConnection> sessions;
+  private final Duration sessionDuration;
+  private final Supplier<ResumeCache> caches;
+
+  /**
+   * @param sessionDuration time a session is kept after its transport connection is lost
+   * @param caches creates the cache of a new session
+   */
+  public ResumeStore(Duration sessionDuration, Supplier<ResumeCache> caches) {
+    this.sessions = new ConcurrentHashMap<>();
+    this.sessionDuration = sessionDuration;
+    this.caches = caches;
+  }
+
+  /**
+   * Accepts a new transport connection.
+   *
+   * @param transport newly accepted transport connection
+   * @param newSession sets up a new session over the connection passed to it
+   * @return completes once the connection has been handed over to a session
+   */
+  public Mono<Void> accept(
+      DuplexConnection transport, Function<DuplexConnection, Mono<Void>> newSession) {
+    return Mono.defer(
+        () -> {
+          Router router = new Router(transport, newSession);
+          transport.receive().subscribe(router::onNext, router::onError, router::onComplete);
+          return router.accepted;
+        });
+  }
+
+  /** @return number of sessions, connected or waiting to be resumed */
+  public int size() {
+    return sessions.size();
+  }
+
+  private void register(ResumeToken resumeToken, ResumableDuplexConnection session) {
+    session.enableResumption();
+    ResumableDuplexConnection previous = sessions.put(resumeToken, session);
+    if (previous != null) {
+      previous.close().subscribe();
+    }
+    session.onClose().doFinally(s -> sessions.remove(resumeToken, session)).subscribe();
+  }
+
+  /** Sends the frames of a transport connection to the session it belongs to. */
+  private final class Router {
+    private final DuplexConnection transport;
+    private final Function<DuplexConnection, Mono<Void>> newSession;
+    private final MonoProcessor<Void> accepted;
+    private @Nullable ResumableDuplexConnection session;
+
+    Router(DuplexConnection transport, Function<DuplexConnection, Mono<Void>> newSession) {
+      this.transport = transport;
+      this.newSession = newSession;
+      this.accepted = MonoProcessor.create();
+    }
+
+    void onNext(Frame frame) {
+      if (session != null) {
+        session.receiveFrame(transport, frame);
+      } else if (frame.getType() == FrameType.RESUME) {
+        try {
+          resume(frame);
+        } finally {
+          frame.release();
+        }
+      } else {
+        ResumableDuplexConnection session =
+            new ResumableDuplexConnection(transport, sessionDuration, caches.get());
+        this.session = session;
+        if (frame.getType() == FrameType.SETUP) {
+          byte[] resumeToken = Frame.Setup.resumeToken(frame);
+          if (resumeToken != null) {
+            register(ResumeToken.bytes(resumeToken), session);
+          }
+        }
+        session.receiveFrame(transport, frame);
+        newSession.apply(session).subscribe(accepted);
+      }
+    }
+
+    private void resume(Frame resumeFrame) {
+      ResumableDuplexConnection session =
+          Frame.Resume.version(resumeFrame) == SetupFrameFlyweight.CURRENT_VERSION
+              ? sessions.get(ResumeToken.bytes(Frame.Resume.resumeToken(resumeFrame)))
+              : null;
+
+      if (session != null && session.resume(transport, resumeFrame)) {
+        this.session = session;
+        accepted.onComplete();
+      } else {
+        RejectedResumeException error = new RejectedResumeException("Unknown or expired session");
+        transport
+            .sendOne(Frame.Error.from(transport.alloc(), 0, error))
+            .then(transport.close())
+            .subscribe(accepted);
+      }
+    }
+
+    void onError(Throwable t) {
+      onComplete();
+    }
+
+    void onComplete() {
+      transport.close().subscribe();
+      accepted.onComplete();
+    }
+  }
+}
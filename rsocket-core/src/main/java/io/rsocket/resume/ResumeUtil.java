@@ -16,6 +16,9 @@ public static boolean isTracked(FrameType frameType) {
       case CANCEL:
       case ERROR:
       case PAYLOAD:
+      case NEXT:
+      case COMPLETE:
+      case NEXT_COMPLETE:
         return true;
       default:
         return false;
@@ -23,7 +26,8 @@ public static boolean isTracked(FrameType frameType) {
   }
 
   public static boolean isTracked(Frame frame) {
-    return isTracked(frame.getType());
+    // Frames on stream 0 belong to the connection rather than to a stream and are not resent
+    return frame.getStreamId() != 0 && isTracked(frame.getType());
   }
 
   public static int offset(Frame frame) {
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.AbstractReferenceCounted;
+import io.rsocket.Frame;
+import io.rsocket.Payload;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nullable;
+
+/**
+ * A reference counted {@link Payload} backed by slices of a {@link Frame}'s content. Unlike {@link
+ * PayloadImpl#PayloadImpl(Frame)}, data and metadata are never copied out of the frame: {@link
+ * #getData()} and {@link #getMetadata()} return {@link ByteBuffer} views over the frame buffer that
+ * are created on demand.
+ *
+ * <p>A {@code ByteBufPayload} holds a reference to the frame buffer it was created from, so the
+ * frame itself may be released as soon as the payload is created. Whoever receives the payload is
+ * responsible for calling {@link #release()} once done with it, after which none of the buffers or
+ * views obtained from it may be used.
+ */
+public final class ByteBufPayload extends AbstractReferenceCounted implements Payload {
+
+  private final ByteBuf content;
+  private final ByteBuf data;
+  private final @Nullable ByteBuf metadata;
+
+  private ByteBufPayload(ByteBuf content, ByteBuf data, @Nullable ByteBuf metadata) {
+    this.content = content;
+    this.data = data;
+    this.metadata = metadata;
+  }
+
+  /**
+   * Creates a payload sharing the content of the passed frame. The frame content is retained, the
+   * reference held by the caller on the frame is left untouched.
+   *
+   * @param frame to slice data and metadata from.
+   * @return a payload that must be released once consumed.
+   */
+  public static ByteBufPayload create(Frame frame) {
+    final ByteBuf content = frame.content();
+    final ByteBuf data = frame.sliceData();
+    final @Nullable ByteBuf metadata = frame.hasMetadata() ? frame.sliceMetadata() : null;
+
+    return new ByteBufPayload(content.retain(), data, metadata);
+  }
+
+  @Override
+  public boolean hasMetadata() {
+    return metadata != null;
+  }
+
+  @Override
+  public ByteBuf sliceMetadata() {
+    return metadata == null ? Unpooled.EMPTY_BUFFER : metadata.slice();
+  }
+
+  @Override
+  public ByteBuf sliceData() {
+    return data.slice();
+  }
+
+  @Override
+  public ByteBuffer getMetadata() {
+    return metadata == null ? Frame.NULL_BYTEBUFFER : metadata.nioBuffer();
+  }
+
+  @Override
+  public ByteBuffer getData() {
+    return data.nioBuffer();
+  }
+
+  @Override
+  public String getMetadataUtf8() {
+    return metadata == null ? "" : metadata.toString(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public String getDataUtf8() {
+    return data.toString(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public ByteBufPayload touch(@Nullable Object hint) {
+    content.touch(hint);
+    return this;
+  }
+
+  @Override
+  protected void deallocate() {
+    content.release();
+  }
+}
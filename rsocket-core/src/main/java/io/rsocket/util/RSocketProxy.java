@@ -59,6 +59,26 @@ public double availability() {
     return source.availability();
   }
 
+  @Override
+  public double roundTripTime() {
+    return source.roundTripTime();
+  }
+
+  @Override
+  public double roundTripJitter() {
+    return source.roundTripJitter();
+  }
+
+  @Override
+  public long receiveBufferedBytes() {
+    return source.receiveBufferedBytes();
+  }
+
+  @Override
+  public long maxStreamReceiveBufferedBytes() {
+    return source.maxStreamReceiveBufferedBytes();
+  }
+
   @Override
   public Mono<Void> close() {
     return source.close();
@@ -1,9 +1,18 @@
 package io.rsocket;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.rsocket.frame.FrameHeaderFlyweight;
+import io.rsocket.util.ByteBufPayload;
 import io.rsocket.util.PayloadImpl;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import org.junit.Test;
 
 public class FrameTest {
@@ -33,4 +42,59 @@ public void testPayload() {
             1, FrameType.NEXT_COMPLETE, new PayloadImpl("Hello"), FrameHeaderFlyweight.FLAGS_C);
     frame.toString();
   }
+
+  @Test
+  public void testLargeRequestIsComposite() {
+    String data = largeString('d');
+    String metadata = largeString('m');
+    Frame frame =
+        Frame.Request.from(1, FrameType.REQUEST_STREAM, new PayloadImpl(data, metadata), 5);
+
+    assertTrue(frame.content() instanceof CompositeByteBuf);
+    assertEquals(
+        frame.content().readableBytes(), FrameHeaderFlyweight.frameLength(frame.content()));
+    assertEquals(FrameType.REQUEST_STREAM, frame.getType());
+    assertEquals(5, Frame.Request.initialRequestN(frame));
+    assertEquals(data, frame.getDataUtf8());
+    assertEquals(metadata, StandardCharsets.UTF_8.decode(frame.getMetadata()).toString());
+    frame.release();
+  }
+
+  @Test
+  public void testLargePayloadFrameRetainsPayload() {
+    Frame source =
+        Frame.PayloadFrame.from(1, FrameType.NEXT, new PayloadImpl(largeString('d'), "metadata"));
+    ByteBuf content = source.content();
+    ByteBufPayload payload = ByteBufPayload.create(source);
+    source.release();
+
+    Frame frame = Frame.PayloadFrame.from(3, FrameType.NEXT_COMPLETE, payload);
+    payload.release();
+    assertTrue(content.refCnt() > 0);
+    assertEquals(FrameType.NEXT_COMPLETE, frame.getType());
+    assertEquals(largeString('d'), frame.getDataUtf8());
+
+    frame.release();
+    assertEquals(0, content.refCnt());
+  }
+
+  @Test
+  public void testFramesUseProvidedAllocator() {
+    ByteBufAllocator allocator = new UnpooledByteBufAllocator(false);
+    Frame small =
+        Frame.Request.from(allocator, 1, FrameType.REQUEST_RESPONSE, PayloadImpl.EMPTY, 1);
+    Frame large =
+        Frame.PayloadFrame.from(allocator, 1, FrameType.NEXT, new PayloadImpl(largeString('d')));
+
+    assertSame(allocator, small.content().alloc());
+    assertSame(allocator, large.content().alloc());
+    small.release();
+    large.release();
+  }
+
+  private static String largeString(char c) {
+    char[] chars = new char[4096];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
 }
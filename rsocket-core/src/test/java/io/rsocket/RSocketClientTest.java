@@ -21,6 +21,7 @@
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.instanceOf;
@@ -30,13 +31,19 @@
 import static org.mockito.Mockito.verify;
 
 import io.rsocket.exceptions.ApplicationException;
+import io.rsocket.exceptions.ConnectionException;
+import io.rsocket.exceptions.RejectedException;
 import io.rsocket.exceptions.RejectedSetupException;
+import io.rsocket.frame.ErrorFrameFlyweight;
 import io.rsocket.frame.RequestFrameFlyweight;
+import io.rsocket.internal.ConcurrentStreamLimit;
+import io.rsocket.test.util.TestDuplexConnection;
 import io.rsocket.test.util.TestSubscriber;
 import io.rsocket.util.PayloadImpl;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import org.junit.Ignore;
 import org.junit.Rule;
@@ -47,6 +54,7 @@
 import reactor.core.publisher.BaseSubscriber;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 public class RSocketClientTest {
 
@@ -57,6 +65,18 @@ public void testKeepAlive() throws Exception {
     assertThat("Unexpected frame sent.", rule.connection.awaitSend().getType(), is(KEEPALIVE));
   }
 
+  @Test(timeout = 2_000)
+  public void testKeepAliveMeasuresRoundTripTime() throws Exception {
+    Frame keepAlive = rule.connection.awaitSend();
+    assertThat("Unexpected frame sent.", keepAlive.getType(), is(KEEPALIVE));
+
+    Thread.sleep(5);
+    rule.connection.addToReceivedBuffer(Frame.Keepalive.from(keepAlive.sliceData(), false));
+
+    assertThat(rule.socket.roundTripTime(), greaterThanOrEqualTo(5_000.0));
+    assertThat(rule.socket.roundTripJitter(), greaterThan(0.0));
+  }
+
   @Test(timeout = 2_000)
   public void testInvalidFrameOnStream0() {
     rule.connection.addToReceivedBuffer(Frame.RequestN.from(0, 10));
@@ -136,6 +156,27 @@ public void testHandleValidFrame() {
     verify(sub).onComplete();
   }
 
+  @Test(timeout = 2_000)
+  public void testRequestReplyCancelledOnSubscribeSendsNothing() {
+    rule.socket
+        .requestResponse(PayloadImpl.EMPTY)
+        .subscribe(
+            new BaseSubscriber<Payload>() {
+              @Override
+              protected void hookOnSubscribe(Subscription subscription) {
+                cancel();
+              }
+            });
+
+    List<Frame> sent =
+        rule.connection
+            .getSent()
+            .stream()
+            .filter(f -> f.getType() != KEEPALIVE)
+            .collect(Collectors.toList());
+    assertThat("Unexpected frames sent.", sent, hasSize(0));
+  }
+
   @Test(timeout = 2_000)
   public void testRequestReplyWithCancel() {
     Mono<Payload> response = rule.socket.requestResponse(PayloadImpl.EMPTY);
@@ -157,6 +198,33 @@ public void testRequestReplyWithCancel() {
     assertThat("Unexpected frame sent on the connection.", sent.get(1).getType(), is(CANCEL));
   }
 
+  @Test(timeout = 2_000)
+  public void testNoCancelAfterResponse() {
+    rule.connection.clearSendReceiveBuffers();
+    Mono<Payload> response = rule.socket.requestResponse(PayloadImpl.EMPTY);
+    response.subscribe(
+        new BaseSubscriber<Payload>() {
+          @Override
+          protected void hookOnNext(Payload value) {
+            cancel();
+          }
+        });
+
+    int streamId = rule.getStreamIdForRequestType(REQUEST_RESPONSE);
+    rule.connection.addToReceivedBuffer(
+        Frame.PayloadFrame.from(streamId, NEXT_COMPLETE, PayloadImpl.EMPTY));
+
+    List<Frame> sent =
+        rule.connection
+            .getSent()
+            .stream()
+            .filter(f -> f.getType() != KEEPALIVE)
+            .collect(Collectors.toList());
+
+    assertThat("Unexpected frames sent on the connection.", sent, hasSize(1));
+    assertThat("Unexpected errors.", rule.errors, hasSize(0));
+  }
+
   @Test(timeout = 2_000)
   @Ignore
   public void testRequestReplyErrorOnSend() {
@@ -177,6 +245,122 @@ public void testLazyRequestResponse() {
     assertThat("Stream ID reused.", streamId2, not(equalTo(streamId)));
   }
 
+  @Test(timeout = 2_000)
+  public void testRejectsRequestsOverStreamLimitLocally() {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    RSocketClient client =
+        new RSocketClient(
+            connection,
+            rule.errors::add,
+            StreamIdSupplier.clientSupplier(),
+            Duration.ZERO,
+            Duration.ZERO,
+            0,
+            new ConnectionOptions().streamLimit(new ConcurrentStreamLimit(1)));
+
+    client.requestResponse(PayloadImpl.EMPTY).subscribe();
+    StepVerifier.create(client.requestResponse(PayloadImpl.EMPTY))
+        .verifyError(RejectedException.class);
+    assertThat("Rejected request sent.", connection.getSent(), hasSize(1));
+
+    int streamId = connection.getSent().iterator().next().getStreamId();
+    connection.addToReceivedBuffer(
+        Frame.PayloadFrame.from(streamId, NEXT_COMPLETE, PayloadImpl.EMPTY));
+    client.requestResponse(PayloadImpl.EMPTY).subscribe();
+    assertThat("Request not sent after another ended.", connection.getSent(), hasSize(2));
+  }
+
+  @Test(timeout = 5_000)
+  public void testCancelsRequestsPastTheirDeadline() {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    ConcurrentStreamLimit streamLimit = new ConcurrentStreamLimit(0);
+    RSocketClient client =
+        new RSocketClient(
+            connection,
+            rule.errors::add,
+            StreamIdSupplier.clientSupplier(),
+            Duration.ZERO,
+            Duration.ZERO,
+            0,
+            new ConnectionOptions().streamLimit(streamLimit).requestTimeout(Duration.ofMillis(50)));
+
+    StepVerifier.create(client.requestResponse(PayloadImpl.EMPTY))
+        .expectSubscription()
+        .verifyError(TimeoutException.class);
+    StepVerifier.create(client.requestStream(PayloadImpl.EMPTY))
+        .expectSubscription()
+        .verifyError(TimeoutException.class);
+
+    List<FrameType> sent =
+        connection.getSent().stream().map(Frame::getType).collect(Collectors.toList());
+    assertThat(
+        "Unexpected frames sent.",
+        sent,
+        contains(REQUEST_RESPONSE, CANCEL, REQUEST_STREAM, CANCEL));
+    assertThat("Expired streams still active.", streamLimit.active(), is(0));
+  }
+
+  @Test(timeout = 2_000)
+  public void testCancelsDeadlineOfRequestAnsweredInline() {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    Flux.from(connection.getSentAsPublisher())
+        .filter(frame -> frame.getType() == REQUEST_RESPONSE)
+        .subscribe(
+            frame ->
+                connection.addToReceivedBuffer(
+                    Frame.PayloadFrame.from(
+                        frame.getStreamId(), NEXT_COMPLETE, PayloadImpl.EMPTY)));
+    RSocketClient client =
+        new RSocketClient(
+            connection,
+            rule.errors::add,
+            StreamIdSupplier.clientSupplier(),
+            Duration.ZERO,
+            Duration.ZERO,
+            0,
+            new ConnectionOptions().requestTimeout(Duration.ofSeconds(10)));
+
+    StepVerifier.create(client.requestResponse(PayloadImpl.EMPTY))
+        .expectNextCount(1)
+        .verifyComplete();
+    assertThat("Deadline of answered request pending.", client.pendingDeadlines(), is(0));
+  }
+
+  @Test(timeout = 2_000)
+  public void testClosesConnectionWhenCreditIsOverrun() {
+    List<Payload> received = new ArrayList<>();
+    rule.socket
+        .requestStream(PayloadImpl.EMPTY)
+        .subscribe(
+            new BaseSubscriber<Payload>() {
+              @Override
+              protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+              }
+
+              @Override
+              protected void hookOnNext(Payload payload) {
+                received.add(payload);
+              }
+            });
+
+    int streamId = rule.getStreamIdForRequestType(REQUEST_STREAM);
+    rule.connection.addToReceivedBuffer(
+        Frame.PayloadFrame.from(streamId, NEXT, new PayloadImpl("first")),
+        Frame.PayloadFrame.from(streamId, NEXT, new PayloadImpl("second")));
+
+    assertThat("Payload over credit delivered.", received, hasSize(1));
+    assertThat("Unexpected errors.", rule.errors, contains(instanceOf(ConnectionException.class)));
+    Frame error =
+        rule.connection.getSent().stream().filter(f -> f.getType() == ERROR).findFirst().get();
+    assertThat("Unexpected error stream.", error.getStreamId(), is(0));
+    assertThat(
+        "Unexpected error code.",
+        Frame.Error.errorCode(error),
+        is(ErrorFrameFlyweight.CONNECTION_ERROR));
+    assertThat("Undelivered bytes counted.", rule.socket.receiveBufferedBytes(), is(0L));
+  }
+
   public int sendRequestResponse(Publisher<Payload> response) {
     Subscriber<Payload> sub = TestSubscriber.create();
     response.subscribe(sub);
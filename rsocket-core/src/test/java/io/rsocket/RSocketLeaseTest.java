@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket;
+
+import static io.rsocket.FrameType.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+import io.netty.buffer.Unpooled;
+import io.rsocket.exceptions.RejectedException;
+import io.rsocket.lease.LeaseImpl;
+import io.rsocket.lease.LeaseTracker;
+import io.rsocket.test.util.TestDuplexConnection;
+import io.rsocket.util.PayloadImpl;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+public class RSocketLeaseTest {
+
+  @Rule public final LeaseClientSocketRule rule = new LeaseClientSocketRule();
+
+  @Test(timeout = 2_000)
+  public void testRejectsRequestsWithoutLease() {
+    assertThat("Unexpected availability.", rule.socket.availability(), is(0.0));
+
+    StepVerifier.create(rule.socket.requestResponse(PayloadImpl.EMPTY))
+        .expectError(RejectedException.class)
+        .verify();
+    StepVerifier.create(rule.socket.requestStream(PayloadImpl.EMPTY))
+        .expectError(RejectedException.class)
+        .verify();
+    StepVerifier.create(rule.socket.fireAndForget(PayloadImpl.EMPTY))
+        .expectError(RejectedException.class)
+        .verify();
+
+    assertThat("Unexpected frames sent.", rule.connection.getSent(), is(empty()));
+  }
+
+  @Test(timeout = 2_000)
+  public void testRequestsTakePermitsOfLease() {
+    rule.connection.addToReceivedBuffer(Frame.Lease.from(10_000, 2, Unpooled.EMPTY_BUFFER));
+    assertThat("Unexpected availability.", rule.socket.availability(), is(1.0));
+
+    rule.socket.requestResponse(PayloadImpl.EMPTY).subscribe();
+    assertThat("Unexpected availability.", rule.socket.availability(), is(0.5));
+    rule.socket.requestStream(PayloadImpl.EMPTY).subscribe();
+    assertThat("Unexpected availability.", rule.socket.availability(), is(0.0));
+
+    StepVerifier.create(rule.socket.requestResponse(PayloadImpl.EMPTY))
+        .expectError(RejectedException.class)
+        .verify();
+
+    List<FrameType> sent =
+        rule.connection.getSent().stream().map(Frame::getType).collect(Collectors.toList());
+    assertThat("Unexpected frames sent.", sent, hasSize(2));
+    assertThat("Unexpected frame sent.", sent.get(0), is(REQUEST_RESPONSE));
+    assertThat("Unexpected frame sent.", sent.get(1), is(REQUEST_STREAM));
+  }
+
+  @Test(timeout = 2_000)
+  public void testServerSendsGeneratedLeases() throws Exception {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    new RSocketServer(
+        connection,
+        new AbstractRSocket() {},
+        throwable -> rule.errors.add(throwable),
+        new ConnectionOptions()
+            .leaseGenerator(
+                stats -> Flux.just(new LeaseImpl(5 - stats.inFlightRequests(), 1_000))));
+
+    Frame lease = connection.awaitSend();
+    assertThat("Unexpected frame sent.", lease.getType(), is(LEASE));
+    assertThat("Unexpected stream id.", lease.getStreamId(), is(0));
+    assertThat("Unexpected permits.", Frame.Lease.numberOfRequests(lease), is(5));
+    assertThat("Unexpected ttl.", Frame.Lease.ttl(lease), is(1_000));
+  }
+
+  public static class LeaseClientSocketRule extends AbstractSocketRule<RSocketClient> {
+    @Override
+    protected RSocketClient newRSocket() {
+      return new RSocketClient(
+          connection,
+          throwable -> errors.add(throwable),
+          StreamIdSupplier.clientSupplier(),
+          Duration.ZERO,
+          Duration.ZERO,
+          0,
+          new ConnectionOptions().leaseTracker(new LeaseTracker()));
+    }
+  }
+}
@@ -22,13 +22,18 @@
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.rsocket.frame.ErrorFrameFlyweight;
+import io.rsocket.internal.ConcurrentStreamLimit;
 import io.rsocket.test.util.TestDuplexConnection;
 import io.rsocket.test.util.TestSubscriber;
 import io.rsocket.util.PayloadImpl;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
@@ -52,6 +57,16 @@ public void testHandleKeepAlive() throws Exception {
         is(false));
   }
 
+  @Test(timeout = 2000)
+  public void testKeepAliveEchoesData() throws Exception {
+    ByteBuf data = Unpooled.copiedBuffer("ping", StandardCharsets.UTF_8);
+    rule.connection.addToReceivedBuffer(Frame.Keepalive.from(data, true));
+
+    Frame sent = rule.connection.awaitSend();
+    assertThat("Unexpected frame sent.", sent.getType(), is(FrameType.KEEPALIVE));
+    assertThat("Unexpected keep-alive data.", sent.getDataUtf8(), is("ping"));
+  }
+
   @Test(timeout = 2000)
   @Ignore
   public void testHandleResponseFrameNoError() throws Exception {
@@ -101,6 +116,80 @@ public Mono<Payload> requestResponse(Payload payload) {
     assertThat("Subscription not cancelled.", cancelled.get(), is(true));
   }
 
+  @Test(timeout = 2_000)
+  public void testRejectsRequestsOverStreamLimit() {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    AtomicInteger handled = new AtomicInteger();
+    new RSocketServer(
+        connection,
+        new AbstractRSocket() {
+          @Override
+          public Mono<Payload> requestResponse(Payload payload) {
+            handled.incrementAndGet();
+            return Mono.never();
+          }
+        },
+        rule.errors::add,
+        new ConnectionOptions().streamLimit(new ConcurrentStreamLimit(1)));
+
+    connection.addToReceivedBuffer(
+        Frame.Request.from(1, FrameType.REQUEST_RESPONSE, PayloadImpl.EMPTY, 1));
+    connection.addToReceivedBuffer(
+        Frame.Request.from(3, FrameType.REQUEST_RESPONSE, PayloadImpl.EMPTY, 1));
+
+    assertThat("Handler called over the limit.", handled.get(), is(1));
+    assertThat("Unexpected frames sent.", connection.getSent(), hasSize(1));
+    Frame rejection = connection.getSent().iterator().next();
+    assertThat("Unexpected frame sent.", rejection.getType(), is(FrameType.ERROR));
+    assertThat("Unexpected stream.", rejection.getStreamId(), is(3));
+    assertThat(
+        "Unexpected error code.",
+        Frame.Error.errorCode(rejection),
+        is(ErrorFrameFlyweight.REJECTED));
+
+    connection.addToReceivedBuffer(Frame.Cancel.from(1));
+    connection.addToReceivedBuffer(
+        Frame.Request.from(5, FrameType.REQUEST_RESPONSE, PayloadImpl.EMPTY, 1));
+    assertThat("Stream not admitted after another ended.", handled.get(), is(2));
+  }
+
+  @Test(timeout = 2_000)
+  public void testRejectsRequestOnActiveStream() {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    ConcurrentStreamLimit streamLimit = new ConcurrentStreamLimit(4);
+    AtomicInteger handled = new AtomicInteger();
+    new RSocketServer(
+        connection,
+        new AbstractRSocket() {
+          @Override
+          public Mono<Payload> requestResponse(Payload payload) {
+            handled.incrementAndGet();
+            return Mono.never();
+          }
+        },
+        rule.errors::add,
+        new ConnectionOptions().streamLimit(streamLimit));
+
+    connection.addToReceivedBuffer(
+        Frame.Request.from(1, FrameType.REQUEST_RESPONSE, PayloadImpl.EMPTY, 1));
+    connection.addToReceivedBuffer(
+        Frame.Request.from(1, FrameType.REQUEST_RESPONSE, PayloadImpl.EMPTY, 1));
+
+    assertThat("Handler called for a reused stream.", handled.get(), is(1));
+    assertThat("Unexpected active streams.", streamLimit.active(), is(1));
+    assertThat("Unexpected frames sent.", connection.getSent(), hasSize(1));
+    Frame error = connection.getSent().iterator().next();
+    assertThat("Unexpected frame sent.", error.getType(), is(FrameType.ERROR));
+    assertThat("Unexpected stream.", error.getStreamId(), is(0));
+    assertThat(
+        "Unexpected error code.",
+        Frame.Error.errorCode(error),
+        is(ErrorFrameFlyweight.CONNECTION_ERROR));
+
+    connection.addToReceivedBuffer(Frame.Cancel.from(1));
+    assertThat("Stream slot leaked.", streamLimit.active(), is(0));
+  }
+
   public static class ServerSocketRule extends AbstractSocketRule<RSocketServer> {
 
     private RSocket acceptingSocket;
@@ -20,7 +20,20 @@
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import io.rsocket.internal.StreamTable;
+import io.rsocket.test.util.TestDuplexConnection;
+import io.rsocket.util.PayloadImpl;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import org.junit.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.MonoProcessor;
 
 public class StreamIdSupplierTest {
   @Test
@@ -82,4 +95,170 @@ public void testServerIsValid() {
     // client also accepted (checked externally)
     assertTrue(s.isBeforeOrCurrent(1));
   }
+
+  @Test
+  public void testWrapsAround() {
+    StreamIdSupplier s = new StreamIdSupplier(-1, 7);
+    assertEquals(1, s.nextStreamId());
+    assertEquals(3, s.nextStreamId());
+    assertEquals(5, s.nextStreamId());
+    assertEquals(7, s.nextStreamId());
+    assertEquals(1, s.nextStreamId());
+
+    s = new StreamIdSupplier(0, 8);
+    assertEquals(2, s.nextStreamId());
+    assertEquals(4, s.nextStreamId());
+    assertEquals(6, s.nextStreamId());
+    assertEquals(8, s.nextStreamId());
+    assertEquals(2, s.nextStreamId());
+  }
+
+  @Test
+  public void testSkipsActiveStreamsAfterWrap() {
+    StreamTable<Object> active = new StreamTable<>(1);
+    StreamIdSupplier s = new StreamIdSupplier(-1, 7);
+    for (int i = 0; i < 4; i++) {
+      active.put(s.nextStreamId(active), "stream");
+    }
+    active.remove(5);
+
+    assertEquals(5, s.nextStreamId(active));
+    active.remove(1);
+    assertEquals(1, s.nextStreamId(active));
+  }
+
+  @Test
+  public void testIsBeforeOrCurrentAfterWrap() {
+    StreamIdSupplier s = new StreamIdSupplier(-1, 7);
+    for (int i = 0; i < 4; i++) {
+      s.nextStreamId();
+    }
+    assertFalse(s.isBeforeOrCurrent(9));
+
+    s.nextStreamId();
+    assertTrue(s.isBeforeOrCurrent(7));
+    assertTrue(s.isBeforeOrCurrent(9));
+    assertFalse(s.isBeforeOrCurrent(0));
+  }
+
+  @Test(timeout = 10_000)
+  public void testConcurrentIdsAreUnique() throws InterruptedException {
+    StreamIdSupplier s = StreamIdSupplier.clientSupplier();
+    int threads = 8;
+    int idsPerThread = 10_000;
+    Set<Integer> ids = ConcurrentHashMap.newKeySet();
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      Thread worker =
+          new Thread(
+              () -> {
+                try {
+                  start.await();
+                } catch (InterruptedException e) {
+                  return;
+                }
+                for (int i = 0; i < idsPerThread; i++) {
+                  ids.add(s.nextStreamId());
+                }
+              });
+      worker.start();
+      workers.add(worker);
+    }
+
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    assertEquals(threads * idsPerThread, ids.size());
+  }
+
+  @Test(timeout = 10_000)
+  public void testRequestResponseAcrossWraparounds() {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    List<Throwable> errors = new ArrayList<>();
+    // 16 client stream ids, so the requests below wrap around many times
+    RSocketClient client =
+        new RSocketClient(connection, errors::add, new StreamIdSupplier(-1, 31));
+
+    int longLived = 3;
+    Set<Integer> held = new HashSet<>();
+    Set<Integer> reused = new HashSet<>();
+    Flux.from(connection.getSentAsPublisher())
+        .filter(frame -> frame.getType() == FrameType.REQUEST_RESPONSE)
+        .subscribe(
+            frame -> {
+              int streamId = frame.getStreamId();
+              if (held.size() < longLived) {
+                held.add(streamId);
+              } else if (held.contains(streamId)) {
+                reused.add(streamId);
+              } else {
+                connection.addToReceivedBuffer(respond(streamId));
+              }
+            });
+
+    List<MonoProcessor<Payload>> pending = new ArrayList<>();
+    for (int i = 0; i < longLived; i++) {
+      pending.add(client.requestResponse(PayloadImpl.EMPTY).toProcessor());
+    }
+
+    for (int i = 0; i < 2_000; i++) {
+      Payload response = client.requestResponse(PayloadImpl.EMPTY).block();
+      assertFalse(held.contains(Integer.parseInt(response.getDataUtf8())));
+    }
+
+    // Late frame for a stream that is not active any more, the held streams are 1, 3 and 5
+    connection.addToReceivedBuffer(respond(7));
+
+    for (int streamId : held) {
+      connection.addToReceivedBuffer(respond(streamId));
+    }
+
+    Set<Integer> answered = new HashSet<>();
+    for (MonoProcessor<Payload> response : pending) {
+      assertTrue(response.isSuccess());
+      answered.add(Integer.parseInt(response.peek().getDataUtf8()));
+    }
+    assertEquals(held, answered);
+    assertTrue("Stream ids reused while active: " + reused, reused.isEmpty());
+    assertTrue("Unexpected errors: " + errors, errors.isEmpty());
+  }
+
+  @Test(timeout = 10_000)
+  public void testChannelNotRequestedYetKeepsItsId() {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    List<Throwable> errors = new ArrayList<>();
+    RSocketClient client = new RSocketClient(connection, errors::add, new StreamIdSupplier(-1, 7));
+
+    Set<Integer> used = new HashSet<>();
+    Flux.from(connection.getSentAsPublisher())
+        .filter(frame -> frame.getType() == FrameType.REQUEST_RESPONSE)
+        .subscribe(
+            frame -> {
+              used.add(frame.getStreamId());
+              connection.addToReceivedBuffer(respond(frame.getStreamId()));
+            });
+
+    // Subscribed without requesting anything, the channel already holds stream 1
+    client
+        .requestChannel(Flux.never())
+        .subscribe(
+            new BaseSubscriber<Payload>() {
+              @Override
+              protected void hookOnSubscribe(Subscription subscription) {}
+            });
+    for (int i = 0; i < 10; i++) {
+      client.requestResponse(PayloadImpl.EMPTY).block();
+    }
+
+    assertFalse("Stream id of the channel reused: " + used, used.contains(1));
+    assertTrue("Unexpected errors: " + errors, errors.isEmpty());
+  }
+
+  private static Frame respond(int streamId) {
+    return Frame.PayloadFrame.from(
+        streamId, FrameType.NEXT_COMPLETE, new PayloadImpl(String.valueOf(streamId)));
+  }
 }
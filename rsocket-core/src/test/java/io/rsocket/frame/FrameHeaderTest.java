@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.frame;
+
+import static io.rsocket.frame.FrameHeaderFlyweight.FLAGS_M;
+import static org.junit.Assert.*;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.FrameType;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class FrameHeaderTest {
+  private final ByteBuf byteBuf = Unpooled.buffer(1024);
+
+  @Test
+  public void decodesRequestWithMetadata() {
+    ByteBuf metadata = Unpooled.copiedBuffer("md", StandardCharsets.UTF_8);
+    ByteBuf data = Unpooled.copiedBuffer("data", StandardCharsets.UTF_8);
+    byteBuf.writerIndex(
+        RequestFrameFlyweight.encode(
+            byteBuf, 3, FLAGS_M, FrameType.REQUEST_STREAM, 7, metadata, data));
+
+    FrameHeader header = FrameHeader.decode(byteBuf);
+
+    assertEquals(FrameType.REQUEST_STREAM, header.frameType());
+    assertEquals(3, header.streamId());
+    assertEquals(FLAGS_M, header.flags() & FLAGS_M);
+    assertEquals("md", header.sliceMetadata(byteBuf).toString(StandardCharsets.UTF_8));
+    assertEquals("data", header.sliceData(byteBuf).toString(StandardCharsets.UTF_8));
+    assertEquals(FrameHeaderFlyweight.sliceFrameMetadata(byteBuf), header.sliceMetadata(byteBuf));
+    assertEquals(FrameHeaderFlyweight.sliceFrameData(byteBuf), header.sliceData(byteBuf));
+  }
+
+  @Test
+  public void decodesPayloadWithoutMetadata() {
+    ByteBuf data = Unpooled.copiedBuffer("data", StandardCharsets.UTF_8);
+    byteBuf.writerIndex(
+        FrameHeaderFlyweight.encode(
+            byteBuf, 5, FrameHeaderFlyweight.FLAGS_C, FrameType.NEXT_COMPLETE, null, data));
+
+    FrameHeader header = FrameHeader.decode(byteBuf);
+
+    assertEquals(FrameType.NEXT_COMPLETE, header.frameType());
+    assertEquals(5, header.streamId());
+    assertEquals(-1, header.metadataLength());
+    assertNull(header.sliceMetadata(byteBuf));
+    assertEquals(4, header.dataLength());
+    assertEquals("data", header.sliceData(byteBuf).toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void decodesMetadataPush() {
+    ByteBuf metadata = Unpooled.copiedBuffer("md", StandardCharsets.UTF_8);
+    byteBuf.writerIndex(
+        FrameHeaderFlyweight.encode(
+            byteBuf, 0, FLAGS_M, FrameType.METADATA_PUSH, metadata, Unpooled.EMPTY_BUFFER));
+
+    FrameHeader header = FrameHeader.decode(byteBuf);
+
+    assertEquals(FrameType.METADATA_PUSH, header.frameType());
+    assertEquals("md", header.sliceMetadata(byteBuf).toString(StandardCharsets.UTF_8));
+    assertEquals(0, header.sliceData(byteBuf).readableBytes());
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.frame;
+
+import static org.junit.Assert.assertEquals;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.FrameType;
+import org.junit.Test;
+
+public class ResumeFrameFlyweightTest {
+  private final ByteBuf byteBuf = Unpooled.buffer(1024);
+
+  @Test
+  public void testResumeEncoding() {
+    ByteBuf token = Unpooled.wrappedBuffer(new byte[] {1, 2, 3, 4});
+    int length = ResumeFrameFlyweight.encode(byteBuf, token, 42, 7);
+    byteBuf.writerIndex(length);
+
+    assertEquals(ResumeFrameFlyweight.computeFrameLength(4), length);
+    assertEquals(FrameType.RESUME, FrameHeaderFlyweight.frameType(byteBuf));
+    assertEquals(0, FrameHeaderFlyweight.streamId(byteBuf));
+    assertEquals(SetupFrameFlyweight.CURRENT_VERSION, ResumeFrameFlyweight.version(byteBuf));
+    assertEquals(token, ResumeFrameFlyweight.resumeToken(byteBuf));
+    assertEquals(42, ResumeFrameFlyweight.lastReceivedServerPosition(byteBuf));
+    assertEquals(7, ResumeFrameFlyweight.firstAvailableClientPosition(byteBuf));
+    assertEquals(length, ResumeFrameFlyweight.payloadOffset(byteBuf));
+  }
+
+  @Test
+  public void testResumeOkEncoding() {
+    int length = ResumeOkFrameFlyweight.encode(byteBuf, Long.MAX_VALUE - 1);
+    byteBuf.writerIndex(length);
+
+    assertEquals(ResumeOkFrameFlyweight.computeFrameLength(), length);
+    assertEquals(FrameType.RESUME_OK, FrameHeaderFlyweight.frameType(byteBuf));
+    assertEquals(Long.MAX_VALUE - 1, ResumeOkFrameFlyweight.lastReceivedClientPosition(byteBuf));
+    assertEquals(length, ResumeOkFrameFlyweight.payloadOffset(byteBuf));
+  }
+
+  @Test
+  public void testKeepaliveCarriesLastPosition() {
+    KeepaliveFrameFlyweight.encode(byteBuf, 0, 1234, Unpooled.EMPTY_BUFFER);
+
+    assertEquals(1234, KeepaliveFrameFlyweight.lastPosition(byteBuf));
+  }
+}
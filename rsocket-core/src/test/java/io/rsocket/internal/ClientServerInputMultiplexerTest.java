@@ -21,9 +21,11 @@
 import io.rsocket.Frame;
 import io.rsocket.plugins.PluginRegistry;
 import io.rsocket.test.util.TestDuplexConnection;
+import java.time.Duration;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Test;
+import reactor.test.StepVerifier;
 
 public class ClientServerInputMultiplexerTest {
   private TestDuplexConnection source;
@@ -72,4 +74,32 @@ public void testSplits() {
     assertEquals(1, serverFrames.get());
     assertEquals(0, connectionFrames.get());
   }
+
+  @Test
+  public void testBuffersUntilSubscribedAndRequested() {
+    source.addToReceivedBuffer(Frame.Error.from(1, new Exception()));
+    source.addToReceivedBuffer(Frame.Error.from(3, new Exception()));
+    source.addToReceivedBuffer(Frame.Error.from(5, new Exception()));
+
+    StepVerifier.create(multiplexer.asClientConnection().receive(), 1)
+        .assertNext(f -> assertEquals(1, f.getStreamId()))
+        .expectNoEvent(Duration.ofMillis(10))
+        .thenRequest(2)
+        .assertNext(f -> assertEquals(3, f.getStreamId()))
+        .assertNext(f -> assertEquals(5, f.getStreamId()))
+        .then(() -> source.addToReceivedBuffer(Frame.Error.from(7, new Exception())))
+        .expectNoEvent(Duration.ofMillis(10))
+        .thenRequest(1)
+        .assertNext(f -> assertEquals(7, f.getStreamId()))
+        .thenCancel()
+        .verify();
+  }
+
+  @Test
+  public void testRejectsSecondSubscriber() {
+    multiplexer.asServerConnection().receive().subscribe();
+
+    StepVerifier.create(multiplexer.asServerConnection().receive())
+        .verifyError(IllegalStateException.class);
+  }
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.Unpooled;
+import io.rsocket.Frame;
+import io.rsocket.FrameType;
+import io.rsocket.util.PayloadImpl;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.test.StepVerifier;
+
+public class FairFrameProcessorTest {
+  private static Frame next(int streamId, int dataLength) {
+    return Frame.PayloadFrame.from(streamId, FrameType.NEXT, new PayloadImpl(new byte[dataLength]));
+  }
+
+  @Test
+  public void smallFrameOvertakesBulkStream() {
+    Frame bulk = next(1, 1_000);
+    int length = bulk.content().readableBytes();
+    bulk.release();
+
+    FairFrameProcessor processor = new FairFrameProcessor(2 * length);
+    for (int i = 0; i < 10; i++) {
+      processor.onNext(next(1, 1_000));
+    }
+    processor.onNext(next(3, 10));
+
+    List<Integer> streamIds = new ArrayList<>();
+    processor.subscribe(
+        frame -> {
+          streamIds.add(frame.getStreamId());
+          frame.release();
+        });
+
+    assertEquals(11, streamIds.size());
+    assertEquals(3, (int) streamIds.get(2));
+  }
+
+  @Test
+  public void keepsOrderWithinStreams() {
+    FairFrameProcessor processor = new FairFrameProcessor(64);
+    for (int i = 0; i < 100; i++) {
+      processor.onNext(next(1 + 2 * (i % 3), i));
+    }
+
+    int[] lastLength = {-1, -1, -1};
+    processor.subscribe(
+        frame -> {
+          int stream = frame.getStreamId() / 2;
+          int length = frame.getData().remaining();
+          assertTrue(length > lastLength[stream]);
+          lastLength[stream] = length;
+          frame.release();
+        });
+
+    assertEquals(99, lastLength[0]);
+    assertEquals(97, lastLength[1]);
+    assertEquals(98, lastLength[2]);
+  }
+
+  @Test
+  public void emitsOnlyRequestedFrames() {
+    FairFrameProcessor processor = new FairFrameProcessor(1);
+    processor.onNext(next(1, 1));
+    processor.onNext(next(3, 1));
+    processor.onNext(next(1, 1));
+    processor.onComplete();
+
+    StepVerifier.create(processor, 0)
+        .thenRequest(2)
+        .assertNext(frame -> assertEquals(1, frame.getStreamId()))
+        .assertNext(frame -> assertEquals(3, frame.getStreamId()))
+        .thenRequest(1)
+        .assertNext(frame -> assertEquals(1, frame.getStreamId()))
+        .verifyComplete();
+  }
+
+  @Test
+  public void releasesQueuedFramesOnCancel() {
+    FairFrameProcessor processor = new FairFrameProcessor();
+    Frame frame = next(1, 10);
+    processor.onNext(frame);
+
+    StepVerifier.create(processor, 0).thenCancel().verify();
+
+    assertEquals(0, frame.refCnt());
+  }
+
+  @Test
+  public void controlFramesOvertakePayloads() {
+    FairFrameProcessor processor = new FairFrameProcessor();
+    for (int i = 0; i < 10; i++) {
+      processor.onNext(next(1, 1_000));
+    }
+    processor.onNext(Frame.Keepalive.from(Unpooled.EMPTY_BUFFER, false));
+    processor.onNext(Frame.RequestN.from(1, 8));
+    processor.onNext(Frame.Error.from(3, new IllegalStateException()));
+
+    List<FrameType> types = new ArrayList<>();
+    processor.subscribe(
+        frame -> {
+          types.add(frame.getType());
+          frame.release();
+        });
+
+    assertEquals(FrameType.KEEPALIVE, types.get(0));
+    assertEquals(FrameType.REQUEST_N, types.get(1));
+    assertEquals(FrameType.ERROR, types.get(2));
+    assertEquals(13, types.size());
+  }
+
+  @Test
+  public void controlFramesWaitForTheirStream() {
+    FairFrameProcessor processor = new FairFrameProcessor();
+    processor.onNext(next(1, 1_000));
+    processor.onNext(
+        Frame.Request.from(3, FrameType.REQUEST_CHANNEL, new PayloadImpl(new byte[1_000]), 1));
+    processor.onNext(Frame.RequestN.from(3, 8));
+    processor.onNext(next(5, 1_000));
+    processor.onNext(Frame.Error.from(5, new IllegalStateException()));
+
+    List<FrameType> types = new ArrayList<>();
+    processor.subscribe(
+        frame -> {
+          types.add(frame.getType());
+          frame.release();
+        });
+
+    assertEquals(FrameType.REQUEST_N, types.get(types.indexOf(FrameType.REQUEST_CHANNEL) + 1));
+    assertEquals(FrameType.ERROR, types.get(types.size() - 1));
+  }
+
+  @Test
+  public void keepAliveAckIsWrittenNextUnderBulkLoad() {
+    FairFrameProcessor processor = new FairFrameProcessor();
+    List<Frame> written = new ArrayList<>();
+    BaseSubscriber<Frame> writer =
+        new BaseSubscriber<Frame>() {
+          @Override
+          protected void hookOnSubscribe(Subscription subscription) {}
+
+          @Override
+          protected void hookOnNext(Frame frame) {
+            written.add(frame);
+          }
+        };
+    processor.subscribe(writer);
+
+    for (int i = 0; i < 1_000; i++) {
+      // The bulk stream queues faster than the connection writes
+      processor.onNext(next(1, 16 * 1024));
+      processor.onNext(next(1, 16 * 1024));
+      if (i % 100 == 0) {
+        processor.onNext(Frame.Keepalive.from(Unpooled.EMPTY_BUFFER, false));
+      }
+      writer.request(1);
+      Frame frame = written.remove(0);
+      if (i % 100 == 0) {
+        assertEquals(FrameType.KEEPALIVE, frame.getType());
+      } else {
+        assertEquals(FrameType.NEXT, frame.getType());
+      }
+      frame.release();
+    }
+    writer.dispose();
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+public class LimitableRequestPublisherTest {
+  private static final int ROUNDS = 500;
+  private static final int REQUESTS = 1_000;
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void requestsMinimumOfBothSides() {
+    AtomicLong upstream = new AtomicLong();
+    LimitableRequestPublisher<Integer> publisher =
+        LimitableRequestPublisher.wrap(Flux.<Integer>never().doOnRequest(upstream::addAndGet));
+    BaseSubscriber<Integer> subscriber = new NoRequestSubscriber();
+    publisher.subscribe(subscriber);
+
+    subscriber.request(5);
+    assertEquals(0, upstream.get());
+
+    publisher.increaseRequestLimit(3);
+    assertEquals(3, upstream.get());
+
+    publisher.increaseRequestLimit(10);
+    assertEquals(5, upstream.get());
+
+    subscriber.request(20);
+    assertEquals(13, upstream.get());
+  }
+
+  @Test(timeout = 30_000)
+  public void forwardsConcurrentRequestsOfBothSides() throws Exception {
+    for (int round = 0; round < ROUNDS; round++) {
+      AtomicLong upstream = new AtomicLong();
+      LimitableRequestPublisher<Integer> publisher =
+          LimitableRequestPublisher.wrap(Flux.<Integer>never().doOnRequest(upstream::addAndGet));
+      BaseSubscriber<Integer> subscriber = new NoRequestSubscriber();
+      publisher.subscribe(subscriber);
+
+      race(
+          () -> {
+            for (int i = 0; i < REQUESTS; i++) {
+              publisher.increaseRequestLimit(1);
+            }
+          },
+          () -> {
+            for (int i = 0; i < REQUESTS; i++) {
+              subscriber.request(1);
+            }
+          });
+
+      assertEquals(REQUESTS, upstream.get());
+    }
+  }
+
+  @Test(timeout = 30_000)
+  public void cancelsSourceOnceWhenRacingSubscribe() throws Exception {
+    for (int round = 0; round < ROUNDS; round++) {
+      AtomicInteger cancels = new AtomicInteger();
+      LimitableRequestPublisher<Integer> publisher =
+          LimitableRequestPublisher.wrap(
+              Flux.<Integer>never().doOnCancel(cancels::incrementAndGet));
+
+      race(() -> publisher.subscribe(new NoRequestSubscriber()), publisher::cancel);
+
+      assertEquals(1, cancels.get());
+    }
+  }
+
+  private void race(Runnable first, Runnable second) throws Exception {
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    Future<?> a =
+        executor.submit(
+            () -> {
+              barrier.await();
+              first.run();
+              return null;
+            });
+    Future<?> b =
+        executor.submit(
+            () -> {
+              barrier.await();
+              second.run();
+              return null;
+            });
+    a.get();
+    b.get();
+  }
+
+  private static class NoRequestSubscriber extends BaseSubscriber<Integer> {
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {
+      // requests are made by the test
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.rsocket.Frame;
+import io.rsocket.FrameType;
+import io.rsocket.util.PayloadImpl;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+public class OutboundWatermarkTest {
+  private final Frame frame =
+      Frame.PayloadFrame.from(1, FrameType.NEXT, new PayloadImpl("payload"));
+  private final int length = frame.content().readableBytes();
+
+  @After
+  public void releaseFrame() {
+    frame.release();
+  }
+
+  @Test
+  public void writableAgainOnlyAtLowWatermark() {
+    OutboundWatermark watermark = new OutboundWatermark(2 * length, 4 * length);
+
+    for (int i = 0; i < 4; i++) {
+      watermark.enqueued(frame);
+    }
+    assertTrue(watermark.isWritable());
+
+    watermark.enqueued(frame);
+    assertFalse(watermark.isWritable());
+    assertTrue(watermark.availability() < 1.0);
+    assertTrue(watermark.availability() > 0.0);
+
+    watermark.dequeued(frame);
+    watermark.dequeued(frame);
+    assertFalse(watermark.isWritable());
+
+    watermark.dequeued(frame);
+    assertTrue(watermark.isWritable());
+    assertEquals(1.0, watermark.availability(), 0.0);
+    assertEquals(2 * length, watermark.queued());
+  }
+
+  @Test
+  public void runsWaitingTasksOnceWritable() {
+    OutboundWatermark watermark = new OutboundWatermark(0, length);
+    int[] runs = new int[1];
+
+    watermark.whenWritable(() -> runs[0]++);
+    assertEquals(1, runs[0]);
+
+    watermark.enqueued(frame);
+    watermark.enqueued(frame);
+    watermark.whenWritable(() -> runs[0]++);
+    assertEquals(1, runs[0]);
+
+    watermark.dequeued(frame);
+    assertEquals(1, runs[0]);
+    watermark.dequeued(frame);
+    assertEquals(2, runs[0]);
+  }
+
+  @Test(timeout = 10_000)
+  public void writableOnceDrainedWhileGoingOverHighWatermark() throws InterruptedException {
+    for (int i = 0; i < 1_000; i++) {
+      OutboundWatermark watermark = new OutboundWatermark(0, 0);
+      Thread transport =
+          new Thread(
+              () -> {
+                while (watermark.queued() == 0) {
+                  Thread.yield();
+                }
+                watermark.dequeued(frame);
+              });
+      transport.start();
+
+      watermark.enqueued(frame);
+      transport.join();
+      assertTrue(watermark.isWritable());
+    }
+  }
+
+  @Test
+  public void pausesPublisherWhileNotWritable() {
+    OutboundWatermark watermark = new OutboundWatermark(4 * length, 8 * length);
+    List<Frame> queue = new ArrayList<>();
+
+    Flux.range(0, 1_000)
+        .map(i -> frame)
+        .subscribe(
+            watermark.paced(
+                f -> {
+                  watermark.enqueued(f);
+                  queue.add(f);
+                }));
+
+    int paused = queue.size();
+    assertFalse(watermark.isWritable());
+    assertTrue(paused < 1_000);
+
+    while (!watermark.isWritable()) {
+      watermark.dequeued(queue.get(0));
+      queue.remove(0);
+    }
+    assertTrue(queue.size() > 4);
+
+    while (!queue.isEmpty()) {
+      watermark.dequeued(queue.remove(0));
+    }
+    assertEquals(0, watermark.queued());
+  }
+}
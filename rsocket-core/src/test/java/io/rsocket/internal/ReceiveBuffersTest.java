@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.rsocket.Frame;
+import io.rsocket.FrameType;
+import io.rsocket.Payload;
+import io.rsocket.util.PayloadImpl;
+import org.junit.Test;
+
+public class ReceiveBuffersTest {
+  private final ReceiveBuffers buffers = new ReceiveBuffers();
+  private final Payload payload = new PayloadImpl("data", "metadata");
+
+  @Test
+  public void admitsPayloadsUpToGrantedCredit() {
+    ReceiveBuffers.StreamBuffer buffer = buffers.open(1);
+    buffer.granted(2);
+
+    assertTrue(buffers.received(1, payload));
+    assertTrue(buffers.received(1, payload));
+    assertFalse(buffers.received(1, payload));
+
+    buffer.granted(1);
+    assertTrue(buffers.received(1, payload));
+  }
+
+  @Test
+  public void unboundedCreditIsNeverOverrun() {
+    ReceiveBuffers.StreamBuffer buffer = buffers.open(1);
+    buffer.granted(Integer.MAX_VALUE);
+
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(buffers.received(1, payload));
+    }
+  }
+
+  @Test
+  public void countsBytesUntilDelivered() {
+    ReceiveBuffers.StreamBuffer first = buffers.open(1);
+    ReceiveBuffers.StreamBuffer second = buffers.open(3);
+    first.granted(2);
+    second.granted(1);
+
+    buffers.received(1, payload);
+    buffers.received(1, payload);
+    buffers.received(3, payload);
+    assertEquals(36, buffers.bufferedBytes());
+    assertEquals(24, buffers.bufferedBytes(1));
+    assertEquals(24, buffers.maxStreamBufferedBytes());
+
+    first.delivered(payload);
+    assertEquals(12, buffers.bufferedBytes(1));
+    assertEquals(24, buffers.bufferedBytes());
+  }
+
+  @Test
+  public void countsBytesOfFrames() {
+    Frame withMetadata = Frame.PayloadFrame.from(1, FrameType.NEXT, payload);
+    Frame withoutMetadata = Frame.PayloadFrame.from(1, FrameType.NEXT, new PayloadImpl("data"));
+    ReceiveBuffers.StreamBuffer buffer = buffers.open(1);
+    buffer.granted(2);
+
+    buffers.received(1, withMetadata);
+    buffers.received(1, withoutMetadata);
+    assertEquals(16, buffers.bufferedBytes(1));
+
+    buffer.delivered(withMetadata);
+    assertEquals(4, buffers.bufferedBytes(1));
+    withMetadata.release();
+    withoutMetadata.release();
+  }
+
+  @Test
+  public void closeDropsBytesStillBuffered() {
+    ReceiveBuffers.StreamBuffer buffer = buffers.open(1);
+    buffer.granted(1);
+    buffers.received(1, payload);
+
+    buffers.close(1);
+    buffer.delivered(payload);
+    assertEquals(0, buffers.bufferedBytes());
+    assertEquals(0, buffers.bufferedBytes(1));
+  }
+
+  @Test
+  public void ignoresStreamsNotAccountedFor() {
+    assertTrue(buffers.received(5, payload));
+    assertEquals(0, buffers.bufferedBytes());
+  }
+}
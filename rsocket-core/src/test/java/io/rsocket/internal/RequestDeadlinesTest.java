@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.util.HashedWheelTimer;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class RequestDeadlinesTest {
+  private final HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS);
+  private final BlockingQueue<Integer> expired = new LinkedBlockingQueue<>();
+
+  @After
+  public void stopTimer() {
+    timer.stop();
+  }
+
+  @Test(timeout = 5_000)
+  public void expiresStreamsStillActive() throws InterruptedException {
+    RequestDeadlines deadlines = new RequestDeadlines(timer, Duration.ofMillis(20), expired::add);
+
+    deadlines.start(1);
+    deadlines.start(3);
+    deadlines.cancel(1);
+
+    assertEquals(3, (int) expired.take());
+    assertEquals(0, deadlines.size());
+    assertNull(expired.poll(100, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void cancelDropsTheDeadline() {
+    RequestDeadlines deadlines = new RequestDeadlines(timer, Duration.ofHours(1), expired::add);
+
+    deadlines.start(1);
+    assertEquals(1, deadlines.size());
+
+    deadlines.cancel(1);
+    deadlines.cancel(1);
+    assertEquals(0, deadlines.size());
+    assertTrue(expired.isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsZeroTimeout() {
+    new RequestDeadlines(timer, Duration.ZERO, expired::add);
+  }
+}
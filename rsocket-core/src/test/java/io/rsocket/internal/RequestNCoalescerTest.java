@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RequestNCoalescerTest {
+  @Test
+  public void passesRequestsOnWithoutBatchSize() {
+    RequestNCoalescer requestN = new RequestNCoalescer(0);
+
+    assertEquals(1, requestN.request(1));
+    assertEquals(0, requestN.received());
+    assertEquals(5, requestN.request(5));
+  }
+
+  @Test
+  public void batchesOneByOneRequests() {
+    RequestNCoalescer requestN = new RequestNCoalescer(64);
+    long granted = requestN.request(1);
+    int frames = 1;
+
+    for (int i = 0; i < 1_000; i++) {
+      if (i >= granted) {
+        throw new AssertionError("Payload " + i + " was never granted");
+      }
+      long n = requestN.received();
+      n += requestN.request(1);
+      if (n > 0) {
+        frames++;
+        granted += n;
+      }
+      assertTrue(granted - i <= 65);
+    }
+
+    assertEquals(1 + 1_000 / 48, frames);
+  }
+
+  @Test
+  public void grantsDemandBeyondBatchRightAway() {
+    RequestNCoalescer requestN = new RequestNCoalescer(64);
+
+    assertEquals(1_000, requestN.request(1_000));
+    assertEquals(0, requestN.received());
+    assertEquals(100, requestN.request(100));
+  }
+
+  @Test
+  public void stopsCountingOnceUnbounded() {
+    RequestNCoalescer requestN = new RequestNCoalescer(64);
+
+    assertEquals(Long.MAX_VALUE, requestN.request(Long.MAX_VALUE));
+    assertEquals(0, requestN.request(10));
+    assertEquals(0, requestN.received());
+  }
+}
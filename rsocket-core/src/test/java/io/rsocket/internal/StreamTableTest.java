@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+public class StreamTableTest {
+
+  @Test
+  public void testPutGetRemove() {
+    StreamTable<String> table = new StreamTable<>(4);
+
+    assertNull(table.put(1, "one"));
+    assertNull(table.put(3, "three"));
+    assertEquals("one", table.put(1, "uno"));
+
+    assertEquals("uno", table.get(1));
+    assertTrue(table.containsKey(3));
+    assertEquals(2, table.size());
+
+    assertEquals("three", table.remove(3));
+    assertNull(table.remove(3));
+    assertFalse(table.containsKey(3));
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  public void testClearReturnsRemovedValues() {
+    StreamTable<Integer> table = new StreamTable<>(3);
+    for (int i = 1; i < 100; i += 2) {
+      table.put(i, i);
+    }
+
+    List<Integer> values = table.clear();
+
+    assertEquals(50, values.size());
+    assertEquals(0, table.size());
+    assertEquals(0, table.values().size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsZeroStripes() {
+    new StreamTable<>(0);
+  }
+
+  @Test(timeout = 10_000)
+  public void testConcurrentStreams() throws InterruptedException {
+    StreamTable<Integer> table = new StreamTable<>();
+    int threads = 8;
+    int streamsPerThread = 10_000;
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> workers = new ArrayList<>();
+
+    for (int t = 0; t < threads; t++) {
+      int offset = t;
+      Thread worker =
+          new Thread(
+              () -> {
+                try {
+                  start.await();
+                } catch (InterruptedException e) {
+                  return;
+                }
+                for (int i = 0; i < streamsPerThread; i++) {
+                  int streamId = ((i * threads + offset) << 1) + 1;
+                  table.put(streamId, streamId);
+                  if (i % 2 == 0) {
+                    table.remove(streamId);
+                  }
+                }
+              });
+      worker.start();
+      workers.add(worker);
+    }
+
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    assertEquals(threads * streamsPerThread / 2, table.size());
+    for (Integer streamId : table.values()) {
+      assertEquals(streamId, table.get(streamId));
+    }
+  }
+}
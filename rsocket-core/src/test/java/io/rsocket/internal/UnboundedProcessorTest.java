@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.test.StepVerifier;
+
+public class UnboundedProcessorTest {
+
+  @Test
+  public void testBuffersUntilRequested() {
+    UnboundedProcessor<Integer> processor = new UnboundedProcessor<>();
+    processor.onNext(1);
+    processor.onNext(2);
+    processor.onNext(3);
+    processor.onComplete();
+
+    StepVerifier.create(processor, 0)
+        .expectSubscription()
+        .expectNoEvent(Duration.ofMillis(10))
+        .thenRequest(2)
+        .expectNext(1, 2)
+        .thenRequest(1)
+        .expectNext(3)
+        .verifyComplete();
+  }
+
+  @Test
+  public void testRejectsSecondSubscriber() {
+    UnboundedProcessor<Integer> processor = new UnboundedProcessor<>();
+    processor.subscribe();
+
+    StepVerifier.create(processor).verifyError(IllegalStateException.class);
+  }
+
+  @Test
+  public void testReleasesQueuedBuffersOnCancel() {
+    UnboundedProcessor<ByteBuf> processor = new UnboundedProcessor<>();
+    ByteBuf buffer = Unpooled.buffer(8);
+    processor.onNext(buffer);
+
+    StepVerifier.create(processor, 0).thenCancel().verify();
+
+    assertEquals(0, buffer.refCnt());
+  }
+
+  @Test(timeout = 10_000)
+  public void testReleasesBuffersOfferedWhileCancelling() throws InterruptedException {
+    for (int round = 0; round < 100; round++) {
+      UnboundedProcessor<ByteBuf> processor = new UnboundedProcessor<>();
+      List<ByteBuf> buffers = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+        buffers.add(Unpooled.buffer(8));
+      }
+      // Nothing is requested, so every buffer stays queued until cancelled
+      processor.subscribe(
+          new BaseSubscriber<ByteBuf>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {}
+          });
+
+      CountDownLatch started = new CountDownLatch(1);
+      Thread producer =
+          new Thread(
+              () -> {
+                started.countDown();
+                buffers.forEach(processor::onNext);
+              });
+      producer.start();
+      started.await();
+      processor.cancel();
+      producer.join();
+
+      for (ByteBuf buffer : buffers) {
+        assertEquals(0, buffer.refCnt());
+      }
+    }
+  }
+
+  @Test(timeout = 10_000)
+  public void testConcurrentProducers() throws InterruptedException {
+    UnboundedProcessor<Integer> processor = new UnboundedProcessor<>();
+    int producers = 8;
+    int valuesPerProducer = 10_000;
+    List<Integer> received = new ArrayList<>();
+    processor.subscribe(received::add);
+
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  start.await();
+                } catch (InterruptedException e) {
+                  return;
+                }
+                for (int i = 0; i < valuesPerProducer; i++) {
+                  processor.onNext(i);
+                }
+              });
+      thread.start();
+      threads.add(thread);
+    }
+
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(producers * valuesPerProducer, received.size());
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package io.rsocket.keepalive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.util.HashedWheelTimer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.Disposable;
+
+public class KeepAliveManagerTest {
+  private HashedWheelTimer timer;
+  private KeepAliveManager manager;
+
+  @Before
+  public void setUp() {
+    timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+    manager = new KeepAliveManager(timer);
+  }
+
+  @After
+  public void tearDown() {
+    timer.stop();
+  }
+
+  @Test(timeout = 5_000)
+  public void testTicksConnectionsInOneBatch() throws InterruptedException {
+    int connections = 100;
+    CountDownLatch ticked = new CountDownLatch(connections);
+    Set<Long> batches = ConcurrentHashMap.newKeySet();
+    List<Disposable> registrations = new ArrayList<>();
+    for (int i = 0; i < connections; i++) {
+      registrations.add(
+          manager.start(
+              Duration.ofMillis(50),
+              now -> {
+                batches.add(now);
+                ticked.countDown();
+              }));
+    }
+
+    assertTrue(ticked.await(2, TimeUnit.SECONDS));
+    assertEquals(1, batches.size());
+    registrations.forEach(Disposable::dispose);
+  }
+
+  @Test(timeout = 5_000)
+  public void testStopsTickingOnceDisposed() throws InterruptedException {
+    AtomicInteger ticks = new AtomicInteger();
+    CountDownLatch ticked = new CountDownLatch(2);
+    Disposable registration =
+        manager.start(
+            Duration.ofMillis(20),
+            now -> {
+              ticks.incrementAndGet();
+              ticked.countDown();
+            });
+
+    assertTrue(ticked.await(2, TimeUnit.SECONDS));
+    registration.dispose();
+    assertTrue(registration.isDisposed());
+
+    // Let a batch that was already running when disposing finish
+    Thread.sleep(50);
+    int afterDispose = ticks.get();
+    Thread.sleep(100);
+    assertEquals(afterDispose, ticks.get());
+  }
+}
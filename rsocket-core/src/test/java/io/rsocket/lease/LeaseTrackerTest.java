@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.lease;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LeaseTrackerTest {
+
+  @Test
+  public void testNoPermitsWithoutLease() {
+    LeaseTracker tracker = new LeaseTracker();
+    assertNull(tracker.current());
+    assertFalse(tracker.tryAcquire());
+    assertEquals(0.0, tracker.availability(), 0.0);
+  }
+
+  @Test
+  public void testPermitsAreUsedUp() {
+    LeaseTracker tracker = new LeaseTracker();
+    tracker.update(new LeaseImpl(2, 10_000));
+
+    assertTrue(tracker.tryAcquire());
+    assertEquals(0.5, tracker.availability(), 0.0);
+    assertTrue(tracker.tryAcquire());
+    assertFalse(tracker.tryAcquire());
+    assertEquals(0.0, tracker.availability(), 0.0);
+  }
+
+  @Test
+  public void testNewLeaseReplacesPermits() {
+    LeaseTracker tracker = new LeaseTracker();
+    tracker.update(new LeaseImpl(1, 10_000));
+    assertTrue(tracker.tryAcquire());
+
+    tracker.update(new LeaseImpl(4, 10_000));
+    assertEquals(1.0, tracker.availability(), 0.0);
+    assertTrue(tracker.tryAcquire());
+  }
+
+  @Test
+  public void testExpiredLeaseGrantsNothing() {
+    LeaseTracker tracker = new LeaseTracker();
+    tracker.update(new LeaseImpl(10, -1));
+
+    assertFalse(tracker.tryAcquire());
+    assertEquals(0.0, tracker.availability(), 0.0);
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.resume;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.rsocket.Frame;
+import io.rsocket.FrameType;
+import io.rsocket.util.PayloadImpl;
+import java.util.Iterator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedResumeSpillTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private static Frame next(int i) {
+    return Frame.PayloadFrame.from(1, FrameType.NEXT, new PayloadImpl("payload-" + i));
+  }
+
+  @Test
+  public void wrapsAroundOnceAcknowledged() throws Exception {
+    MappedResumeSpill spill = new MappedResumeSpill(folder.getRoot().toPath(), 100);
+    Frame frame = next(0);
+    int length = frame.content().readableBytes();
+
+    assertTrue(spill.append(0, frame));
+    assertTrue(spill.append(length, frame));
+    assertTrue(spill.append(2 * length, frame));
+    assertFalse(spill.append(3 * length, frame));
+
+    spill.removeFirst();
+    spill.removeFirst();
+    assertEquals(2 * length, spill.firstPosition());
+    assertTrue(spill.append(3 * length, frame));
+
+    Iterator<Frame> spilled = spill.iterator(0);
+    for (int i = 0; i < 2; i++) {
+      Frame next = spilled.next();
+      assertEquals(frame.content(), next.content());
+      assertTrue(next.release());
+    }
+    assertFalse(spilled.hasNext());
+    frame.release();
+  }
+
+  @Test
+  public void cacheResendsSpilledFramesFirst() throws Exception {
+    MappedResumeSpill spill = new MappedResumeSpill(folder.getRoot().toPath(), 4096);
+    ResumeCache cache = new ResumeCache(ResumePositionCounter.size(), 64, spill);
+
+    for (int i = 0; i < 50; i++) {
+      Frame frame = next(i);
+      cache.sent(frame);
+      frame.release();
+    }
+
+    assertFalse(spill.isEmpty());
+    assertEquals(0, cache.getEarliestResendPosition());
+
+    Iterator<Frame> resend = cache.resendIterator(0);
+    for (int i = 0; i < 50; i++) {
+      Frame frame = resend.next();
+      assertEquals("payload-" + i, frame.getDataUtf8());
+      assertEquals(1, frame.refCnt());
+      frame.release();
+    }
+    assertFalse(resend.hasNext());
+
+    cache.updateRemotePosition(cache.getCurrentPosition());
+    assertTrue(spill.isEmpty());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void cacheEvictsOnceSpillIsFull() throws Exception {
+    MappedResumeSpill spill = new MappedResumeSpill(folder.getRoot().toPath(), 64);
+    ResumeCache cache = new ResumeCache(ResumePositionCounter.size(), 64, spill);
+    long[] positions = new long[20];
+
+    for (int i = 0; i < positions.length; i++) {
+      Frame frame = next(i);
+      positions[i] = cache.getCurrentPosition();
+      cache.sent(frame);
+      frame.release();
+    }
+
+    long earliest = cache.getEarliestResendPosition();
+    assertTrue(earliest > 0);
+
+    Iterator<Frame> resend = cache.resendIterator(0);
+    int first = 0;
+    while (positions[first] < earliest) {
+      first++;
+    }
+    for (int i = first; i < positions.length; i++) {
+      Frame frame = resend.next();
+      assertEquals("payload-" + i, frame.getDataUtf8());
+      frame.release();
+    }
+    assertFalse(resend.hasNext());
+  }
+}
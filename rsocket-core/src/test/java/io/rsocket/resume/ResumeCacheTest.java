@@ -1,10 +1,12 @@
 package io.rsocket.resume;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import io.rsocket.Frame;
 import io.rsocket.FrameType;
 import io.rsocket.util.PayloadImpl;
+import java.util.Iterator;
 import org.junit.Test;
 import reactor.core.publisher.Flux;
 
@@ -119,4 +121,47 @@ public void supportsFrameCountBuffers() {
     assertEquals(14, cache.getEarliestResendPosition());
     assertEquals(6, cache.size());
   }
+
+  @Test
+  public void evictsOldestFramesOverByteBudget() {
+    cache = new ResumeCache(ResumePositionCounter.size(), 30);
+    Frame first = Frame.Request.from(1, FrameType.REQUEST_STREAM, new PayloadImpl("Test"), 100);
+
+    cache.sent(first);
+    assertEquals(2, first.refCnt());
+
+    cache.sent(STREAM);
+    cache.sent(STREAM);
+
+    assertEquals(1, first.refCnt());
+    assertEquals(42, cache.getCurrentPosition());
+    assertEquals(14, cache.getEarliestResendPosition());
+    assertEquals(28, cache.size());
+
+    cache.clear();
+
+    assertEquals(0, cache.size());
+    assertEquals(42, cache.getEarliestResendPosition());
+    first.release();
+  }
+
+  @Test
+  public void resendsUnacknowledgedFramesInOrder() {
+    cache = new ResumeCache(ResumePositionCounter.size(), 1024);
+
+    for (int i = 0; i < 40; i++) {
+      cache.sent(i % 2 == 0 ? STREAM : CANCEL);
+    }
+
+    Iterator<Frame> resend = cache.resendIterator(14);
+    for (int i = 1; i < 40; i++) {
+      FrameType expected = i % 2 == 0 ? FrameType.REQUEST_STREAM : FrameType.CANCEL;
+      Frame frame = resend.next();
+      assertEquals(expected, frame.getType());
+      frame.release();
+    }
+    assertFalse(resend.hasNext());
+    assertEquals(14, cache.getEarliestResendPosition());
+    assertEquals(20 * 14 + 20 * 6 - 14, cache.size());
+  }
 }
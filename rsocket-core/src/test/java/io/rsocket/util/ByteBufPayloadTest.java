@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.Frame;
+import io.rsocket.FrameType;
+import org.junit.Test;
+
+public class ByteBufPayloadTest {
+
+  @Test
+  public void testSlicesFrameContent() {
+    Frame frame =
+        Frame.PayloadFrame.from(1, FrameType.NEXT, PayloadImpl.textPayload("data", "metadata"));
+    ByteBufPayload payload = ByteBufPayload.create(frame);
+    ByteBuf content = frame.content();
+
+    assertThat("Unexpected data.", payload.getDataUtf8(), equalTo("data"));
+    assertThat("Null metadata", payload.hasMetadata(), equalTo(true));
+    assertThat("Unexpected metadata.", payload.getMetadataUtf8(), equalTo("metadata"));
+
+    frame.release();
+    assertThat("Content released with frame.", content.refCnt(), equalTo(1));
+    assertThat("Unexpected data.", payload.getDataUtf8(), equalTo("data"));
+
+    payload.release();
+    assertThat("Content not released.", content.refCnt(), equalTo(0));
+  }
+
+  @Test
+  public void testByteBufferViewsAreReusable() {
+    Frame frame = Frame.PayloadFrame.from(1, FrameType.NEXT, PayloadImpl.textPayload("data"));
+    ByteBufPayload payload = ByteBufPayload.create(frame);
+    frame.release();
+
+    assertThat("Non-null metadata", payload.hasMetadata(), equalTo(false));
+    assertThat("Unexpected metadata.", payload.getMetadata().remaining(), equalTo(0));
+
+    payload.getData().position(2);
+    assertThat("Unexpected data.", payload.getData().remaining(), equalTo(4));
+
+    payload.release();
+  }
+}
@@ -822,15 +822,16 @@ synchronized double getPredictedLatency() {
 
       if (prediction == 0.0) {
         if (pending == 0) {
-          weight = 0.0; // first request
+          // first request, the keep-alive round trip time is the best guess if there is one
+          weight = source.roundTripTime();
         } else {
           // subsequent requests while we don't have any history
           weight = STARTUP_PENALTY + pending;
         }
       } else if (pending == 0 && elapsed > inactivityFactor * interArrivalTime.value()) {
         // if we did't see any data for a while, we decay the prediction by inserting
-        // artificial 0.0 into the median
-        median.insert(0.0);
+        // the keep-alive round trip time (0.0 if unknown) into the median
+        median.insert(source.roundTripTime());
         weight = median.estimation();
       } else {
         double predicted = prediction * pending;
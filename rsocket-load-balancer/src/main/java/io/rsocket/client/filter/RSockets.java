@@ -37,6 +37,10 @@ private RSockets() {
    * Provides a mapping function to wrap a {@code RSocket} such that all requests will timeout, if
    * not completed after the specified {@code timeout}.
    *
+   * <p>Every request schedules its own timer task. For deadlines on the connection itself, which
+   * also cancel the stream on the responder, see {@link
+   * io.rsocket.RSocketFactory.ClientRSocketFactory#requestTimeout(Duration)}.
+   *
    * @param timeout timeout duration.
    * @return Function to transform any socket into a timeout socket.
    */
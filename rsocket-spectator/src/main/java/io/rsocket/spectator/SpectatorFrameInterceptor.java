@@ -18,6 +18,7 @@
 
 import com.netflix.spectator.api.Counter;
 import com.netflix.spectator.api.Registry;
+import io.netty.buffer.ByteBufAllocator;
 import io.rsocket.DuplexConnection;
 import io.rsocket.Frame;
 import io.rsocket.FrameType;
@@ -94,6 +95,11 @@ public double availability() {
         return connection.availability();
       }
 
+      @Override
+      public ByteBufAllocator alloc() {
+        return connection.alloc();
+      }
+
       private void count(Frame frame) {
         switch (frame.getType()) {
           case CANCEL:
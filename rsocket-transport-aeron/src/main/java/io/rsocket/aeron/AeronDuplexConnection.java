@@ -30,6 +30,12 @@
  * io.rsocket.aeron.internal.reactivestreams.AeronChannel}
  */
 public class AeronDuplexConnection implements DuplexConnection {
+  /**
+   * Availability of a connection whose publication is back pressured. It is still open, so frames
+   * can be queued, but a writable connection should be preferred.
+   */
+  public static final double BACK_PRESSURED_AVAILABILITY = 0.5;
+
   private final String name;
   private final AeronChannel channel;
   private final MonoProcessor<Void> emptySubject;
@@ -56,9 +62,16 @@ public Flux<Frame> receive() {
         .doOnError(Throwable::printStackTrace);
   }
 
+  /**
+   * @return {@code 0.0} once closed, {@link #BACK_PRESSURED_AVAILABILITY} while the publication
+   *     is back pressured and {@code 1.0} otherwise
+   */
   @Override
   public double availability() {
-    return channel.isActive() ? 1.0 : 0.0;
+    if (!channel.isActive()) {
+      return 0.0;
+    }
+    return channel.isBackPressured() ? BACK_PRESSURED_AVAILABILITY : 1.0;
   }
 
   @Override
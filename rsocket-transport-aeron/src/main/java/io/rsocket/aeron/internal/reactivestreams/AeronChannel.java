@@ -95,4 +95,14 @@ public String toString() {
   public boolean isActive() {
     return !destination.isClosed() && !source.isClosed();
   }
+
+  /**
+   * Whether the {@code Publication} is back pressured, that is its position has reached the limit
+   * set by the slowest receiver and nothing more can be offered until the receiver catches up.
+   *
+   * @return true if offers to the publication would currently fail
+   */
+  public boolean isBackPressured() {
+    return destination.position() >= destination.positionLimit();
+  }
 }
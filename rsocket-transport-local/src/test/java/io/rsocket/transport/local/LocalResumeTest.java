@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.local;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+
+import io.rsocket.AbstractRSocket;
+import io.rsocket.Closeable;
+import io.rsocket.DuplexConnection;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.RSocketFactory;
+import io.rsocket.transport.ClientTransport;
+import io.rsocket.util.PayloadImpl;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class LocalResumeTest {
+  private final List<DuplexConnection> connections = new CopyOnWriteArrayList<>();
+  private volatile Duration reconnectDelay = Duration.ZERO;
+  private Closeable server;
+  private RSocket client;
+
+  @Before
+  public void setUp() {
+    String name = "resume-" + UUID.randomUUID();
+    server =
+        RSocketFactory.receive()
+            .resume()
+            .acceptor(
+                (setup, sendingSocket) ->
+                    Mono.just(
+                        new AbstractRSocket() {
+                          @Override
+                          public Flux<Payload> requestStream(Payload payload) {
+                            return Flux.interval(Duration.ofMillis(1))
+                                .onBackpressureBuffer()
+                                .map(i -> new PayloadImpl(String.valueOf(i)));
+                          }
+
+                          @Override
+                          public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
+                            return Flux.from(payloads);
+                          }
+                        }))
+            .transport(LocalServerTransport.create(name))
+            .start()
+            .block();
+
+    ClientTransport transport =
+        () ->
+            LocalClientTransport.create(name)
+                .connect()
+                .delaySubscription(connections.isEmpty() ? Duration.ZERO : reconnectDelay)
+                .doOnNext(connections::add);
+    client =
+        RSocketFactory.connect()
+            .resume()
+            .keepAlive(Duration.ofMillis(20), Duration.ofSeconds(5), 3)
+            .transport(transport)
+            .start()
+            .block();
+  }
+
+  @After
+  public void tearDown() {
+    client.close().block();
+    server.close().block();
+  }
+
+  @Test(timeout = 10_000)
+  public void testStreamSurvivesConnectionLoss() {
+    Disposable killer = killConnections(Duration.ofMillis(50), 5);
+
+    StepVerifier.create(
+            client
+                .requestStream(PayloadImpl.EMPTY)
+                .map(payload -> Long.valueOf(payload.getDataUtf8()))
+                .take(500))
+        .expectNextSequence(LongStream.range(0, 500).boxed().collect(Collectors.toList()))
+        .verifyComplete();
+
+    killer.dispose();
+    assertThat("Connection was never replaced.", connections.size(), greaterThan(1));
+  }
+
+  @Test(timeout = 10_000)
+  public void testChannelSurvivesConnectionLoss() {
+    Disposable killer = killConnections(Duration.ofMillis(20), 5);
+
+    Flux<Payload> requests =
+        Flux.interval(Duration.ofMillis(1))
+            .onBackpressureBuffer()
+            .map(i -> new PayloadImpl(String.valueOf(i)));
+
+    StepVerifier.create(
+            client
+                .requestChannel(requests)
+                .map(payload -> Long.valueOf(payload.getDataUtf8()))
+                .take(200))
+        .expectNextSequence(LongStream.range(0, 200).boxed().collect(Collectors.toList()))
+        .verifyComplete();
+
+    killer.dispose();
+    assertThat("Connection was never replaced.", connections.size(), greaterThan(1));
+  }
+
+  @Test(timeout = 10_000)
+  public void testRequestNWhileTransportIsDown() {
+    reconnectDelay = Duration.ofMillis(200);
+
+    StepVerifier.create(
+            client
+                .requestStream(PayloadImpl.EMPTY)
+                .map(payload -> Long.valueOf(payload.getDataUtf8())),
+            0)
+        .thenRequest(10)
+        .expectNextSequence(LongStream.range(0, 10).boxed().collect(Collectors.toList()))
+        .then(() -> connections.get(connections.size() - 1).close().block())
+        .thenRequest(10)
+        .expectNextSequence(LongStream.range(10, 20).boxed().collect(Collectors.toList()))
+        .thenCancel()
+        .verify();
+
+    assertThat("Connection was never replaced.", connections.size(), greaterThan(1));
+  }
+
+  private Disposable killConnections(Duration period, int count) {
+    return Flux.interval(period)
+        .take(count)
+        .subscribe(i -> connections.get(connections.size() - 1).close().subscribe());
+  }
+}
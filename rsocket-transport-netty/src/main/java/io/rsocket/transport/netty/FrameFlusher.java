@@ -0,0 +1,323 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rsocket.transport.netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
+import io.rsocket.Frame;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Operators;
+import reactor.util.concurrent.Queues;
+
+/**
+ * Writes frames from a publisher to a {@link Channel}, coalescing writes into as few flushes as
+ * possible.
+ *
+ * <p>Frames are handed over to the event loop which writes every frame already available and then
+ * flushes once, instead of writing and flushing each frame separately. Frames emitted from the
+ * event loop itself are written immediately but flushed by a task queued behind the current one,
+ * so that all frames produced while handling a read share a flush. A flush is also forced once
+ * {@code maxFlushBytes} have been written since the last one. When {@code maxFlushDelayNanos} is
+ * positive the flush at the end of a drain is instead deferred by that delay, so that frames
+ * arriving shortly after each other share a single flush.
+ *
+ * <p>No more frames are requested while the channel is not writable, that is while the bytes
+ * waiting in its outbound buffer are above its high watermark. Frames already requested are still
+ * written, and requesting resumes once the channel becomes writable again.
+ *
+ * <p>Frames are written with the void promise, so a failed write is reported as an exception on
+ * the pipeline instead. A handler at the head of the pipeline turns it into an error of the send.
+ *
+ * <p>Defaults can be changed with the {@code io.rsocket.transport.netty.maxFlushBytes} and {@code
+ * io.rsocket.transport.netty.maxFlushDelayMicros} system properties.
+ */
+final class FrameFlusher implements CoreSubscriber<Frame>, Runnable {
+  static final int DEFAULT_MAX_FLUSH_BYTES =
+      Integer.getInteger("io.rsocket.transport.netty.maxFlushBytes", 64 * 1024);
+
+  static final long DEFAULT_MAX_FLUSH_DELAY_NANOS =
+      TimeUnit.MICROSECONDS.toNanos(
+          Long.getLong("io.rsocket.transport.netty.maxFlushDelayMicros", 0));
+
+  private static final int PREFETCH = Queues.SMALL_BUFFER_SIZE;
+  private static final int LIMIT = PREFETCH - (PREFETCH >> 2);
+
+  private static final AtomicIntegerFieldUpdater<FrameFlusher> WIP =
+      AtomicIntegerFieldUpdater.newUpdater(FrameFlusher.class, "wip");
+
+  private final Channel channel;
+  private final EventLoop eventLoop;
+  private final Function<Frame, Object> encoder;
+  private final MonoSink<Void> sink;
+  private final int maxFlushBytes;
+  private final long maxFlushDelayNanos;
+  private final Queue<Frame> queue;
+  private final Runnable flushTask = this::flushScheduled;
+  private final ChannelStateHandler channelStateHandler = new ChannelStateHandler();
+
+  private @Nullable Subscription s;
+  private volatile boolean done;
+  private @Nullable Throwable error;
+  private volatile @Nullable Throwable writeError;
+  private volatile boolean cancelled;
+  private volatile int wip;
+
+  // Only accessed from the event loop
+  private int consumed;
+  private long unflushedBytes;
+  private boolean flushPending;
+
+  private FrameFlusher(
+      Channel channel,
+      Function<Frame, Object> encoder,
+      MonoSink<Void> sink,
+      int maxFlushBytes,
+      long maxFlushDelayNanos) {
+    this.channel = channel;
+    this.eventLoop = channel.eventLoop();
+    this.encoder = encoder;
+    this.sink = sink;
+    this.maxFlushBytes = maxFlushBytes;
+    this.maxFlushDelayNanos = maxFlushDelayNanos;
+    this.queue = Queues.<Frame>unbounded().get();
+  }
+
+  static Mono<Void> send(
+      Channel channel, Publisher<Frame> frames, Function<Frame, Object> encoder) {
+    return send(channel, frames, encoder, DEFAULT_MAX_FLUSH_BYTES, DEFAULT_MAX_FLUSH_DELAY_NANOS);
+  }
+
+  static Mono<Void> send(
+      Channel channel,
+      Publisher<Frame> frames,
+      Function<Frame, Object> encoder,
+      int maxFlushBytes,
+      long maxFlushDelayNanos) {
+    return Mono.create(
+        sink -> {
+          FrameFlusher flusher =
+              new FrameFlusher(channel, encoder, sink, maxFlushBytes, maxFlushDelayNanos);
+          sink.onCancel(flusher::cancel);
+          channel.pipeline().addFirst(flusher.channelStateHandler);
+          channel.closeFuture().addListener(future -> flusher.cancel());
+          frames.subscribe(flusher);
+        });
+  }
+
+  @Override
+  public void onSubscribe(Subscription s) {
+    if (Operators.validate(this.s, s)) {
+      this.s = s;
+      if (cancelled) {
+        s.cancel();
+      } else {
+        s.request(PREFETCH);
+      }
+    }
+  }
+
+  @Override
+  public void onNext(Frame frame) {
+    if (done || cancelled) {
+      frame.release();
+      return;
+    }
+    queue.offer(frame);
+    schedule();
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    if (done) {
+      Operators.onErrorDropped(t);
+      return;
+    }
+    error = t;
+    done = true;
+    schedule();
+  }
+
+  @Override
+  public void onComplete() {
+    if (done) {
+      return;
+    }
+    done = true;
+    schedule();
+  }
+
+  private void cancel() {
+    if (cancelled) {
+      return;
+    }
+    cancelled = true;
+    Subscription s = this.s;
+    if (s != null) {
+      s.cancel();
+    }
+    schedule();
+  }
+
+  private void schedule() {
+    if (WIP.getAndIncrement(this) != 0) {
+      return;
+    }
+    if (eventLoop.inEventLoop()) {
+      drain(false);
+    } else {
+      eventLoop.execute(this);
+    }
+  }
+
+  @Override
+  public void run() {
+    drain(true);
+  }
+
+  private void drain(boolean ownTask) {
+    int missed = 1;
+    for (; ; ) {
+      if (cancelled) {
+        clear();
+        removeChannelStateHandler();
+        Throwable e = writeError;
+        if (e != null) {
+          sink.error(e);
+        } else {
+          sink.success();
+        }
+        return;
+      }
+
+      final boolean d = done;
+      Frame frame;
+      while ((frame = queue.poll()) != null) {
+        unflushedBytes += frame.content().readableBytes();
+        channel.write(encoder.apply(frame), channel.voidPromise());
+        if (unflushedBytes >= maxFlushBytes) {
+          flush();
+        }
+        if (++consumed >= LIMIT && channel.isWritable()) {
+          requestConsumed();
+        }
+      }
+
+      if (d && queue.isEmpty()) {
+        if (unflushedBytes > 0) {
+          flush();
+        }
+        removeChannelStateHandler();
+        Throwable e = error != null ? error : writeError;
+        if (e != null) {
+          sink.error(e);
+        } else {
+          sink.success();
+        }
+        return;
+      }
+
+      missed = WIP.addAndGet(this, -missed);
+      if (missed == 0) {
+        break;
+      }
+    }
+
+    if (unflushedBytes == 0 || flushPending) {
+      return;
+    }
+    if (maxFlushDelayNanos > 0) {
+      flushPending = true;
+      eventLoop.schedule(flushTask, maxFlushDelayNanos, TimeUnit.NANOSECONDS);
+    } else if (ownTask) {
+      flush();
+    } else {
+      // Called from a handler on the event loop, more frames are likely to follow before it returns
+      flushPending = true;
+      eventLoop.execute(flushTask);
+    }
+  }
+
+  private void requestConsumed() {
+    int n = consumed;
+    consumed = 0;
+    s.request(n);
+  }
+
+  private void writabilityChanged() {
+    if (consumed >= LIMIT && channel.isWritable() && !done && !cancelled) {
+      requestConsumed();
+    }
+  }
+
+  private void writeFailed(Throwable cause) {
+    if (writeError == null && !cancelled) {
+      writeError = cause;
+      cancel();
+    }
+  }
+
+  private void removeChannelStateHandler() {
+    ChannelPipeline pipeline = channel.pipeline();
+    if (pipeline.context(channelStateHandler) != null) {
+      pipeline.remove(channelStateHandler);
+    }
+  }
+
+  private void flushScheduled() {
+    flushPending = false;
+    if (unflushedBytes > 0) {
+      flush();
+    }
+  }
+
+  private void flush() {
+    unflushedBytes = 0;
+    channel.flush();
+  }
+
+  private void clear() {
+    Frame frame;
+    while ((frame = queue.poll()) != null) {
+      frame.release();
+    }
+  }
+
+  private final class ChannelStateHandler extends ChannelInboundHandlerAdapter {
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+      writabilityChanged();
+      super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+      writeFailed(cause);
+      super.exceptionCaught(ctx, cause);
+    }
+  }
+}
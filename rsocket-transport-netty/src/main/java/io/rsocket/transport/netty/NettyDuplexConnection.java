@@ -15,6 +15,8 @@
  */
 package io.rsocket.transport.netty;
 
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
 import io.rsocket.DuplexConnection;
 import io.rsocket.Frame;
 import org.reactivestreams.Publisher;
@@ -37,7 +39,7 @@ public NettyDuplexConnection(NettyInbound in, NettyOutbound out, NettyContext co
 
   @Override
   public Mono<Void> send(Publisher<Frame> frames) {
-    return Flux.from(frames).concatMap(this::sendOne).then();
+    return FrameFlusher.send(context.channel(), frames, Frame::content);
   }
 
   @Override
@@ -64,8 +66,26 @@ public Mono<Void> onClose() {
     return context.onClose();
   }
 
+  /**
+   * @return {@code 0.0} once closed, {@code 1.0} while the channel is writable, and otherwise the
+   *     share of the bytes waiting in the channel's outbound buffer that are below its low
+   *     watermark
+   */
   @Override
   public double availability() {
-    return context.isDisposed() ? 0.0 : 1.0;
+    if (context.isDisposed()) {
+      return 0.0;
+    }
+    Channel channel = context.channel();
+    if (channel.isWritable()) {
+      return 1.0;
+    }
+    int lowWatermark = Math.max(channel.config().getWriteBufferLowWaterMark(), 1);
+    return lowWatermark / (double) (lowWatermark + channel.bytesBeforeWritable());
+  }
+
+  @Override
+  public ByteBufAllocator alloc() {
+    return context.channel().alloc();
   }
 }
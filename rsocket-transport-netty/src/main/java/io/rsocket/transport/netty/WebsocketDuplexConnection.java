@@ -19,7 +19,9 @@
 import static io.rsocket.frame.FrameHeaderFlyweight.FRAME_LENGTH_SIZE;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.Channel;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.rsocket.DuplexConnection;
 import io.rsocket.Frame;
@@ -51,13 +53,16 @@ public WebsocketDuplexConnection(NettyInbound in, NettyOutbound out, NettyContex
 
   @Override
   public Mono<Void> send(Publisher<Frame> frames) {
-    return Flux.from(frames).concatMap(this::sendOne).then();
+    return FrameFlusher.send(context.channel(), frames, WebsocketDuplexConnection::encode);
   }
 
   @Override
   public Mono<Void> sendOne(Frame frame) {
-    return out.sendObject(new BinaryWebSocketFrame(frame.content().skipBytes(FRAME_LENGTH_SIZE)))
-        .then();
+    return out.sendObject(encode(frame)).then();
+  }
+
+  private static BinaryWebSocketFrame encode(Frame frame) {
+    return new BinaryWebSocketFrame(frame.content().skipBytes(FRAME_LENGTH_SIZE));
   }
 
   @Override
@@ -88,8 +93,22 @@ public Mono<Void> onClose() {
     return context.onClose();
   }
 
+  /** Reports write pressure the same way as {@link NettyDuplexConnection#availability()}. */
   @Override
   public double availability() {
-    return context.isDisposed() ? 0.0 : 1.0;
+    if (context.isDisposed()) {
+      return 0.0;
+    }
+    Channel channel = context.channel();
+    if (channel.isWritable()) {
+      return 1.0;
+    }
+    int lowWatermark = Math.max(channel.config().getWriteBufferLowWaterMark(), 1);
+    return lowWatermark / (double) (lowWatermark + channel.bytesBeforeWritable());
+  }
+
+  @Override
+  public ByteBufAllocator alloc() {
+    return context.channel().alloc();
   }
 }
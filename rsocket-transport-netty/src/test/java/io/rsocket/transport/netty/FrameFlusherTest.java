@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rsocket.transport.netty;
+
+import static org.junit.Assert.assertEquals;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.rsocket.Frame;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.UnicastProcessor;
+import reactor.test.StepVerifier;
+
+public class FrameFlusherTest {
+  private EmbeddedChannel channel;
+  private int flushes;
+
+  @Before
+  public void setUp() {
+    channel =
+        new EmbeddedChannel(
+            new ChannelOutboundHandlerAdapter() {
+              @Override
+              public void flush(ChannelHandlerContext ctx) throws Exception {
+                flushes++;
+                super.flush(ctx);
+              }
+            });
+  }
+
+  @Test
+  public void testFramesFromEventLoopShareOneFlush() {
+    Flux<Frame> frames = Flux.range(1, 10).map(i -> Frame.Cancel.from(i));
+
+    FrameFlusher.send(channel, frames, Frame::content, Integer.MAX_VALUE, 0).subscribe();
+    channel.runPendingTasks();
+
+    assertEquals(10, channel.outboundMessages().size());
+    assertEquals(1, flushes);
+    releaseOutbound();
+  }
+
+  @Test
+  public void testFlushesWhenByteBudgetIsReached() {
+    Frame first = Frame.Cancel.from(1);
+    int frameLength = first.content().readableBytes();
+    Flux<Frame> frames = Flux.range(2, 5).map(i -> Frame.Cancel.from(i)).startWith(first);
+
+    FrameFlusher.send(channel, frames, Frame::content, frameLength * 2, 0).subscribe();
+    channel.runPendingTasks();
+
+    assertEquals(6, channel.outboundMessages().size());
+    assertEquals(3, flushes);
+    releaseOutbound();
+  }
+
+  @Test
+  public void testFlushesPendingFramesOnComplete() {
+    UnicastProcessor<Frame> frames = UnicastProcessor.create();
+    long delay = TimeUnit.MINUTES.toNanos(1);
+    FrameFlusher.send(channel, frames, Frame::content, Integer.MAX_VALUE, delay).subscribe();
+
+    frames.onNext(Frame.Cancel.from(1));
+    frames.onNext(Frame.Cancel.from(3));
+    assertEquals(0, flushes);
+
+    frames.onComplete();
+    assertEquals(1, flushes);
+    assertEquals(2, channel.outboundMessages().size());
+    releaseOutbound();
+  }
+
+  @Test
+  public void testFailedWriteFailsSend() {
+    EmbeddedChannel failing =
+        new EmbeddedChannel(
+            new ChannelOutboundHandlerAdapter() {
+              @Override
+              public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                ReferenceCountUtil.release(msg);
+                promise.setFailure(new IOException("write failed"));
+              }
+            });
+    Flux<Frame> frames = Flux.range(1, 3).map(i -> Frame.Cancel.from(i));
+
+    StepVerifier.create(FrameFlusher.send(failing, frames, Frame::content, Integer.MAX_VALUE, 0))
+        .verifyError(IOException.class);
+  }
+
+  private void releaseOutbound() {
+    ByteBuf buf;
+    while ((buf = channel.readOutbound()) != null) {
+      buf.release();
+    }
+  }
+}